@@ -32,6 +32,7 @@ android {
 
 dependencies {
 
+    implementation(project(":guard-core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.constraintlayout)
@@ -141,7 +141,7 @@ public class MainActivity extends AppCompatActivity {
     private void applyHideFromRecentSetting() {
         ScheduledExecutorService executorService = new ScheduledThreadPoolExecutor(1);
         executorService.schedule(() -> {
-            SettingsManager settingsManager = new SettingsManager(this);
+            SettingsManager settingsManager = SettingsManager.getInstance(this);
             boolean hideFromRecent = settingsManager.isHideFromRecent();
 
             ActivityManager systemService = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
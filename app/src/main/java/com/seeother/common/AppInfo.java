@@ -1,29 +1,57 @@
 package com.seeother.common;
 
-import android.graphics.drawable.Drawable;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * 应用选择列表中的一行, 只读, 勾选状态变化时用 {@link #withChecked(boolean)} 生成新的行
+ */
+public final class AppInfo {
+    /**
+     * 只有勾选状态变化时的局部刷新标记
+     */
+    public static final Object PAYLOAD_CHECKED = new Object();
+
+    public static final DiffUtil.ItemCallback<AppInfo> DIFF_CALLBACK = new DiffUtil.ItemCallback<AppInfo>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull AppInfo oldItem, @NonNull AppInfo newItem) {
+            return oldItem.packageName.equals(newItem.packageName);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull AppInfo oldItem, @NonNull AppInfo newItem) {
+            return oldItem.checked == newItem.checked && oldItem.appName.equals(newItem.appName);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull AppInfo oldItem, @NonNull AppInfo newItem) {
+            return oldItem.appName.equals(newItem.appName) ? PAYLOAD_CHECKED : null;
+        }
+    };
 
-public class AppInfo {
     private final String packageName;
     private final String appName;
-    private final Drawable appIcon;
-
+    private final boolean checked;
 
-    private boolean checked;
+    public AppInfo(String packageName, String appName) {
+        this(packageName, appName, false);
+    }
 
-    public AppInfo(String packageName, String appName, Drawable appIcon) {
+    private AppInfo(String packageName, String appName, boolean checked) {
         this.packageName = packageName;
         this.appName = appName;
-        this.appIcon = appIcon;
+        this.checked = checked;
     }
 
     // Getters
     public String getPackageName() { return packageName; }
     public String getAppName() { return appName; }
-    public Drawable getAppIcon() { return appIcon; }
     public boolean getChecked(){ return checked;}
 
-    // Setters
-    public void setChecked(boolean isChecked){
-        checked = isChecked;
+    /**
+     * 返回勾选状态不同的副本, 状态相同时返回自身
+     */
+    public AppInfo withChecked(boolean isChecked) {
+        return isChecked == checked ? this : new AppInfo(packageName, appName, isChecked);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package com.seeother.common;
+
+import com.seeother.data.entity.MonitoredApp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 应用策略
+ * 合并了少用应用配置和推荐应用身份的只读快照, 供事件热路径直接读取
+ */
+public final class AppPolicy {
+    /**
+     * 既不是少用应用也不是推荐应用时使用的默认策略
+     */
+    public static final AppPolicy NONE = new AppPolicy(null, false, false, false, false, 0, 0L, false);
+
+    private final String packageName;
+    private final boolean monitored;
+    private final boolean grayMode;
+    private final boolean highContrast;
+    private final boolean guardEnabled;
+    private final int scrollCount;
+    private final long broadcastInterval;
+    private final boolean recommended;
+
+    private AppPolicy(String packageName, boolean monitored, boolean grayMode, boolean highContrast,
+                      boolean guardEnabled, int scrollCount, long broadcastInterval, boolean recommended) {
+        this.packageName = packageName;
+        this.monitored = monitored;
+        this.grayMode = grayMode;
+        this.highContrast = highContrast;
+        this.guardEnabled = guardEnabled;
+        this.scrollCount = scrollCount;
+        this.broadcastInterval = broadcastInterval;
+        this.recommended = recommended;
+    }
+
+    /**
+     * 由少用应用配置创建策略
+     */
+    public static AppPolicy of(MonitoredApp app, boolean recommended) {
+        return new AppPolicy(app.getPkgName(), true, app.getEnableGrayMode(), app.getEnableHighContrast(),
+                app.isGuardEnabled(), app.getScrollCount(), app.getBroadcastInterval(), recommended);
+    }
+
+    /**
+     * 只在推荐列表中的应用
+     */
+    public static AppPolicy recommendedOnly(String packageName) {
+        return new AppPolicy(packageName, false, false, false, false, 0, 0L, true);
+    }
+
+    /**
+     * 写入热启动快照
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(packageName != null ? packageName : "");
+        out.writeBoolean(monitored);
+        out.writeBoolean(grayMode);
+        out.writeBoolean(highContrast);
+        out.writeBoolean(guardEnabled);
+        out.writeInt(scrollCount);
+        out.writeLong(broadcastInterval);
+        out.writeBoolean(recommended);
+    }
+
+    /**
+     * 从热启动快照读取
+     */
+    public static AppPolicy readFrom(DataInput in) throws IOException {
+        return new AppPolicy(in.readUTF(), in.readBoolean(), in.readBoolean(), in.readBoolean(),
+                in.readBoolean(), in.readInt(), in.readLong(), in.readBoolean());
+    }
+
+    public String getPackageName() { return packageName; }
+    public boolean isMonitored() { return monitored; }
+    public boolean isGrayMode() { return grayMode; }
+    public boolean isHighContrast() { return highContrast; }
+    public boolean isGuardEnabled() { return monitored && guardEnabled; }
+    public int getScrollCount() { return scrollCount; }
+    public long getBroadcastInterval() { return broadcastInterval; }
+    public boolean isRecommended() { return recommended; }
+}
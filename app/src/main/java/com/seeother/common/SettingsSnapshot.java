@@ -0,0 +1,89 @@
+package com.seeother.common;
+
+import android.content.SharedPreferences;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 设置快照
+ * 从默认 SharedPreferences 一次性读取并解析的只读设置, 设置变化时整体替换,
+ * 热路径读取时只访问字段, 不查询 SharedPreferences 也不解析字符串
+ */
+public final class SettingsSnapshot {
+    /**
+     * 快照包含的设置项, 只有这些设置变化时才需要重建
+     */
+    public static final Set<String> KEYS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "hide_from_recent",
+            "enable_gray_mode_for_non_recommend_apps",
+            "volume_down_quick_restore",
+            "volume_click_interval",
+            "volume_both_pause_time_enabled",
+            "volume_down_long_press_enabled",
+            "pause_duration_minutes",
+            "recommend_on_less_used_app",
+            "recommend_interval_minutes",
+            "recommend_in_dnd_mode",
+            "event_trace_enabled",
+            "event_trace_snapshot_enabled",
+            "monitored_app_threshold",
+            "short_video_threshold",
+            "unshakable_time_periods"
+    )));
+
+    public final boolean hideFromRecent;
+    public final boolean grayModeForNonRecommendApps;
+    public final boolean volumeDownQuickRestore;
+    public final int volumeClickInterval;
+    public final boolean volumeBothPauseTime;
+    public final boolean volumeDownLongPress;
+    public final int pauseDurationMinutes;
+    public final boolean recommendOnLessUsedApp;
+    public final int recommendIntervalMinutes;
+    public final boolean recommendInDndMode;
+    public final boolean eventTraceEnabled;
+    public final boolean eventTraceSnapshotEnabled;
+    public final int monitoredAppThreshold;
+    public final int shortVideoThreshold;
+    public final String unshakableTimePeriods;
+
+    private SettingsSnapshot(SharedPreferences preferences) {
+        hideFromRecent = preferences.getBoolean("hide_from_recent", false);
+        grayModeForNonRecommendApps = preferences.getBoolean("enable_gray_mode_for_non_recommend_apps", false);
+        volumeDownQuickRestore = preferences.getBoolean("volume_down_quick_restore", true);
+        volumeClickInterval = preferences.getInt("volume_click_interval", 300);
+        volumeBothPauseTime = preferences.getBoolean("volume_both_pause_time_enabled", true);
+        volumeDownLongPress = preferences.getBoolean("volume_down_long_press_enabled", true);
+        pauseDurationMinutes = parseInt(preferences, "pause_duration_minutes", 15);
+        recommendOnLessUsedApp = preferences.getBoolean("recommend_on_less_used_app", false);
+        recommendIntervalMinutes = parseInt(preferences, "recommend_interval_minutes", 1);
+        recommendInDndMode = preferences.getBoolean("recommend_in_dnd_mode", false);
+        eventTraceEnabled = preferences.getBoolean("event_trace_enabled", false);
+        eventTraceSnapshotEnabled = preferences.getBoolean("event_trace_snapshot_enabled", false);
+        monitoredAppThreshold = parseInt(preferences, "monitored_app_threshold", 10);
+        shortVideoThreshold = parseInt(preferences, "short_video_threshold", 10);
+        unshakableTimePeriods = preferences.getString("unshakable_time_periods", "");
+    }
+
+    /**
+     * 从 SharedPreferences 读取全部设置
+     */
+    public static SettingsSnapshot from(SharedPreferences preferences) {
+        return new SettingsSnapshot(preferences);
+    }
+
+    /**
+     * 解析以字符串保存的数字设置, 格式错误时返回默认值
+     */
+    private static int parseInt(SharedPreferences preferences, String key, int defaultValue) {
+        try {
+            String value = preferences.getString(key, String.valueOf(defaultValue));
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
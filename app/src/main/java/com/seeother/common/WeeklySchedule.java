@@ -0,0 +1,147 @@
+package com.seeother.common;
+
+/**
+ * 编译后的每周时间表
+ * 一周按分钟展开为 10080 位的位图(周一 00:00 为第0分钟), 查询只需一次位运算, 不分配内存。
+ * 时间段包含结束分钟, 开始时间晚于结束时间表示跨过午夜。
+ */
+public final class WeeklySchedule {
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    /**
+     * 空时间表
+     */
+    public static final WeeklySchedule EMPTY = new WeeklySchedule(new long[(MINUTES_PER_WEEK + 63) / 64], true);
+
+    private final long[] bits;
+    private final boolean empty;
+
+    private WeeklySchedule(long[] bits, boolean empty) {
+        this.bits = bits;
+        this.empty = empty;
+    }
+
+    /**
+     * 时间表构建器
+     */
+    public static final class Builder {
+        private final long[] bits = new long[(MINUTES_PER_WEEK + 63) / 64];
+        private boolean empty = true;
+
+        /**
+         * 添加每天都生效的时间段
+         *
+         * @param start 开始分钟(0-1439)
+         * @param end   结束分钟(0-1439), 包含该分钟
+         */
+        public Builder addDaily(int start, int end) {
+            for (int day = 0; day < 7; day++) {
+                addDay(day, start, end);
+            }
+            return this;
+        }
+
+        /**
+         * 添加某一天的时间段, 跨午夜时该天凌晨到结束时间的部分也属于该天
+         *
+         * @param day 星期(0为周一, 6为周日)
+         */
+        public Builder addDay(int day, int start, int end) {
+            if (start < 0 || end < 0 || start >= MINUTES_PER_DAY || end >= MINUTES_PER_DAY) {
+                return this;
+            }
+            int base = day * MINUTES_PER_DAY;
+            if (start <= end) {
+                setRange(base + start, base + end);
+            } else {
+                setRange(base + start, base + MINUTES_PER_DAY - 1);
+                setRange(base, base + end);
+            }
+            return this;
+        }
+
+        private void setRange(int from, int to) {
+            for (int minute = from; minute <= to; minute++) {
+                bits[minute >>> 6] |= 1L << (minute & 63);
+            }
+            empty = false;
+        }
+
+        public WeeklySchedule build() {
+            return empty ? EMPTY : new WeeklySchedule(bits.clone(), false);
+        }
+    }
+
+    /**
+     * 检查一周中的某一分钟是否在时间表内
+     */
+    public boolean contains(int weekMinute) {
+        return !empty && (bits[weekMinute >>> 6] & (1L << (weekMinute & 63))) != 0;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * 从 weekMinute 开始到状态第一次变化经过的分钟数
+     *
+     * @return 一周内状态都不变时返回-1
+     */
+    public int minutesUntilChange(int weekMinute) {
+        if (empty) {
+            return -1;
+        }
+        boolean current = contains(weekMinute);
+        for (int offset = 1; offset < MINUTES_PER_WEEK; offset++) {
+            int minute = weekMinute + offset;
+            if (minute >= MINUTES_PER_WEEK) {
+                minute -= MINUTES_PER_WEEK;
+            }
+            if (contains(minute) != current) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 解析 "HH:mm" 格式的时间
+     *
+     * @return 从零点开始的分钟数, 格式错误时返回-1
+     */
+    public static int parseTime(String time) {
+        if (time == null) {
+            return -1;
+        }
+        int hour = 0;
+        int minute = 0;
+        boolean seenColon = false;
+        int digits = 0;
+        for (int i = 0; i < time.length(); i++) {
+            char c = time.charAt(i);
+            if (c == ' ') {
+                continue;
+            }
+            if (c == ':') {
+                if (seenColon || digits == 0) return -1;
+                seenColon = true;
+                digits = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (++digits > 2) return -1;
+                if (seenColon) {
+                    minute = minute * 10 + (c - '0');
+                } else {
+                    hour = hour * 10 + (c - '0');
+                }
+            } else {
+                return -1;
+            }
+        }
+        if (!seenColon || digits == 0 || hour > 23 || minute > 59) {
+            return -1;
+        }
+        return hour * 60 + minute;
+    }
+}
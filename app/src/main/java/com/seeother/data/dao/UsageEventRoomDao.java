@@ -0,0 +1,116 @@
+package com.seeother.data.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.seeother.data.entity.DwellBucketCount;
+import com.seeother.data.entity.UsageDwellBucket;
+import com.seeother.data.entity.UsageEvent;
+import com.seeother.data.entity.UsageRollupDay;
+import com.seeother.data.entity.UsageRollupMonth;
+
+import java.util.List;
+
+/**
+ * 使用事件及汇总 Room DAO
+ */
+@Dao
+public interface UsageEventRoomDao {
+
+    @Insert
+    void insertEvents(List<UsageEvent> events);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertDayRollup(UsageRollupDay rollup);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertMonthRollup(UsageRollupMonth rollup);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertDwellBucket(UsageDwellBucket bucket);
+
+    @Query("UPDATE usage_rollup_day SET eventCount = eventCount + :eventCount, dwellMillis = dwellMillis + :dwellMillis " +
+            "WHERE epochDay = :epochDay AND packageName = :packageName AND type = :type")
+    void addToDayRollup(int epochDay, String packageName, int type, int eventCount, long dwellMillis);
+
+    @Query("UPDATE usage_rollup_month SET eventCount = eventCount + :eventCount, dwellMillis = dwellMillis + :dwellMillis " +
+            "WHERE month = :month AND packageName = :packageName AND type = :type")
+    void addToMonthRollup(int month, String packageName, int type, int eventCount, long dwellMillis);
+
+    @Query("UPDATE usage_dwell_bucket SET itemCount = itemCount + :itemCount " +
+            "WHERE epochDay = :epochDay AND packageName = :packageName AND bucket = :bucket")
+    void addToDwellBucket(int epochDay, String packageName, int bucket, int itemCount);
+
+    /**
+     * 在同一个事务中写入一批事件并累加对应的汇总行
+     *
+     * @param dayDeltas   本批事件按天合并后的增量
+     * @param monthDeltas 本批事件按月合并后的增量
+     * @param dwellDeltas 本批事件停留时长直方图的增量
+     */
+    @Transaction
+    default void append(List<UsageEvent> events, List<UsageRollupDay> dayDeltas, List<UsageRollupMonth> monthDeltas,
+                        List<UsageDwellBucket> dwellDeltas) {
+        if (!events.isEmpty()) {
+            insertEvents(events);
+        }
+        for (UsageRollupDay delta : dayDeltas) {
+            // 行不存在时直接插入增量, 否则在原有行上累加
+            if (insertDayRollup(delta) == -1) {
+                addToDayRollup(delta.getEpochDay(), delta.getPackageName(), delta.getType(),
+                        delta.getEventCount(), delta.getDwellMillis());
+            }
+        }
+        for (UsageRollupMonth delta : monthDeltas) {
+            if (insertMonthRollup(delta) == -1) {
+                addToMonthRollup(delta.getMonth(), delta.getPackageName(), delta.getType(),
+                        delta.getEventCount(), delta.getDwellMillis());
+            }
+        }
+        for (UsageDwellBucket delta : dwellDeltas) {
+            if (insertDwellBucket(delta) == -1) {
+                addToDwellBucket(delta.getEpochDay(), delta.getPackageName(), delta.getBucket(), delta.getItemCount());
+            }
+        }
+    }
+
+    @Query("SELECT * FROM usage_rollup_day WHERE epochDay = :epochDay AND packageName = :packageName AND type = :type")
+    UsageRollupDay getDayRollup(int epochDay, String packageName, int type);
+
+    @Query("SELECT * FROM usage_rollup_month WHERE month = :month AND packageName = :packageName AND type = :type")
+    UsageRollupMonth getMonthRollup(int month, String packageName, int type);
+
+    @Query("SELECT * FROM usage_rollup_day WHERE epochDay = :epochDay AND type = :type AND packageName != '' " +
+            "ORDER BY eventCount DESC")
+    List<UsageRollupDay> getDayRollupsByApp(int epochDay, int type);
+
+    @Query("SELECT * FROM usage_rollup_month WHERE month = :month AND type = :type AND packageName != '' " +
+            "ORDER BY eventCount DESC")
+    List<UsageRollupMonth> getMonthRollupsByApp(int month, int type);
+
+    @Query("SELECT bucket, SUM(itemCount) AS itemCount FROM usage_dwell_bucket " +
+            "WHERE packageName = :packageName AND epochDay BETWEEN :fromDay AND :toDay GROUP BY bucket")
+    List<DwellBucketCount> getDwellBuckets(String packageName, int fromDay, int toDay);
+
+    /**
+     * 一段日期内(包含两端)按天汇总的停留时长之和, 按主键范围读取
+     */
+    @Query("SELECT COALESCE(SUM(dwellMillis), 0) FROM usage_rollup_day " +
+            "WHERE epochDay BETWEEN :fromDay AND :toDay AND packageName = :packageName AND type = :type")
+    long getDwellMillisBetween(String packageName, int type, int fromDay, int toDay);
+
+    @Query("SELECT * FROM usage_event WHERE timestamp >= :from AND timestamp < :to ORDER BY timestamp ASC")
+    List<UsageEvent> getEventsBetween(long from, long to);
+
+    @Query("DELETE FROM usage_event WHERE timestamp < :before")
+    int deleteEventsBefore(long before);
+
+    @Query("DELETE FROM usage_rollup_day WHERE epochDay < :epochDay")
+    int deleteDayRollupsBefore(int epochDay);
+
+    @Query("DELETE FROM usage_dwell_bucket WHERE epochDay < :epochDay")
+    int deleteDwellBucketsBefore(int epochDay);
+}
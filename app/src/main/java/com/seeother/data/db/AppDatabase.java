@@ -5,21 +5,32 @@ import android.content.Context;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.seeother.data.dao.AppGuardRuleRoomDao;
 import com.seeother.data.dao.MonitoredAppRoomDao;
 import com.seeother.data.dao.RecommendAppRoomDao;
+import com.seeother.data.dao.UsageEventRoomDao;
 import com.seeother.data.entity.AppGuardRule;
 import com.seeother.data.entity.MonitoredApp;
 import com.seeother.data.entity.RecommendApp;
+import com.seeother.data.entity.UsageDwellBucket;
+import com.seeother.data.entity.UsageEvent;
+import com.seeother.data.entity.UsageRollupDay;
+import com.seeother.data.entity.UsageRollupMonth;
 
 @Database(
         entities = {
                 MonitoredApp.class,
                 RecommendApp.class,
-                AppGuardRule.class
+                AppGuardRule.class,
+                UsageEvent.class,
+                UsageRollupDay.class,
+                UsageRollupMonth.class,
+                UsageDwellBucket.class
         },
-        version = 1,
+        version = 3,
         exportSchema = false
 )
 public abstract class AppDatabase extends RoomDatabase {
@@ -27,6 +38,36 @@ public abstract class AppDatabase extends RoomDatabase {
     private static final String DATABASE_NAME = "room.db";
     private static volatile AppDatabase INSTANCE;
 
+    /**
+     * 版本2: 新增使用事件表及按天/按月汇总表
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `usage_event` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`packageName` TEXT NOT NULL, `type` INTEGER NOT NULL, `timestamp` INTEGER NOT NULL, " +
+                    "`dwellMillis` INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_usage_event_timestamp` ON `usage_event` (`timestamp`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `usage_rollup_day` (`epochDay` INTEGER NOT NULL, " +
+                    "`packageName` TEXT NOT NULL, `type` INTEGER NOT NULL, `eventCount` INTEGER NOT NULL, " +
+                    "`dwellMillis` INTEGER NOT NULL, PRIMARY KEY(`epochDay`, `packageName`, `type`))");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `usage_rollup_month` (`month` INTEGER NOT NULL, " +
+                    "`packageName` TEXT NOT NULL, `type` INTEGER NOT NULL, `eventCount` INTEGER NOT NULL, " +
+                    "`dwellMillis` INTEGER NOT NULL, PRIMARY KEY(`month`, `packageName`, `type`))");
+        }
+    };
+
+    /**
+     * 版本3: 新增停留时长直方图表
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `usage_dwell_bucket` (`epochDay` INTEGER NOT NULL, " +
+                    "`packageName` TEXT NOT NULL, `bucket` INTEGER NOT NULL, `itemCount` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`epochDay`, `packageName`, `bucket`))");
+        }
+    };
 
     public static AppDatabase getInstance(Context context) {
         if (INSTANCE == null) {
@@ -37,6 +78,7 @@ public abstract class AppDatabase extends RoomDatabase {
                                     AppDatabase.class,
                                     DATABASE_NAME
                             )
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3)
                             .allowMainThreadQueries() // 允许主线程查询，生产环境建议移除
                             .build();
                 }
@@ -54,4 +96,6 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract RecommendAppRoomDao recommendAppDao();
 
     public abstract AppGuardRuleRoomDao appGuardRuleDao();
+
+    public abstract UsageEventRoomDao usageEventDao();
 } 
\ No newline at end of file
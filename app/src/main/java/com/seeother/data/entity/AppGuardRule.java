@@ -4,11 +4,13 @@ import androidx.room.Entity;
 import androidx.room.Ignore;
 import androidx.room.PrimaryKey;
 
+import com.seeother.guard.GuardRule;
+
 /**
  * 应用守卫规则实体
  */
 @Entity(tableName = "app_guard_rules")
-public class AppGuardRule {
+public class AppGuardRule implements GuardRule {
     @PrimaryKey(autoGenerate = true)
     private int id;
 
@@ -47,6 +49,12 @@ public class AppGuardRule {
      */
     private String remark;
 
+    /**
+     * 解析后的无障碍事件类型缓存, -1表示尚未解析
+     */
+    @Ignore
+    private int accessibilityEventType = -1;
+
     // 构造函数
     public AppGuardRule() {
         this.eventType = "S"; // 默认为TYPE_VIEW_SCROLLED
@@ -90,6 +98,7 @@ public class AppGuardRule {
 
     public void setEventType(String eventType) {
         this.eventType = eventType;
+        this.accessibilityEventType = -1;
     }
 
     public String getActivityName() {
@@ -134,19 +143,39 @@ public class AppGuardRule {
     }
 
     /**
-     * 检查事件类型是否匹配
+     * 获取规则对应的无障碍事件类型
+     *
+     * @return 未知类型返回0
      */
-    public boolean matchesEventType(int accessibilityEventType) {
+    public int getAccessibilityEventType() {
+        if (accessibilityEventType == -1) {
+            accessibilityEventType = parseEventType(eventType);
+        }
+        return accessibilityEventType;
+    }
+
+    private static int parseEventType(String eventType) {
+        if (eventType == null) {
+            return 0;
+        }
         switch (eventType) {
             case "S":
-                return accessibilityEventType == android.view.accessibility.AccessibilityEvent.TYPE_VIEW_SCROLLED;
+                return android.view.accessibility.AccessibilityEvent.TYPE_VIEW_SCROLLED;
             case "C":
-                return accessibilityEventType == android.view.accessibility.AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED;
+                return android.view.accessibility.AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED;
             default:
-                return false;
+                return 0;
         }
     }
 
+    /**
+     * 检查事件类型是否匹配
+     */
+    public boolean matchesEventType(int accessibilityEventType) {
+        int type = getAccessibilityEventType();
+        return type != 0 && type == accessibilityEventType;
+    }
+
     /**
      * 检查Activity是否匹配
      */
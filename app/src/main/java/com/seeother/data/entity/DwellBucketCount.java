@@ -0,0 +1,9 @@
+package com.seeother.data.entity;
+
+/**
+ * 一段时间内某个停留时长桶的合计次数, 查询结果
+ */
+public class DwellBucketCount {
+    public int bucket;
+    public int itemCount;
+}
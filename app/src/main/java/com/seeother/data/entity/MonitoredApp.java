@@ -1,7 +1,5 @@
 package com.seeother.data.entity;
 
-import android.graphics.drawable.Drawable;
-
 import androidx.room.Entity;
 import androidx.room.Ignore;
 import androidx.room.PrimaryKey;
@@ -22,8 +20,6 @@ public class MonitoredApp {
     // These fields are not stored in database
     @Ignore
     private String appName;
-    @Ignore
-    private Drawable appIcon;
 
     // Default constructor for Room
     public MonitoredApp() {
@@ -41,15 +37,14 @@ public class MonitoredApp {
         this.pkgName = pkgName;
     }
 
-    // New constructor including appName and appIcon
+    // New constructor including appName
     @Ignore
-    public MonitoredApp(boolean enableGrayMode, String pkgName, String appName, Drawable appIcon) {
+    public MonitoredApp(boolean enableGrayMode, String pkgName, String appName) {
         this();
         this.enableGrayMode = enableGrayMode;
         this.enableHighContrast = false;
         this.pkgName = pkgName;
         this.appName = appName;
-        this.appIcon = appIcon;
     }
 
     // Original Getters and Setters
@@ -95,14 +90,6 @@ public class MonitoredApp {
         this.appName = appName;
     }
 
-    public Drawable getAppIcon() {
-        return appIcon;
-    }
-
-    public void setAppIcon(Drawable appIcon) {
-        this.appIcon = appIcon;
-    }
-
     // 守卫相关字段的 getter 和 setter
     public boolean isGuardEnabled() {
         return guardEnabled;
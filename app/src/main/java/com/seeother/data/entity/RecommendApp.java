@@ -1,7 +1,5 @@
 package com.seeother.data.entity;
 
-import android.graphics.drawable.Drawable;
-
 import androidx.room.Entity;
 import androidx.room.Ignore;
 import androidx.room.PrimaryKey;
@@ -16,19 +14,16 @@ public class RecommendApp {
     // These fields are not stored in database
     @Ignore
     private String appName;
-    @Ignore
-    private Drawable appIcon;
 
     // Default constructor for Room
     public RecommendApp() {}
 
     // Constructor with parameters
     @Ignore
-    public RecommendApp(int weight, String pkgName, String appName, Drawable appIcon) {
+    public RecommendApp(int weight, String pkgName, String appName) {
         this.weight = weight;
         this.pkgName = pkgName;
         this.appName = appName;
-        this.appIcon = appIcon;
     }
 
     // Getters and Setters
@@ -63,12 +58,4 @@ public class RecommendApp {
     public void setAppName(String appName) {
         this.appName = appName;
     }
-
-    public Drawable getAppIcon() {
-        return appIcon;
-    }
-
-    public void setAppIcon(Drawable appIcon) {
-        this.appIcon = appIcon;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.seeother.data.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+
+/**
+ * 按天、按应用保存的停留时长直方图, 每个非空的桶一行
+ * 桶的划分见 {@link com.seeother.guard.stats.DwellHistogram}, 行数与内容数量无关
+ */
+@Entity(tableName = "usage_dwell_bucket", primaryKeys = {"epochDay", "packageName", "bucket"})
+public class UsageDwellBucket {
+    /**
+     * 从 1970-01-01 开始的天数(本地时区)
+     */
+    private int epochDay;
+
+    @NonNull
+    private String packageName = UsageEvent.ALL_PACKAGES;
+
+    private int bucket;
+
+    private int itemCount;
+
+    public UsageDwellBucket() {
+    }
+
+    @Ignore
+    public UsageDwellBucket(int epochDay, @NonNull String packageName, int bucket) {
+        this.epochDay = epochDay;
+        this.packageName = packageName;
+        this.bucket = bucket;
+    }
+
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    public void setEpochDay(int epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    @NonNull
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public void setPackageName(@NonNull String packageName) {
+        this.packageName = packageName;
+    }
+
+    public int getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(int bucket) {
+        this.bucket = bucket;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(int itemCount) {
+        this.itemCount = itemCount;
+    }
+}
@@ -0,0 +1,103 @@
+package com.seeother.data.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * 使用事件实体
+ * 原始事件只保留一段时间, 按天/按月的汇总在写入时同步更新到 usage_rollup_day 和 usage_rollup_month
+ */
+@Entity(tableName = "usage_event", indices = {@Index("timestamp")})
+public class UsageEvent {
+    /**
+     * 打开少用应用
+     */
+    public static final int TYPE_MONITORED_APP_OPEN = 1;
+    /**
+     * 浏览一个短视频
+     */
+    public static final int TYPE_SHORT_VIDEO = 2;
+    /**
+     * 一个短视频的停留时长, 在视频结束时记录。
+     * 汇总时计入 TYPE_SHORT_VIDEO 的停留时长, 不计入次数(次数在识别到视频时已经记录)
+     */
+    public static final int TYPE_SHORT_VIDEO_DWELL = 3;
+
+    /**
+     * 汇总表中表示所有应用合计的包名
+     */
+    public static final String ALL_PACKAGES = "";
+
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+
+    @NonNull
+    private String packageName = ALL_PACKAGES;
+
+    private int type;
+
+    /**
+     * 事件发生时间(毫秒)
+     */
+    private long timestamp;
+
+    /**
+     * 停留时长(毫秒), 未知时为0
+     */
+    private long dwellMillis;
+
+    public UsageEvent() {
+    }
+
+    @Ignore
+    public UsageEvent(@NonNull String packageName, int type, long timestamp, long dwellMillis) {
+        this.packageName = packageName;
+        this.type = type;
+        this.timestamp = timestamp;
+        this.dwellMillis = dwellMillis;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @NonNull
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public void setPackageName(@NonNull String packageName) {
+        this.packageName = packageName;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public long getDwellMillis() {
+        return dwellMillis;
+    }
+
+    public void setDwellMillis(long dwellMillis) {
+        this.dwellMillis = dwellMillis;
+    }
+}
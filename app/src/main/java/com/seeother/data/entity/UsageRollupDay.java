@@ -0,0 +1,77 @@
+package com.seeother.data.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+
+/**
+ * 按天汇总的使用统计
+ * 每个应用一行, 另有包名为 {@link UsageEvent#ALL_PACKAGES} 的合计行, 读取合计只需一次主键查询
+ */
+@Entity(tableName = "usage_rollup_day", primaryKeys = {"epochDay", "packageName", "type"})
+public class UsageRollupDay {
+    /**
+     * 从 1970-01-01 开始的天数(本地时区)
+     */
+    private int epochDay;
+
+    @NonNull
+    private String packageName = UsageEvent.ALL_PACKAGES;
+
+    private int type;
+
+    private int eventCount;
+
+    private long dwellMillis;
+
+    public UsageRollupDay() {
+    }
+
+    @Ignore
+    public UsageRollupDay(int epochDay, @NonNull String packageName, int type) {
+        this.epochDay = epochDay;
+        this.packageName = packageName;
+        this.type = type;
+    }
+
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    public void setEpochDay(int epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    @NonNull
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public void setPackageName(@NonNull String packageName) {
+        this.packageName = packageName;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(int eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    public long getDwellMillis() {
+        return dwellMillis;
+    }
+
+    public void setDwellMillis(long dwellMillis) {
+        this.dwellMillis = dwellMillis;
+    }
+}
@@ -0,0 +1,77 @@
+package com.seeother.data.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+
+/**
+ * 按月汇总的使用统计
+ * 每个应用一行, 另有包名为 {@link UsageEvent#ALL_PACKAGES} 的合计行, 读取合计只需一次主键查询
+ */
+@Entity(tableName = "usage_rollup_month", primaryKeys = {"month", "packageName", "type"})
+public class UsageRollupMonth {
+    /**
+     * 年 * 12 + 月(0-11), 本地时区
+     */
+    private int month;
+
+    @NonNull
+    private String packageName = UsageEvent.ALL_PACKAGES;
+
+    private int type;
+
+    private int eventCount;
+
+    private long dwellMillis;
+
+    public UsageRollupMonth() {
+    }
+
+    @Ignore
+    public UsageRollupMonth(int month, @NonNull String packageName, int type) {
+        this.month = month;
+        this.packageName = packageName;
+        this.type = type;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    public void setMonth(int month) {
+        this.month = month;
+    }
+
+    @NonNull
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public void setPackageName(@NonNull String packageName) {
+        this.packageName = packageName;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(int eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    public long getDwellMillis() {
+        return dwellMillis;
+    }
+
+    public void setDwellMillis(long dwellMillis) {
+        this.dwellMillis = dwellMillis;
+    }
+}
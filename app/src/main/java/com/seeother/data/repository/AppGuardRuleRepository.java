@@ -87,6 +87,11 @@ public class AppGuardRuleRepository {
         return appGuardRuleDao.getRuleCount();
     }
 
+    // 在仓库的后台线程中执行任务
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
     /**
      * 关闭资源
      */
@@ -0,0 +1,84 @@
+package com.seeother.manager;
+
+import android.graphics.Rect;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.seeother.guard.NodeView;
+
+import java.util.List;
+
+/**
+ * AccessibilityNodeInfo 到 NodeView 的适配
+ */
+public final class AccessibilityNodeView implements NodeView {
+    private final AccessibilityNodeInfo node;
+    private Rect bounds;
+
+    private AccessibilityNodeView(AccessibilityNodeInfo node) {
+        this.node = node;
+    }
+
+    public static AccessibilityNodeView wrap(AccessibilityNodeInfo node) {
+        return node != null ? new AccessibilityNodeView(node) : null;
+    }
+
+    public AccessibilityNodeInfo unwrap() {
+        return node;
+    }
+
+    @Override
+    public int getChildCount() {
+        return node.getChildCount();
+    }
+
+    @Override
+    public NodeView getChild(int index) {
+        return wrap(node.getChild(index));
+    }
+
+    @Override
+    public CharSequence getText() {
+        return node.getText();
+    }
+
+    @Override
+    public String getViewIdResourceName() {
+        return node.getViewIdResourceName();
+    }
+
+    @Override
+    public CharSequence getClassName() {
+        return node.getClassName();
+    }
+
+    @Override
+    public void getBoundsInScreen(int[] outBounds) {
+        if (bounds == null) {
+            bounds = new Rect();
+        }
+        node.getBoundsInScreen(bounds);
+        outBounds[0] = bounds.left;
+        outBounds[1] = bounds.top;
+        outBounds[2] = bounds.right;
+        outBounds[3] = bounds.bottom;
+    }
+
+    @Override
+    public void recycle() {
+        node.recycle();
+    }
+
+    @Override
+    public String findTextByViewId(String viewId) {
+        List<AccessibilityNodeInfo> nodes = node.findAccessibilityNodeInfosByViewId(viewId);
+        if (nodes == null || nodes.isEmpty()) {
+            return null;
+        }
+        String text = nodes.get(0).getText() != null ? nodes.get(0).getText().toString() : "";
+        // 回收节点
+        for (AccessibilityNodeInfo found : nodes) {
+            found.recycle();
+        }
+        return text;
+    }
+}
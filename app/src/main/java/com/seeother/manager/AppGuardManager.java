@@ -1,21 +1,30 @@
 package com.seeother.manager;
 
 import android.content.Context;
-import android.content.Intent;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.accessibility.AccessibilityNodeInfo;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-import androidx.room.RoomDatabase;
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
 
+import com.seeother.common.AppPolicy;
 import com.seeother.data.entity.AppGuardRule;
 import com.seeother.data.repository.AppGuardRuleRepository;
-import com.seeother.data.entity.MonitoredApp;
-import com.seeother.data.db.MonitoredAppDao;
-
-import java.time.LocalTime;
+import com.seeother.data.db.AppDatabase;
+import com.seeother.guard.GuardClock;
+import com.seeother.guard.GuardDecisionEngine;
+import com.seeother.guard.GuardExtractor;
+import com.seeother.guard.GuardRuleMatcher;
+import com.seeother.guard.NodePathCache;
+import com.seeother.guard.NodeSearchEngine;
+import com.seeother.guard.stats.DwellTracker;
+import com.seeother.service.ServiceEventBus;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -25,24 +34,66 @@ import java.util.Set;
  */
 public class AppGuardManager {
     private static final String TAG = "AppGuardManager";
-    private final Set<String> authorSet = new HashSet<>(); // 存储作者名称集合
+    private final GuardClock clock;
+    private final GuardDecisionEngine decisionEngine; // 按应用统计作者数量
     private final Context context;
-    private final List<AppGuardRule> currentAppRules; // 当前应用的规则
-    private long lastHandleTime = 0; // 全局的上次处理时间
     private final AppGuardRuleRepository repository;
-    private String currentPackageName; // 当前加载规则的包名
+    // 规则索引, 规则表变化时整体替换
+    private volatile GuardRuleIndex ruleIndex;
+    private final Object ruleIndexLock = new Object();
+    private final InvalidationTracker.Observer ruleTableObserver = new InvalidationTracker.Observer("app_guard_rules") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            rebuildRuleIndex();
+        }
+    };
+    private boolean ruleObserverRegistered = false;
+    // destroy 之后仍在处理中的事件不再访问数据库和统计
+    private volatile boolean destroyed = false;
     private final SettingsManager settingsManager;
-    private final MonitoredAppDao monitoredAppDao;
+    private final AppPolicyManager appPolicyManager;
     private final StatisticsManager statisticsManager;
+    // 单个视频停留时长的上限, 避免锁屏等空闲时间被计入
+    private static final long MAX_DWELL_MILLIS = 10 * 60 * 1000;
+    private final DwellTracker dwellTracker;
+    // 作者提取(包括节点路径缓存和节点树搜索), 只在守卫处理线程中使用
+    private final GuardExtractor<AppGuardRule> extractor;
+    // 特殊符号搜索预算: 最多2000个节点, 20层深度, 30毫秒
+    private static final NodeSearchEngine.Budget SYMBOL_SEARCH_BUDGET =
+            new NodeSearchEngine.Budget(2000, 20, 30_000_000L);
+    // 热启动快照, 只有无障碍服务中的实例才会启用
+    private static final int SNAPSHOT_VERSION = 1;
+    private WarmStartStore warmStartStore;
+    private final WarmStartStore.Section snapshotSection = new WarmStartStore.Section() {
+        @Override
+        public int getSectionId() {
+            return WarmStartStore.SECTION_GUARD;
+        }
+
+        @Override
+        public void write(DataOutputStream out) throws IOException {
+            writeSnapshot(out);
+        }
+    };
 
     public AppGuardManager(Context context) {
+        this(context, GuardClock.SYSTEM);
+    }
+
+    /**
+     * @param clock 守卫逻辑使用的时钟, 时间戳标识和雷打不动时间段都按它计算
+     */
+    public AppGuardManager(Context context, GuardClock clock) {
         this.context = context;
-        this.currentAppRules = new ArrayList<>();
+        this.clock = clock;
+        this.decisionEngine = new GuardDecisionEngine(clock, ScheduleManager.getInstance(context)::isInUnshakableTime);
+        this.extractor = new GuardExtractor<>(new NodeSearchEngine(clock), clock, new NodePathCache(),
+                AppGuardRule::getId, SYMBOL_SEARCH_BUDGET);
         this.repository = new AppGuardRuleRepository(context);
-        this.currentPackageName = "";
-        this.settingsManager = new SettingsManager(context);
-        this.monitoredAppDao = new MonitoredAppDao(context);
-        this.statisticsManager = new StatisticsManager(context);
+        this.settingsManager = SettingsManager.getInstance(context);
+        this.appPolicyManager = AppPolicyManager.getInstance(context);
+        this.statisticsManager = StatisticsManager.getInstance(context);
+        this.dwellTracker = new DwellTracker(statisticsManager::recordShortVideoDwell, MAX_DWELL_MILLIS);
     }
 
     /**
@@ -65,28 +116,160 @@ public class AppGuardManager {
     }
 
     /**
-     * 从数据库加载指定包名的规则
+     * 获取规则索引, 首次使用时从数据库构建并开始监听规则表变化
      */
-    private void loadRulesForPackage(String packageName) {
-        if (packageName == null || packageName.equals(currentPackageName)) {
-            return; // 如果是相同包名，不重复加载
+    private GuardRuleIndex getRuleIndex() {
+        GuardRuleIndex index = ruleIndex;
+        if (index != null) {
+            return index;
         }
+        synchronized (ruleIndexLock) {
+            if (destroyed) {
+                // 数据库已关闭, 不再构建索引和注册监听
+                return GuardRuleIndex.EMPTY;
+            }
+            if (ruleIndex == null) {
+                if (!ruleObserverRegistered) {
+                    AppDatabase.getInstance(context).getInvalidationTracker().addObserver(ruleTableObserver);
+                    ruleObserverRegistered = true;
+                }
+                ruleIndex = GuardRuleIndex.build(repository.getAllRulesSync(), clock);
+                Log.d(TAG, "构建守卫规则索引, 共 " + ruleIndex.getRuleCount() + " 个规则");
+            }
+            return ruleIndex;
+        }
+    }
 
-        List<AppGuardRule> packageRules = repository.getRulesForPackageSync(packageName);
-
-        synchronized (currentAppRules) {
-            currentAppRules.clear();
-            currentAppRules.addAll(packageRules);
-            currentPackageName = packageName;
+    /**
+     * 重新从数据库构建规则索引
+     */
+    private void rebuildRuleIndex() {
+        synchronized (ruleIndexLock) {
+            if (destroyed) {
+                return;
+            }
+            try {
+                ruleIndex = GuardRuleIndex.build(repository.getAllRulesSync(), clock);
+                Log.d(TAG, "规则表已变化, 重新构建索引, 共 " + ruleIndex.getRuleCount() + " 个规则");
+                markSnapshotDirty();
+            } catch (Exception e) {
+                Log.e(TAG, "重新构建规则索引失败", e);
+                ruleIndex = null; // 下次使用时重试
+            }
         }
+    }
 
-        // 切换应用时清空作者集合
-        synchronized (authorSet) {
-            authorSet.clear();
+    /**
+     * 切换当前处理的包名, 切换应用时清空作者集合
+     */
+    private void switchPackage(String packageName) {
+        if (decisionEngine.switchPackage(packageName)) {
             Log.d(TAG, "切换应用，清空作者集合");
+            markSnapshotDirty();
         }
+    }
 
-        Log.d(TAG, "为包名 " + packageName + " 加载了 " + packageRules.size() + " 个守卫规则");
+    /**
+     * 前台应用切换, 离开短视频应用时结束当前视频的计时
+     */
+    public void onForegroundChanged(String packageName) {
+        if (destroyed) {
+            return;
+        }
+        dwellTracker.onForeground(packageName, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * 启用热启动快照: 恢复上次保存的规则索引和作者计数, 之后状态变化时写入快照
+     * 恢复的规则索引会立即在后台从数据库重建校验
+     */
+    public void enableWarmStart() {
+        if (warmStartStore != null || destroyed) {
+            return;
+        }
+        warmStartStore = WarmStartStore.getInstance(context);
+        DataInputStream in = warmStartStore.restore(WarmStartStore.SECTION_GUARD);
+        if (in != null) {
+            try {
+                restoreSnapshot(in);
+            } catch (IOException e) {
+                Log.w(TAG, "恢复守卫快照失败: " + e.getMessage());
+            }
+        }
+        warmStartStore.register(snapshotSection);
+    }
+
+    private void restoreSnapshot(DataInputStream in) throws IOException {
+        if (in.readByte() != SNAPSHOT_VERSION) {
+            return;
+        }
+        int ruleCount = in.readInt();
+        List<AppGuardRule> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            AppGuardRule rule = new AppGuardRule(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+                    in.readBoolean(), in.readUTF(), in.readUTF());
+            rule.setId(in.readInt());
+            rules.add(rule);
+        }
+        String packageName = in.readUTF();
+        int authorCount = in.readInt();
+        List<String> authors = new ArrayList<>(authorCount);
+        for (int i = 0; i < authorCount; i++) {
+            authors.add(in.readUTF());
+        }
+
+        synchronized (ruleIndexLock) {
+            if (destroyed) {
+                // 已经销毁, 不再注册监听和重建
+                return;
+            }
+            if (ruleIndex == null && !rules.isEmpty()) {
+                if (!ruleObserverRegistered) {
+                    AppDatabase.getInstance(context).getInvalidationTracker().addObserver(ruleTableObserver);
+                    ruleObserverRegistered = true;
+                }
+                ruleIndex = GuardRuleIndex.build(rules, clock);
+                // destroy 之前提交的重建会在执行时检查 destroyed
+                repository.execute(this::rebuildRuleIndex);
+            }
+        }
+        if (!packageName.isEmpty()) {
+            decisionEngine.restore(packageName, authors);
+        }
+        Log.d(TAG, "从快照恢复守卫状态, 规则: " + ruleCount + ", 应用: " + packageName + ", 作者: " + authorCount);
+    }
+
+    private void writeSnapshot(DataOutputStream out) throws IOException {
+        GuardRuleIndex index = ruleIndex;
+        List<AppGuardRule> rules = index != null ? index.getAllRules() : new ArrayList<>();
+        out.writeByte(SNAPSHOT_VERSION);
+        out.writeInt(rules.size());
+        for (AppGuardRule rule : rules) {
+            out.writeUTF(nonNull(rule.getPackageName()));
+            out.writeUTF(nonNull(rule.getEventType()));
+            out.writeUTF(nonNull(rule.getActivityName()));
+            out.writeUTF(nonNull(rule.getViewId()));
+            out.writeBoolean(rule.isUseSpecialSymbol());
+            out.writeUTF(nonNull(rule.getSpecialSymbol()));
+            out.writeUTF(nonNull(rule.getRemark()));
+            out.writeInt(rule.getId());
+        }
+        List<String> authors = decisionEngine.getAuthors();
+        out.writeUTF(nonNull(decisionEngine.getCurrentPackageName()));
+        out.writeInt(authors.size());
+        for (String author : authors) {
+            out.writeUTF(author);
+        }
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    private void markSnapshotDirty() {
+        if (warmStartStore != null) {
+            warmStartStore.markDirty();
+        }
     }
 
     /**
@@ -209,32 +392,51 @@ public class AppGuardManager {
         return defaultRules;
     }
 
+    /**
+     * 获取应用的事件合并间隔(毫秒)
+     *
+     * @return 应用未被监控或未启用守卫时返回-1
+     */
+    public long getGuardInterval(String packageName) {
+        if (packageName == null) {
+            return -1;
+        }
+        AppPolicy policy = appPolicyManager.getPolicy(packageName);
+        if (!policy.isGuardEnabled()) {
+            return -1;
+        }
+        return Math.max(0, policy.getBroadcastInterval());
+    }
+
+    /**
+     * 获取应用守卫规则需要的无障碍事件类型
+     *
+     * @return 应用未被监控、未启用守卫或没有规则时返回0
+     */
+    public int getGuardEventTypes(String packageName) {
+        if (getGuardInterval(packageName) < 0) {
+            return 0;
+        }
+        return getRuleIndex().getEventTypes(packageName);
+    }
+
     /**
      * 检查是否应该处理当前事件
      */
     public boolean shouldProcessEvent(int eventType, String packageName, String activityName) {
-        if (packageName == null) {
+        if (packageName == null || destroyed) {
             return false;
         }
 
         // 首先检查该应用是否在监控列表中且启用了守卫
-        MonitoredApp monitoredApp = monitoredAppDao.getAppByPkgName(packageName);
-        if (monitoredApp == null || !monitoredApp.isGuardEnabled()) {
+        if (!appPolicyManager.getPolicy(packageName).isGuardEnabled()) {
             return false;
         }
 
-        // 按需加载当前包名的规则
-        loadRulesForPackage(packageName);
+        switchPackage(packageName);
 
 //        Log.d(TAG, "shouldProcessEvent: eventType: " + eventType + ", packageName: " + packageName + ", activityName: " + activityName);
-        synchronized (currentAppRules) {
-            for (AppGuardRule rule : currentAppRules) {
-                if (rule.matchesEventType(eventType) && rule.matchesActivity(activityName)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return !getRuleIndex().match(packageName, eventType, activityName).isEmpty();
     }
 
     /**
@@ -242,215 +444,90 @@ public class AppGuardManager {
      */
     public void processEvent(int eventType, String packageName, String activityName,
                              AccessibilityNodeInfo rootNode) {
-        if (rootNode == null) {
+        if (rootNode == null || destroyed) {
             return;
         }
 
         // 获取监控应用的配置
-        MonitoredApp monitoredApp = monitoredAppDao.getAppByPkgName(packageName);
-        if (monitoredApp == null || !monitoredApp.isGuardEnabled()) {
+        AppPolicy monitoredApp = appPolicyManager.getPolicy(packageName);
+        if (!monitoredApp.isGuardEnabled()) {
             return;
         }
 
-        // 确保当前包名的规则已加载
-        loadRulesForPackage(packageName);
-
-        synchronized (currentAppRules) {
-            for (AppGuardRule rule : currentAppRules) {
-                if (!rule.matchesEventType(eventType) || !rule.matchesActivity(activityName)) {
-                    continue;
-                }
+        switchPackage(packageName);
 
-                // 事件处理间隔
-                long currentTime = System.currentTimeMillis();
-                if (currentTime - lastHandleTime < monitoredApp.getBroadcastInterval()) {
-                    continue;
-                }
-                lastHandleTime = currentTime;
-
-                String authorName = extractAuthorName(rule, rootNode);
-
-                if (authorName != null && !authorName.isEmpty()) {
-                    // 检查是否在雷打不动时间段内
-                    if (settingsManager.isInUnshakableTime() && !settingsManager.getPauseEnabled()) {
-                        Log.d(TAG, "处于雷打不动时间段，直接发送守卫广播");
-                        sendBroadcast();
-                        break;
-                    }
-                    
-                    // 添加到作者集合中
-                    synchronized (authorSet) {
-                        authorSet.add(authorName);
-                        
-                        // 统计短视频浏览次数
-                        boolean reachedVideoThreshold = statisticsManager.incrementShortVideoCount();
-                        if (reachedVideoThreshold) {
-                            // 达到阈值，显示统计信息
-                            showVideoStatistics();
-                        }
-                        
-                        Log.d(TAG, "添加作者: " + authorName + ", 当前数量: " + authorSet.size() + "/" + monitoredApp.getScrollCount());
-
-                        // 检查是否达到浏览个数阈值
-                        if (authorSet.size() >= monitoredApp.getScrollCount() && !settingsManager.getPauseEnabled()) {
-                            sendBroadcast();
-                            authorSet.clear(); // 清空集合，重新开始计数
-                            Log.d(TAG, "发送守卫广播: " + packageName + " - " + authorName + ", 已达到阈值: " + monitoredApp.getScrollCount());
-                        }
-                    }
-                    break; // 找到匹配的规则后就退出
-                }
-            }
-        }
-    }
-
-    /**
-     * 根据规则提取作者名称
-     */
-    private String extractAuthorName(AppGuardRule rule, AccessibilityNodeInfo rootNode) {
-        try {
-            if (rule.hasViewId()) {
-                // 通过ViewId获取文本
-                List<AccessibilityNodeInfo> nodes = rootNode.findAccessibilityNodeInfosByViewId(rule.getViewId());
-                if (nodes != null && !nodes.isEmpty()) {
-                    String text = nodes.get(0).getText() != null ? nodes.get(0).getText().toString() : "";
-                    // 回收节点
-                    for (AccessibilityNodeInfo node : nodes) {
-                        node.recycle();
-                    }
-                    return text;
-                }
-            } else if (rule.isUseSpecialSymbol()) {
-                // 通过特殊符号查找
-                return findTextWithSpecialSymbol(rootNode, rule.getSpecialSymbol());
-            } else {
-                // 使用时间戳作为标识
-                return LocalTime.now().toString();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "提取作者名称失败", e);
+        // 索引中的规则已按事件类型和Activity筛选并编译为一个匹配器
+        // 事件处理间隔由 GuardEventDebouncer 按应用控制, 这里不再重复节流
+        GuardRuleMatcher<AppGuardRule> ruleGroup = getRuleIndex().matcher(packageName, eventType, activityName);
+        if (ruleGroup.isEmpty()) {
+            return;
         }
-
-        return null;
-    }
-
-    /**
-     * 查找包含特殊符号的文本（广度优先搜索）
-     */
-    private String findTextWithSpecialSymbol(AccessibilityNodeInfo rootNode, String symbol) {
-        if (rootNode == null || symbol == null || symbol.isEmpty()) {
-            return null;
+        String authorName = extractAuthorName(ruleGroup, packageName, activityName, rootNode);
+        // 提取作者期间服务可能已被销毁
+        if (authorName == null || authorName.isEmpty() || destroyed) {
+            return;
         }
 
-        List<AccessibilityNodeInfo> nodesToRecycle = new ArrayList<>();
-
-        try {
-            // 先检查根节点
-            String result = checkNodeForSymbol(rootNode, symbol);
-            if (result != null) {
-                return result;
-            }
-
-            // 使用广度优先搜索，限制深度避免性能问题
-            return performBreadthFirstSearch(rootNode, symbol, nodesToRecycle, 20); // 限制20层深度
-
-        } catch (Exception e) {
-            Log.e(TAG, "查找特殊符号文本失败", e);
-        } finally {
-            // 清理资源：回收创建的子节点
-            for (AccessibilityNodeInfo node : nodesToRecycle) {
-                try {
-                    if (node != null && node != rootNode) {
-                        node.recycle();
-                    }
-                } catch (Exception e) {
-                    Log.w(TAG, "回收节点失败: " + e.getMessage());
-                }
-            }
+        boolean paused = settingsManager.getPauseEnabled();
+        GuardDecisionEngine.Decision decision = decisionEngine.onAuthor(packageName, authorName,
+                monitoredApp.getScrollCount(), paused);
+        // 每个识别到的视频都更新停留计时和浏览次数, 与守卫决策无关; 同一个视频连续重复识别时不重复计数
+        boolean newVideo = dwellTracker.onItem(packageName, authorName, SystemClock.elapsedRealtime());
+        if (newVideo && statisticsManager.incrementShortVideoCount(packageName)) {
+            // 达到阈值，显示统计信息
+            showVideoStatistics();
         }
 
-        return null;
-    }
-
-    /**
-     * 执行广度优先搜索
-     */
-    private String performBreadthFirstSearch(AccessibilityNodeInfo rootNode, String symbol,
-                                             List<AccessibilityNodeInfo> nodesToRecycle, int maxDepth) {
-        List<AccessibilityNodeInfo> currentLevel = new ArrayList<>();
-        currentLevel.add(rootNode);
-
-        for (int depth = 0; depth < maxDepth && !currentLevel.isEmpty(); depth++) {
-            List<AccessibilityNodeInfo> nextLevel = new ArrayList<>();
-
-            for (AccessibilityNodeInfo node : currentLevel) {
-                if (node == null) continue;
-
-                try {
-                    // 检查当前层的所有子节点
-                    int childCount = node.getChildCount();
-                    for (int i = 0; i < childCount; i++) {
-                        AccessibilityNodeInfo childNode = node.getChild(i);
-                        if (childNode != null) {
-                            nodesToRecycle.add(childNode); // 记录需要回收的节点
-
-                            // 立即检查子节点
-                            String result = checkNodeForSymbol(childNode, symbol);
-                            if (result != null) {
-                                return result; // 找到结果立即返回
-                            }
-
-                            nextLevel.add(childNode);
-                        }
-                    }
-                } catch (Exception e) {
-                    Log.w(TAG, "处理节点子元素时出错: " + e.getMessage());
-                    // 继续处理其他节点
+        switch (decision) {
+            case UNSHAKABLE:
+                Log.d(TAG, "处于雷打不动时间段，直接发送守卫广播");
+                sendBroadcast();
+                break;
+            case COUNTED:
+            case THRESHOLD_REACHED:
+                markSnapshotDirty();
+                if (decision == GuardDecisionEngine.Decision.THRESHOLD_REACHED) {
+                    sendBroadcast();
+                    Log.d(TAG, "发送守卫广播: " + packageName + " - " + authorName + ", 已达到阈值: " + monitoredApp.getScrollCount());
+                } else {
+                    Log.d(TAG, "添加作者: " + authorName + ", 当前数量: " + decisionEngine.getAuthorCount() + "/" + monitoredApp.getScrollCount());
                 }
-            }
-
-            currentLevel = nextLevel;
+                break;
+            default:
+                break;
         }
-
-        return null;
     }
 
     /**
-     * 检查单个节点是否包含特殊符号
+     * 按规则顺序提取作者名称, 提取顺序和缓存由 GuardExtractor 实现, 与轨迹回放一致
      */
-    private String checkNodeForSymbol(AccessibilityNodeInfo node, String symbol) {
-        if (node == null || symbol == null || symbol.isEmpty()) {
+    private String extractAuthorName(GuardRuleMatcher<AppGuardRule> ruleGroup, String packageName, String activityName,
+                                     AccessibilityNodeInfo rootNode) {
+        String authorName;
+        try {
+            authorName = extractor.extract(ruleGroup, AccessibilityNodeView.wrap(rootNode), packageName, activityName);
+        } catch (Exception e) {
+            Log.e(TAG, "提取作者名称失败", e);
             return null;
         }
 
-        try {
-            // 检查节点文本
-            CharSequence text = node.getText();
-//            Log.d(TAG,"Text:"+text+",viewID:"+viewId);
-            if (text != null && text.toString().contains(symbol)) {
-                return text.toString();
+        NodeSearchEngine.Result result = extractor.getLastSearchResult();
+        if (result != null) {
+            if (result.stopReason == NodeSearchEngine.StopReason.NODE_BUDGET
+                    || result.stopReason == NodeSearchEngine.StopReason.TIME_BUDGET) {
+                Log.w(TAG, "规则组搜索超出预算: " + result.stopReason + ", 访问节点 " + result.nodesVisited
+                        + " 个, 耗时 " + result.elapsedNanos / 1000 + "us");
             }
-
-            // 检查ViewId（新浪微博等能够通过遍历查找含有viewId的节点, 但是直接使用findAccessibilityNodeInfosByViewId获取的节点, 无法获取到文本）
-            String viewId = node.getViewIdResourceName();
-            if (viewId != null && viewId.contains(symbol)) {
-                // 如果ViewId包含符号，但文本为空，尝试获取文本
-                if (text != null && !text.toString().isEmpty()) {
-                    return text.toString();
-                }
-                // 使用时间戳作为标识
-                return LocalTime.now().toString();
+            if (result.errorCount > 0) {
+                Log.w(TAG, "搜索时读取节点失败 " + result.errorCount + " 次");
             }
-            // 检查内容描述
-            // CharSequence contentDesc = node.getContentDescription();
-            // if (contentDesc != null && contentDesc.toString().contains(symbol)) {
-            //     return contentDesc.toString();
-            // }
-        } catch (Exception e) {
-            Log.w(TAG, "检查节点内容失败: " + e.getMessage());
         }
-
-        return null;
+        if (extractor.isLastSymbolExtraction()) {
+            NodePathCache nodePathCache = extractor.getPathCache();
+            Log.d(TAG, "特殊符号提取: 调用 " + extractor.getLastIpcCount() + " 次, 路径命中率 "
+                    + Math.round(nodePathCache.getHitRatio() * 100) + "%");
+        }
+        return authorName;
     }
 
     /**
@@ -460,9 +537,11 @@ public class AppGuardManager {
         StatisticsManager.VideoStatistics stats = statisticsManager.getVideoStatistics();
         
         String message = String.format(
-                "今天已刷短视频: %d 个\n已经花费时间: %s\n\n本月已刷短视频: %d 个\n已经花费时间: %s\n\n适度娱乐，珍惜时间！",
+                "今天已刷短视频: %d 个\n已经花费时间: %s\n每个视频停留: 一半不超过 %s, 90%% 不超过 %s\n\n本月已刷短视频: %d 个\n已经花费时间: %s\n\n适度娱乐，珍惜时间！",
                 stats.todayCount,
                 stats.todayTime,
+                StatisticsManager.formatDuration(stats.todayMedianDwellMillis),
+                StatisticsManager.formatDuration(stats.todayP90DwellMillis),
                 stats.monthCount,
                 stats.monthTime
         );
@@ -487,11 +566,10 @@ public class AppGuardManager {
     }
 
     /**
-     * 发送短视频变化广播
+     * 通知 UsageMonitorService 显示悬浮窗
      */
     private void sendBroadcast() {
-        Intent intent = new Intent("com.seeother.action.SHOW_FLOATING_WINDOW");
-        LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
+        ServiceEventBus.getInstance().postShowFloatingWindow();
     }
 
     /**
@@ -505,25 +583,7 @@ public class AppGuardManager {
      * 获取当前应用的守卫规则
      */
     public List<AppGuardRule> getCurrentAppRules() {
-        synchronized (currentAppRules) {
-            return new ArrayList<>(currentAppRules);
-        }
-    }
-
-    /**
-     * 如果需要则刷新缓存
-     */
-    private void refreshCacheIfNeeded(String packageName) {
-        if (packageName.equals(currentPackageName)) {
-            synchronized (currentAppRules) {
-                currentAppRules.clear();
-                currentPackageName = "";
-            }
-            // 清空作者集合
-            synchronized (authorSet) {
-                authorSet.clear();
-            }
-        }
+        return new ArrayList<>(getRuleIndex().getRules(decisionEngine.getCurrentPackageName()));
     }
 
     /**
@@ -534,16 +594,17 @@ public class AppGuardManager {
     }
 
     /**
-     * 刷新当前应用规则（从数据库重新加载）
+     * 刷新规则索引（从数据库重新加载）
      */
     public void refreshCurrentAppRules() {
-        synchronized (currentAppRules) {
-            String packageToRefresh = currentPackageName;
-            currentPackageName = ""; // 强制重新加载
-            if (!packageToRefresh.isEmpty()) {
-                loadRulesForPackage(packageToRefresh);
-            }
-        }
+        rebuildRuleIndex();
+    }
+
+    /**
+     * 获取作者节点路径缓存(用于查看命中率和平均 getChild 调用次数)
+     */
+    public NodePathCache getNodePathCache() {
+        return extractor.getPathCache();
     }
 
     /**
@@ -557,14 +618,26 @@ public class AppGuardManager {
      * 释放资源
      */
     public void destroy() {
-        repository.close();
-        synchronized (currentAppRules) {
-            currentAppRules.clear();
+        synchronized (ruleIndexLock) {
+            destroyed = true;
+        }
+        if (warmStartStore != null) {
+            // 服务正常关闭时不再保留守卫状态, 被系统杀死时不会执行到这里
+            warmStartStore.unregister(snapshotSection);
+            warmStartStore.markDirty();
+            warmStartStore = null;
         }
-        synchronized (authorSet) {
-            authorSet.clear();
+        dwellTracker.finish(SystemClock.elapsedRealtime());
+        statisticsManager.flush();
+        extractor.getPathCache().clear();
+        synchronized (ruleIndexLock) {
+            if (ruleObserverRegistered) {
+                AppDatabase.getInstance(context).getInvalidationTracker().removeObserver(ruleTableObserver);
+                ruleObserverRegistered = false;
+            }
+            ruleIndex = null;
         }
-        currentPackageName = "";
-        lastHandleTime = 0;
+        repository.close();
+        decisionEngine.reset();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,171 @@
+package com.seeother.manager;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.seeother.common.AppPolicy;
+import com.seeother.data.db.AppDatabase;
+import com.seeother.data.entity.MonitoredApp;
+import com.seeother.data.entity.RecommendApp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 应用策略管理器
+ * 进程内共享的 包名 -> AppPolicy 快照, 只在 monitored_app / recommend_app 表变化时重建,
+ * 事件处理时只做一次哈希查找, 不再查询数据库
+ */
+public class AppPolicyManager {
+    private static final String TAG = "AppPolicyManager";
+    private static final int SNAPSHOT_VERSION = 1;
+    private static AppPolicyManager instance;
+
+    private final AppDatabase database;
+    private final AtomicReference<Map<String, AppPolicy>> snapshot = new AtomicReference<>();
+    private final Object rebuildLock = new Object();
+    private final WarmStartStore warmStartStore;
+
+    private AppPolicyManager(Context context) {
+        database = AppDatabase.getInstance(context.getApplicationContext());
+        warmStartStore = WarmStartStore.getInstance(context);
+        if (restoreSnapshot()) {
+            // 先使用快照中的策略, 再在 Room 的查询线程中从数据库重建校验
+            database.getQueryExecutor().execute(this::rebuild);
+        }
+        warmStartStore.register(new WarmStartStore.Section() {
+            @Override
+            public int getSectionId() {
+                return WarmStartStore.SECTION_APP_POLICIES;
+            }
+
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                writeSnapshot(out);
+            }
+        });
+        database.getInvalidationTracker().addObserver(
+                new InvalidationTracker.Observer("monitored_app", "recommend_app") {
+                    @Override
+                    public void onInvalidated(@NonNull Set<String> tables) {
+                        rebuild();
+                    }
+                });
+    }
+
+    public static synchronized AppPolicyManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppPolicyManager(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 获取应用策略
+     *
+     * @return 未配置的应用返回 AppPolicy.NONE, 不会返回null
+     */
+    @NonNull
+    public AppPolicy getPolicy(String packageName) {
+        if (packageName == null) {
+            return AppPolicy.NONE;
+        }
+        Map<String, AppPolicy> policies = snapshot.get();
+        if (policies == null) {
+            policies = rebuild();
+        }
+        AppPolicy policy = policies.get(packageName);
+        return policy != null ? policy : AppPolicy.NONE;
+    }
+
+    /**
+     * 从数据库重新构建策略快照
+     */
+    private Map<String, AppPolicy> rebuild() {
+        synchronized (rebuildLock) {
+            try {
+                List<MonitoredApp> monitoredApps = database.monitoredAppDao().getAllApps();
+                List<RecommendApp> recommendApps = database.recommendAppDao().getAllApps();
+
+                Set<String> recommended = new HashSet<>();
+                for (RecommendApp app : recommendApps) {
+                    if (app.getPkgName() != null) {
+                        recommended.add(app.getPkgName());
+                    }
+                }
+
+                Map<String, AppPolicy> policies = new HashMap<>();
+                for (String pkgName : recommended) {
+                    policies.put(pkgName, AppPolicy.recommendedOnly(pkgName));
+                }
+                for (MonitoredApp app : monitoredApps) {
+                    if (app.getPkgName() == null) continue;
+                    policies.put(app.getPkgName(), AppPolicy.of(app, recommended.contains(app.getPkgName())));
+                }
+
+                Map<String, AppPolicy> result = Collections.unmodifiableMap(policies);
+                snapshot.set(result);
+                warmStartStore.markDirty();
+                Log.d(TAG, "重建应用策略快照, 少用应用: " + monitoredApps.size() + ", 推荐应用: " + recommended.size());
+                return result;
+            } catch (Exception e) {
+                Log.e(TAG, "重建应用策略快照失败", e);
+                Map<String, AppPolicy> current = snapshot.get();
+                return current != null ? current : Collections.emptyMap();
+            }
+        }
+    }
+
+    /**
+     * 从热启动快照恢复策略
+     *
+     * @return 是否已恢复
+     */
+    private boolean restoreSnapshot() {
+        DataInputStream in = warmStartStore.restore(WarmStartStore.SECTION_APP_POLICIES);
+        if (in == null) {
+            return false;
+        }
+        try {
+            if (in.readByte() != SNAPSHOT_VERSION) {
+                return false;
+            }
+            int count = in.readInt();
+            Map<String, AppPolicy> policies = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                AppPolicy policy = AppPolicy.readFrom(in);
+                policies.put(policy.getPackageName(), policy);
+            }
+            snapshot.compareAndSet(null, Collections.unmodifiableMap(policies));
+            Log.d(TAG, "从快照恢复应用策略, 共 " + count + " 个");
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "恢复应用策略快照失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeSnapshot(DataOutputStream out) throws IOException {
+        Map<String, AppPolicy> policies = snapshot.get();
+        out.writeByte(SNAPSHOT_VERSION);
+        if (policies == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(policies.size());
+        for (AppPolicy policy : policies.values()) {
+            policy.writeTo(out);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.seeother.manager;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.Settings;
+import android.util.Log;
+
+import com.seeother.utils.SettingsSecureUtil;
+
+/**
+ * 灰度/高对比度文字状态协调器
+ * 调用方只设置期望状态, 协调器与系统当前状态比较, 只有真正需要切换时才写入 Settings.Secure。
+ * 快速来回切换应用时, 期望状态在 DEBOUNCE_MS 内合并, 只按最后的状态写入。
+ * 系统当前状态通过 ContentObserver 确认, 其他应用或用户修改设置后也能及时同步。
+ * 只在主线程中使用。
+ */
+public class DisplayEffectReconciler {
+    private static final String TAG = "DisplayEffectReconciler";
+    private static final long DEBOUNCE_MS = 150;
+    private static DisplayEffectReconciler instance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable reconcileRunnable = this::reconcile;
+    private final SettingsSecureUtil settingsSecureUtil;
+
+    // 期望状态
+    private boolean desiredGrayMode = false;
+    private boolean desiredHighContrast = false;
+    // 系统中已生效的状态
+    private boolean appliedGrayMode;
+    private boolean appliedHighContrast;
+
+    // 统计信息
+    private long writeCount = 0;
+    private long avoidedWriteCount = 0;
+
+    private DisplayEffectReconciler(Context context) {
+        Context appContext = context.getApplicationContext();
+        SettingsSecureUtil.init(appContext);
+        settingsSecureUtil = SettingsSecureUtil.getInstance();
+        appliedGrayMode = settingsSecureUtil.isColorSpaceEnabled();
+        appliedHighContrast = settingsSecureUtil.isHighContrastTextEnabled();
+        desiredGrayMode = appliedGrayMode;
+        desiredHighContrast = appliedHighContrast;
+
+        ContentObserver observer = new ContentObserver(handler) {
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                appliedGrayMode = settingsSecureUtil.isColorSpaceEnabled();
+                appliedHighContrast = settingsSecureUtil.isHighContrastTextEnabled();
+            }
+        };
+        appContext.getContentResolver().registerContentObserver(
+                Settings.Secure.getUriFor(SettingsSecureUtil.KEY_DALTONIZER_ENABLED), false, observer);
+        appContext.getContentResolver().registerContentObserver(
+                Settings.Secure.getUriFor(SettingsSecureUtil.KEY_HIGH_TEXT_CONTRAST_ENABLED), false, observer);
+    }
+
+    public static synchronized DisplayEffectReconciler getInstance(Context context) {
+        if (instance == null) {
+            instance = new DisplayEffectReconciler(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 设置期望状态, 延迟 DEBOUNCE_MS 后写入
+     */
+    public void setDesired(boolean grayMode, boolean highContrast) {
+        desiredGrayMode = grayMode;
+        desiredHighContrast = highContrast;
+        handler.removeCallbacks(reconcileRunnable);
+        handler.postDelayed(reconcileRunnable, DEBOUNCE_MS);
+    }
+
+    /**
+     * 立即关闭灰度和高对比度文字, 用于用户临时关闭功能或服务销毁
+     */
+    public void clearNow() {
+        desiredGrayMode = false;
+        desiredHighContrast = false;
+        handler.removeCallbacks(reconcileRunnable);
+        reconcile();
+    }
+
+    private void reconcile() {
+        if (desiredGrayMode != appliedGrayMode) {
+            boolean written = desiredGrayMode
+                    ? settingsSecureUtil.enableColorSpace() : settingsSecureUtil.disableColorSpace();
+            if (written) {
+                appliedGrayMode = desiredGrayMode;
+                writeCount++;
+            }
+        } else {
+            avoidedWriteCount++;
+        }
+
+        if (desiredHighContrast != appliedHighContrast) {
+            boolean written = desiredHighContrast
+                    ? settingsSecureUtil.enableHighContrastText() : settingsSecureUtil.disableHighContrastText();
+            if (written) {
+                appliedHighContrast = desiredHighContrast;
+                writeCount++;
+            }
+        } else {
+            avoidedWriteCount++;
+        }
+        Log.d(TAG, "灰度: " + appliedGrayMode + ", 高对比度: " + appliedHighContrast
+                + ", 写入 " + writeCount + " 次, 避免写入 " + avoidedWriteCount + " 次");
+    }
+
+    /**
+     * 实际写入 Settings.Secure 的次数
+     */
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * 因状态未变化而跳过的写入次数
+     */
+    public long getAvoidedWriteCount() {
+        return avoidedWriteCount;
+    }
+}
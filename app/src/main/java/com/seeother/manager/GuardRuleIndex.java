@@ -0,0 +1,212 @@
+package com.seeother.manager;
+
+import android.view.accessibility.AccessibilityEvent;
+
+import com.seeother.data.entity.AppGuardRule;
+import com.seeother.guard.GuardClock;
+import com.seeother.guard.GuardRuleMatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 守卫规则索引
+ * 从 app_guard_rules 全量构建的只读索引: 包名 -> 事件类型 -> Activity 桶 + 通配桶。
+ * 构建后不再修改, 查询时不访问数据库, 也不做字符串匹配事件类型。
+ */
+public final class GuardRuleIndex {
+
+    /**
+     * 空索引
+     */
+    public static final GuardRuleIndex EMPTY = new GuardRuleIndex(Collections.emptyMap(), 0);
+
+    /**
+     * 某个包名在某个事件类型下的规则, 每组规则在构建时编译为一个匹配器
+     */
+    private static final class EventBucket {
+        // Activity -> 该 Activity 的规则 + 通配规则(保持数据库中的顺序)
+        final Map<String, GuardRuleMatcher<AppGuardRule>> byActivity;
+        // 不限 Activity 的规则
+        final GuardRuleMatcher<AppGuardRule> wildcard;
+
+        EventBucket(Map<String, GuardRuleMatcher<AppGuardRule>> byActivity, GuardRuleMatcher<AppGuardRule> wildcard) {
+            this.byActivity = byActivity;
+            this.wildcard = wildcard;
+        }
+
+        GuardRuleMatcher<AppGuardRule> lookup(String activityName) {
+            if (activityName != null) {
+                GuardRuleMatcher<AppGuardRule> matcher = byActivity.get(activityName);
+                if (matcher != null) {
+                    return matcher;
+                }
+            }
+            return wildcard;
+        }
+    }
+
+    /**
+     * 某个包名的全部规则
+     */
+    private static final class PackageRules {
+        final List<AppGuardRule> all;
+        final int eventMask; // 该包名规则涉及的事件类型
+        final EventBucket scrolled;
+        final EventBucket contentChanged;
+
+        PackageRules(List<AppGuardRule> all, int eventMask, EventBucket scrolled, EventBucket contentChanged) {
+            this.all = all;
+            this.eventMask = eventMask;
+            this.scrolled = scrolled;
+            this.contentChanged = contentChanged;
+        }
+    }
+
+    private final Map<String, PackageRules> packages;
+    private final int ruleCount;
+
+    private GuardRuleIndex(Map<String, PackageRules> packages, int ruleCount) {
+        this.packages = packages;
+        this.ruleCount = ruleCount;
+    }
+
+    /**
+     * 从规则列表构建索引
+     */
+    public static GuardRuleIndex build(List<AppGuardRule> rules) {
+        return build(rules, GuardClock.SYSTEM);
+    }
+
+    /**
+     * 从规则列表构建索引, 匹配器使用指定的时钟生成时间戳标识
+     */
+    public static GuardRuleIndex build(List<AppGuardRule> rules, GuardClock clock) {
+        if (rules == null || rules.isEmpty()) {
+            return EMPTY;
+        }
+
+        // 先按包名分组, 保持原有顺序
+        Map<String, List<AppGuardRule>> grouped = new LinkedHashMap<>();
+        for (AppGuardRule rule : rules) {
+            if (rule.getPackageName() == null) continue;
+            List<AppGuardRule> list = grouped.get(rule.getPackageName());
+            if (list == null) {
+                list = new ArrayList<>();
+                grouped.put(rule.getPackageName(), list);
+            }
+            list.add(rule);
+        }
+
+        Map<String, PackageRules> packages = new HashMap<>();
+        int ruleCount = 0;
+        for (Map.Entry<String, List<AppGuardRule>> entry : grouped.entrySet()) {
+            List<AppGuardRule> packageRules = entry.getValue();
+            int eventMask = 0;
+            for (AppGuardRule rule : packageRules) {
+                eventMask |= rule.getAccessibilityEventType();
+            }
+            packages.put(entry.getKey(), new PackageRules(Collections.unmodifiableList(packageRules), eventMask,
+                    buildBucket(packageRules, AccessibilityEvent.TYPE_VIEW_SCROLLED, clock),
+                    buildBucket(packageRules, AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED, clock)));
+            ruleCount += packageRules.size();
+        }
+        return new GuardRuleIndex(packages, ruleCount);
+    }
+
+    private static EventBucket buildBucket(List<AppGuardRule> packageRules, int eventType, GuardClock clock) {
+        List<AppGuardRule> typed = new ArrayList<>();
+        List<AppGuardRule> wildcard = new ArrayList<>();
+        for (AppGuardRule rule : packageRules) {
+            if (rule.getAccessibilityEventType() != eventType) continue;
+            typed.add(rule);
+            if (rule.getActivityName() == null || rule.getActivityName().isEmpty()) {
+                wildcard.add(rule);
+            }
+        }
+
+        Map<String, GuardRuleMatcher<AppGuardRule>> byActivity = new HashMap<>();
+        for (AppGuardRule rule : typed) {
+            String activityName = rule.getActivityName();
+            if (activityName == null || activityName.isEmpty() || byActivity.containsKey(activityName)) {
+                continue;
+            }
+            // 该 Activity 能匹配到的规则 = 指定了该 Activity 的规则 + 通配规则, 按原顺序合并
+            List<AppGuardRule> matched = new ArrayList<>();
+            for (AppGuardRule candidate : typed) {
+                if (candidate.matchesActivity(activityName)) {
+                    matched.add(candidate);
+                }
+            }
+            byActivity.put(activityName, new GuardRuleMatcher<>(Collections.unmodifiableList(matched), clock));
+        }
+        return new EventBucket(byActivity, wildcard.isEmpty()
+                ? GuardRuleMatcher.<AppGuardRule>empty() : new GuardRuleMatcher<>(Collections.unmodifiableList(wildcard), clock));
+    }
+
+    /**
+     * 获取与事件匹配的规则
+     *
+     * @return 没有匹配规则时返回空列表, 不会返回null
+     */
+    public List<AppGuardRule> match(String packageName, int eventType, String activityName) {
+        return matcher(packageName, eventType, activityName).getRules();
+    }
+
+    /**
+     * 获取与事件匹配的规则组匹配器
+     *
+     * @return 没有匹配规则时返回 GuardRuleMatcher.empty(), 不会返回null
+     */
+    public GuardRuleMatcher<AppGuardRule> matcher(String packageName, int eventType, String activityName) {
+        PackageRules rules = packageName != null ? packages.get(packageName) : null;
+        if (rules == null || (rules.eventMask & eventType) == 0) {
+            return GuardRuleMatcher.empty();
+        }
+        if (eventType == AccessibilityEvent.TYPE_VIEW_SCROLLED) {
+            return rules.scrolled.lookup(activityName);
+        } else if (eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
+            return rules.contentChanged.lookup(activityName);
+        }
+        return GuardRuleMatcher.empty();
+    }
+
+    /**
+     * 获取包名规则涉及的事件类型
+     */
+    public int getEventTypes(String packageName) {
+        PackageRules rules = packageName != null ? packages.get(packageName) : null;
+        return rules != null ? rules.eventMask : 0;
+    }
+
+    /**
+     * 获取包名的全部规则
+     */
+    public List<AppGuardRule> getRules(String packageName) {
+        PackageRules rules = packageName != null ? packages.get(packageName) : null;
+        return rules != null ? rules.all : Collections.emptyList();
+    }
+
+    /**
+     * 获取全部规则, 用于保存热启动快照
+     */
+    public List<AppGuardRule> getAllRules() {
+        List<AppGuardRule> all = new ArrayList<>(ruleCount);
+        for (PackageRules rules : packages.values()) {
+            all.addAll(rules.all);
+        }
+        return all;
+    }
+
+    public boolean hasRules(String packageName) {
+        return packageName != null && packages.containsKey(packageName);
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+}
@@ -0,0 +1,426 @@
+package com.seeother.manager;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.content.res.Configuration;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.pm.PackageInfoCompat;
+import androidx.lifecycle.LiveData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 已安装应用目录
+ * 进程内共享一份应用列表(包名、名称、是否可启动、版本, 不包含图标), 第一次有观察者时在后台线程加载,
+ * 之后根据应用安装/卸载/更新广播逐个更新, 通过 LiveData 发布排好序的只读快照。
+ * 内存不足且没有观察者时释放列表, 下次有观察者时重新加载。
+ * <p>
+ * 目录同时保存为磁盘索引, 加载时先读取索引立即发布, 再在后台与 getInstalledPackages 对比:
+ * 只有新安装、版本号或更新时间变化的应用才重新读取名称。
+ * 索引格式: 魔数、版本号、语言标签、应用数, 之后是若干 (包名, 名称, 排序键, 是否可启动, 版本号, 更新时间)。
+ * 版本号或语言不一致的索引会被丢弃。
+ */
+public class InstalledAppCatalog {
+    private static final String TAG = "InstalledAppCatalog";
+    private static final String INDEX_FILE_NAME = "app_catalog.bin";
+    private static final int INDEX_MAGIC = 0x534F4143; // "SOAC"
+    private static final int INDEX_VERSION = 1;
+    private static final long INDEX_WRITE_DELAY_MS = 2000;
+    private static InstalledAppCatalog instance;
+
+    /**
+     * 目录中的一个应用, 只读
+     */
+    public static final class Entry {
+        public final String packageName;
+        public final String label;
+        /**
+         * 排序键, 名称的小写形式
+         */
+        public final String sortKey;
+        /**
+         * 是否有启动器入口
+         */
+        public final boolean launchable;
+        public final long versionCode;
+        public final long lastUpdateTime;
+
+        Entry(String packageName, String label, String sortKey, boolean launchable,
+              long versionCode, long lastUpdateTime) {
+            this.packageName = packageName;
+            this.label = label;
+            this.sortKey = sortKey;
+            this.launchable = launchable;
+            this.versionCode = versionCode;
+            this.lastUpdateTime = lastUpdateTime;
+        }
+
+        Entry(PackageInfo info, String label, boolean launchable) {
+            this(info.packageName, label, label.toLowerCase(Locale.getDefault()), launchable,
+                    PackageInfoCompat.getLongVersionCode(info), info.lastUpdateTime);
+        }
+
+        /**
+         * 应用是否与索引中记录的版本相同
+         */
+        boolean isSameVersion(PackageInfo info) {
+            return versionCode == PackageInfoCompat.getLongVersionCode(info) && lastUpdateTime == info.lastUpdateTime;
+        }
+
+        Entry withLaunchable(boolean launchable) {
+            return new Entry(packageName, label, sortKey, launchable, versionCode, lastUpdateTime);
+        }
+    }
+
+    private final Context context;
+    private final PackageManager packageManager;
+    private final Handler handler;
+    private final AtomicFile indexFile;
+    private final Runnable writeIndexRunnable = this::writeIndex;
+    private final CatalogLiveData apps = new CatalogLiveData();
+    // 与 apps 同时发布的按包名索引, 可在任意线程读取
+    private volatile Map<String, Entry> index = Collections.emptyMap();
+    // 最近一次加载是否直接使用了磁盘索引, 用于对比首行显示耗时
+    private volatile boolean loadedFromIndex = false;
+
+    // 以下字段只在后台线程访问
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean loaded = false;
+    // 当前名称对应的语言
+    private String entriesLocale = "";
+    // 是否有还未写入磁盘的变化
+    private boolean indexDirty = false;
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            String packageName = data != null ? data.getSchemeSpecificPart() : null;
+            if (packageName == null) {
+                return;
+            }
+            boolean removed = Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction())
+                    && !intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+            handler.post(() -> updatePackage(packageName, removed));
+        }
+    };
+
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_BACKGROUND) {
+                handler.post(InstalledAppCatalog.this::releaseIfUnused);
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            // 语言变化后应用名称需要重新读取
+            handler.post(() -> {
+                if (loaded && !indexLocale().equals(entriesLocale)) {
+                    loadAll();
+                }
+            });
+        }
+
+        @Override
+        public void onLowMemory() {
+            onTrimMemory(TRIM_MEMORY_COMPLETE);
+        }
+    };
+
+    private InstalledAppCatalog(Context context) {
+        this.context = context.getApplicationContext();
+        this.packageManager = this.context.getPackageManager();
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        indexFile = new AtomicFile(new File(this.context.getFilesDir(), INDEX_FILE_NAME));
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        this.context.registerReceiver(packageReceiver, filter);
+        this.context.registerComponentCallbacks(memoryCallbacks);
+    }
+
+    public static synchronized InstalledAppCatalog getInstance(Context context) {
+        if (instance == null) {
+            instance = new InstalledAppCatalog(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 按名称排序的应用列表, 有观察者时才会加载
+     */
+    public LiveData<List<Entry>> getApps() {
+        return apps;
+    }
+
+    /**
+     * 按包名查找已加载的应用
+     *
+     * @return 目录尚未加载或应用不存在时返回 null
+     */
+    public Entry getEntry(String packageName) {
+        return index.get(packageName);
+    }
+
+    /**
+     * 最近一次加载是否直接使用了磁盘索引; 索引不存在(首次运行或索引文件被删除)时为全量加载
+     */
+    public boolean isLoadedFromIndex() {
+        return loadedFromIndex;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loadedFromIndex = readIndex();
+        if (loadedFromIndex) {
+            // 先显示索引中的列表, 再在下一个任务中与系统对比
+            loaded = true;
+            publish();
+            handler.post(this::reconcile);
+        } else {
+            loadAll();
+        }
+    }
+
+    private void loadAll() {
+        long start = SystemClock.elapsedRealtime();
+        Set<String> launchable = queryLaunchable();
+        entries.clear();
+        entriesLocale = indexLocale();
+        for (PackageInfo info : packageManager.getInstalledPackages(0)) {
+            if (info.applicationInfo == null) continue;
+            entries.put(info.packageName, new Entry(info,
+                    info.applicationInfo.loadLabel(packageManager).toString(), launchable.contains(info.packageName)));
+        }
+        loaded = true;
+        publish();
+        scheduleWriteIndex();
+        Log.d(TAG, "加载 " + entries.size() + " 个应用, 耗时 " + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    /**
+     * 与系统中已安装的应用对比, 只重新读取新安装或已更新应用的名称
+     */
+    private void reconcile() {
+        if (!loaded) {
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+        Set<String> launchable = queryLaunchable();
+        Set<String> installed = new HashSet<>();
+        int relabeled = 0;
+        boolean changed = false;
+        for (PackageInfo info : packageManager.getInstalledPackages(0)) {
+            if (info.applicationInfo == null) continue;
+            installed.add(info.packageName);
+            boolean isLaunchable = launchable.contains(info.packageName);
+            Entry entry = entries.get(info.packageName);
+            if (entry == null || !entry.isSameVersion(info)) {
+                entries.put(info.packageName, new Entry(info,
+                        info.applicationInfo.loadLabel(packageManager).toString(), isLaunchable));
+                relabeled++;
+                changed = true;
+            } else if (entry.launchable != isLaunchable) {
+                // 启动器入口可能被禁用或启用, 不影响名称
+                entries.put(info.packageName, entry.withLaunchable(isLaunchable));
+                changed = true;
+            }
+        }
+        int removed = 0;
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext(); ) {
+            if (!installed.contains(it.next())) {
+                it.remove();
+                removed++;
+                changed = true;
+            }
+        }
+        if (changed) {
+            publish();
+            scheduleWriteIndex();
+        }
+        Log.d(TAG, "对比索引: 重新读取 " + relabeled + " 个应用名称, 移除 " + removed + " 个应用, 耗时 "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    /**
+     * 一次查询所有启动器入口, 不再逐个应用调用 getLaunchIntentForPackage
+     */
+    private Set<String> queryLaunchable() {
+        Set<String> launchable = new HashSet<>();
+        Intent launcherIntent = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER);
+        for (ResolveInfo info : packageManager.queryIntentActivities(launcherIntent, 0)) {
+            launchable.add(info.activityInfo.packageName);
+        }
+        return launchable;
+    }
+
+    private void updatePackage(String packageName, boolean removed) {
+        if (!loaded) {
+            return;
+        }
+        if (removed) {
+            if (entries.remove(packageName) != null) {
+                publish();
+                scheduleWriteIndex();
+            }
+            return;
+        }
+        try {
+            PackageInfo info = packageManager.getPackageInfo(packageName, 0);
+            boolean launchable = packageManager.getLaunchIntentForPackage(packageName) != null;
+            entries.put(packageName, new Entry(info, info.applicationInfo.loadLabel(packageManager).toString(), launchable));
+        } catch (PackageManager.NameNotFoundException e) {
+            entries.remove(packageName);
+        }
+        publish();
+        scheduleWriteIndex();
+    }
+
+    private void publish() {
+        List<Entry> snapshot = new ArrayList<>(entries.values());
+        snapshot.sort((a, b) -> a.sortKey.compareTo(b.sortKey));
+        index = Collections.unmodifiableMap(new HashMap<>(entries));
+        apps.postValue(Collections.unmodifiableList(snapshot));
+    }
+
+    private void releaseIfUnused() {
+        if (!loaded || apps.hasObservers()) {
+            return;
+        }
+        // 释放前先写入还未保存的索引
+        if (indexDirty) {
+            handler.removeCallbacks(writeIndexRunnable);
+            writeIndex();
+        }
+        entries.clear();
+        loaded = false;
+        index = Collections.emptyMap();
+        apps.postValue(null);
+        Log.d(TAG, "内存不足, 释放应用列表");
+    }
+
+    private static String indexLocale() {
+        return Locale.getDefault().toLanguageTag();
+    }
+
+    /**
+     * 读取磁盘索引到 entries
+     *
+     * @return 索引不存在、不兼容或语言不一致时返回 false
+     */
+    private boolean readIndex() {
+        long start = SystemClock.elapsedRealtime();
+        String locale = indexLocale();
+        Map<String, Entry> restored = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(indexFile.openRead()))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                Log.d(TAG, "丢弃不兼容的索引");
+                return false;
+            }
+            if (!locale.equals(in.readUTF())) {
+                Log.d(TAG, "语言已变化, 丢弃索引");
+                return false;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readUTF(), in.readUTF(), in.readUTF(), in.readBoolean(),
+                        in.readLong(), in.readLong());
+                restored.put(entry.packageName, entry);
+            }
+        } catch (IOException e) {
+            // 文件不存在或已损坏时全量加载
+            return false;
+        }
+        entries.clear();
+        entries.putAll(restored);
+        entriesLocale = locale;
+        Log.d(TAG, "读取索引 " + entries.size() + " 个应用, 耗时 " + (SystemClock.elapsedRealtime() - start) + "ms");
+        return true;
+    }
+
+    /**
+     * 延迟写入索引, 连续的应用更新只写一次
+     */
+    private void scheduleWriteIndex() {
+        indexDirty = true;
+        handler.removeCallbacks(writeIndexRunnable);
+        handler.postDelayed(writeIndexRunnable, INDEX_WRITE_DELAY_MS);
+    }
+
+    private void writeIndex() {
+        if (!loaded || !indexDirty) {
+            return;
+        }
+        indexDirty = false;
+        FileOutputStream stream = null;
+        try {
+            stream = indexFile.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeUTF(entriesLocale);
+            out.writeInt(entries.size());
+            for (Entry entry : entries.values()) {
+                out.writeUTF(entry.packageName);
+                out.writeUTF(entry.label);
+                out.writeUTF(entry.sortKey);
+                out.writeBoolean(entry.launchable);
+                out.writeLong(entry.versionCode);
+                out.writeLong(entry.lastUpdateTime);
+            }
+            out.flush();
+            indexFile.finishWrite(stream);
+        } catch (IOException e) {
+            Log.w(TAG, "写入索引失败", e);
+            if (stream != null) {
+                indexFile.failWrite(stream);
+            }
+        }
+    }
+
+    private class CatalogLiveData extends LiveData<List<Entry>> {
+        @Override
+        protected void onActive() {
+            handler.post(InstalledAppCatalog.this::ensureLoaded);
+        }
+    }
+}
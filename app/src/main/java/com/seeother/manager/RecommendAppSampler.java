@@ -0,0 +1,131 @@
+package com.seeother.manager;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.seeother.data.db.AppDatabase;
+import com.seeother.data.entity.RecommendApp;
+import com.seeother.guard.WeightedAliasSampler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 推荐应用抽样器
+ * 按权重预先构建别名表, 只在 recommend_app 表变化时重建, 抽样为O(1)。
+ * 同时缓存推荐应用的启动 Intent, 应用被卸载或更新时失效。
+ */
+public class RecommendAppSampler {
+    private static final String TAG = "RecommendAppSampler";
+    private static RecommendAppSampler instance;
+
+    private final Context context;
+    private final AppDatabase database;
+    private volatile WeightedAliasSampler<String> sampler;
+    private final Object rebuildLock = new Object();
+    // 包名 -> 启动 Intent, 只缓存能打开的应用
+    private final Map<String, Intent> launchIntents = new ConcurrentHashMap<>();
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data != null) {
+                launchIntents.remove(data.getSchemeSpecificPart());
+            }
+        }
+    };
+
+    private RecommendAppSampler(Context context) {
+        this.context = context.getApplicationContext();
+        database = AppDatabase.getInstance(this.context);
+        database.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("recommend_app") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                rebuild();
+            }
+        });
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        this.context.registerReceiver(packageReceiver, filter);
+    }
+
+    public static synchronized RecommendAppSampler getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecommendAppSampler(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 按权重随机选择一个推荐应用, 尽量不选当前应用
+     *
+     * @param currentPackage 当前应用包名, 只有它一个推荐应用时仍会返回它
+     * @return 没有推荐应用时返回null
+     */
+    public String sample(String currentPackage) {
+        WeightedAliasSampler<String> current = sampler;
+        if (current == null) {
+            current = rebuild();
+        }
+        return current.sample(ThreadLocalRandom.current(), currentPackage);
+    }
+
+    /**
+     * 获取应用的启动 Intent
+     *
+     * @return 应用无法打开时返回null
+     */
+    public Intent getLaunchIntent(String packageName) {
+        Intent intent = launchIntents.get(packageName);
+        if (intent == null) {
+            intent = context.getPackageManager().getLaunchIntentForPackage(packageName);
+            if (intent == null) {
+                return null;
+            }
+            launchIntents.put(packageName, intent);
+        }
+        // 返回副本, 防止调用方修改缓存
+        return new Intent(intent);
+    }
+
+    /**
+     * 从数据库重新构建别名表
+     */
+    private WeightedAliasSampler<String> rebuild() {
+        synchronized (rebuildLock) {
+            try {
+                List<RecommendApp> apps = database.recommendAppDao().getAllApps();
+                List<String> packages = new ArrayList<>(apps.size());
+                int[] weights = new int[apps.size()];
+                for (RecommendApp app : apps) {
+                    if (app.getPkgName() == null) continue;
+                    weights[packages.size()] = app.getWeight();
+                    packages.add(app.getPkgName());
+                }
+                WeightedAliasSampler<String> result = WeightedAliasSampler.build(packages, weights);
+                sampler = result;
+                Log.d(TAG, "重建推荐应用抽样表, 共 " + result.getItems().size() + " 个, 总权重 " + result.getTotalWeight());
+                return result;
+            } catch (Exception e) {
+                Log.e(TAG, "重建推荐应用抽样表失败", e);
+                WeightedAliasSampler<String> current = sampler;
+                return current != null ? current : WeightedAliasSampler.<String>empty();
+            }
+        }
+    }
+}
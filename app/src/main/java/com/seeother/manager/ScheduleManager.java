@@ -0,0 +1,313 @@
+package com.seeother.manager;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.preference.PreferenceManager;
+
+import com.seeother.common.WeeklySchedule;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 时间表管理器
+ * 把勿扰时段(dnd_*)、雷打不动时间段和暂停时间编译为只读快照, 只在相关设置变化时重新编译,
+ * 事件热路径上的查询不读取设置、不创建 Calendar、不解析字符串。
+ * 本地时间按缓存的时区偏移计算, 到达夏令时切换点或时区变化时才重新获取偏移。
+ * <p>
+ * 当前状态(勿扰/雷打不动/暂停)也被缓存, 同时计算下一次状态变化的时间并在主线程中定时刷新,
+ * 状态变化时通知监听器, 用户停留在同一个应用中跨过时间段边界时也能及时更新。
+ * 设备休眠时定时可能延后, 查询时发现已过变化时间会立即刷新。
+ */
+public class ScheduleManager {
+    private static final String TAG = "ScheduleManager";
+    private static final String KEY_UNSHAKABLE = "unshakable_time_periods";
+    private static final String KEY_PAUSE_UNTIL = "pause_until_timestamp";
+    private static final String DND_PREFIX = "dnd_";
+    // 与 Calendar 无关的顺序: 0为周一
+    private static final String[] WEEKDAYS = {"monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"};
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final long MAX_TIMER_DELAY_MS = MILLIS_PER_DAY;
+
+    // 当前状态
+    public static final int MODE_DO_NOT_DISTURB = 1;
+    public static final int MODE_UNSHAKABLE = 1 << 1;
+    public static final int MODE_PAUSED = 1 << 2;
+
+    /**
+     * 状态变化监听器, 在主线程中回调
+     */
+    public interface ModeListener {
+        void onModeChanged(int mode);
+    }
+
+    private static ScheduleManager instance;
+
+    /**
+     * 编译后的时间表
+     */
+    private static final class Snapshot {
+        final WeeklySchedule doNotDisturb;
+        final WeeklySchedule unshakable;
+        final long pauseUntil;
+
+        Snapshot(WeeklySchedule doNotDisturb, WeeklySchedule unshakable, long pauseUntil) {
+            this.doNotDisturb = doNotDisturb;
+            this.unshakable = unshakable;
+            this.pauseUntil = pauseUntil;
+        }
+    }
+
+    /**
+     * 时区偏移在 [validFrom, validUntil) 内不变
+     */
+    private static final class ZoneOffsetCache {
+        final long offsetMillis;
+        final long validFrom;
+        final long validUntil;
+
+        ZoneOffsetCache(long offsetMillis, long validFrom, long validUntil) {
+            this.offsetMillis = offsetMillis;
+            this.validFrom = validFrom;
+            this.validUntil = validUntil;
+        }
+    }
+
+    private final SharedPreferences preferences;
+    private volatile Snapshot snapshot;
+    private volatile ZoneOffsetCache zoneOffset;
+    private volatile int mode = 0;
+    private volatile long nextTransitionMillis = Long.MIN_VALUE; // 到达该时间后状态需要重新计算
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable transitionRunnable = () -> refreshMode(System.currentTimeMillis());
+    private final CopyOnWriteArrayList<ModeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // 监听器必须被强引用, 否则会被回收
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener = (prefs, key) -> {
+        if (key == null || key.startsWith(DND_PREFIX) || KEY_UNSHAKABLE.equals(key) || KEY_PAUSE_UNTIL.equals(key)) {
+            recompile();
+        }
+    };
+
+    private final BroadcastReceiver timeZoneReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // 时区或系统时间变化, 重新计算偏移和状态
+            zoneOffset = null;
+            refreshMode(System.currentTimeMillis());
+        }
+    };
+
+    private ScheduleManager(Context context) {
+        Context appContext = context.getApplicationContext();
+        preferences = PreferenceManager.getDefaultSharedPreferences(appContext);
+        preferences.registerOnSharedPreferenceChangeListener(preferenceListener);
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        appContext.registerReceiver(timeZoneReceiver, filter);
+        recompile();
+    }
+
+    public static synchronized ScheduleManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScheduleManager(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 重新编译时间表, 设置变化后调用
+     * 监听器在主线程中异步通知, 本应用修改设置后也直接调用, 保证立即生效
+     */
+    public void recompile() {
+        long start = System.nanoTime();
+        WeeklySchedule.Builder dnd = new WeeklySchedule.Builder();
+        for (int day = 0; day < WEEKDAYS.length; day++) {
+            String key = DND_PREFIX + WEEKDAYS[day];
+            if (!preferences.getBoolean(key + "_enabled", false)) continue;
+            int startMinute = WeeklySchedule.parseTime(preferences.getString(key + "_start", "22:00"));
+            int endMinute = WeeklySchedule.parseTime(preferences.getString(key + "_end", "08:00"));
+            dnd.addDay(day, startMinute, endMinute);
+        }
+
+        WeeklySchedule.Builder unshakable = new WeeklySchedule.Builder();
+        String periods = preferences.getString(KEY_UNSHAKABLE, "");
+        if (periods != null) {
+            // 格式: "HH:mm-HH:mm;HH:mm-HH:mm", 格式错误的时间段被忽略
+            for (String period : periods.split(";")) {
+                int dash = period.indexOf('-');
+                if (dash < 0 || period.indexOf('-', dash + 1) >= 0) continue;
+                int startMinute = WeeklySchedule.parseTime(period.substring(0, dash));
+                int endMinute = WeeklySchedule.parseTime(period.substring(dash + 1));
+                unshakable.addDaily(startMinute, endMinute);
+            }
+        }
+
+        snapshot = new Snapshot(dnd.build(), unshakable.build(), preferences.getLong(KEY_PAUSE_UNTIL, 0));
+        Log.d(TAG, "编译时间表, 耗时 " + (System.nanoTime() - start) / 1000 + "us");
+        refreshMode(System.currentTimeMillis());
+    }
+
+    /**
+     * 计算当前状态和下一次状态变化的时间, 并定时在变化时刷新
+     */
+    private synchronized void refreshMode(long nowMillis) {
+        Snapshot current = snapshot;
+        if (current == null) return;
+
+        ZoneOffsetCache offset = currentZoneOffset(nowMillis);
+        int weekMinute = weekMinute(nowMillis, offset);
+        int newMode = 0;
+        if (current.doNotDisturb.contains(weekMinute)) newMode |= MODE_DO_NOT_DISTURB;
+        if (current.unshakable.contains(weekMinute)) newMode |= MODE_UNSHAKABLE;
+        if (current.pauseUntil == -1 || (current.pauseUntil > 0 && nowMillis < current.pauseUntil)) {
+            newMode |= MODE_PAUSED;
+        }
+
+        // 下一次变化: 时间表边界、暂停结束、时区偏移变化, 取最早的一个
+        long next = offset.validUntil;
+        long nextMinuteStart = nowMillis - Math.floorMod(nowMillis + offset.offsetMillis, MILLIS_PER_MINUTE)
+                + MILLIS_PER_MINUTE;
+        next = Math.min(next, boundaryMillis(current.doNotDisturb, weekMinute, nextMinuteStart));
+        next = Math.min(next, boundaryMillis(current.unshakable, weekMinute, nextMinuteStart));
+        if (current.pauseUntil > nowMillis) {
+            next = Math.min(next, current.pauseUntil);
+        }
+        nextTransitionMillis = next;
+
+        mainHandler.removeCallbacks(transitionRunnable);
+        if (next != Long.MAX_VALUE) {
+            mainHandler.postDelayed(transitionRunnable, Math.min(Math.max(0, next - nowMillis), MAX_TIMER_DELAY_MS));
+        }
+
+        int oldMode = mode;
+        mode = newMode;
+        if (oldMode != newMode) {
+            Log.d(TAG, "状态变化: " + oldMode + " -> " + newMode + ", 下次变化 " + (next - nowMillis) / 1000 + " 秒后");
+            mainHandler.post(() -> {
+                for (ModeListener listener : listeners) {
+                    listener.onModeChanged(newMode);
+                }
+            });
+        }
+    }
+
+    private static long boundaryMillis(WeeklySchedule schedule, int weekMinute, long nextMinuteStart) {
+        int minutes = schedule.minutesUntilChange(weekMinute);
+        return minutes < 0 ? Long.MAX_VALUE : nextMinuteStart + (minutes - 1) * MILLIS_PER_MINUTE;
+    }
+
+    /**
+     * 获取当前状态, 事件热路径上只读取缓存
+     *
+     * @return MODE_* 的组合
+     */
+    public int getMode() {
+        if (System.currentTimeMillis() >= nextTransitionMillis) {
+            // 定时被延后(如设备休眠), 立即刷新
+            refreshMode(System.currentTimeMillis());
+        }
+        return mode;
+    }
+
+    public void addModeListener(ModeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeModeListener(ModeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 获取本地时间在一周中的分钟(周一 00:00 为0)
+     * 使用缓存的时区偏移, 只在跨过夏令时切换点或时区变化后重新计算
+     */
+    public int getWeekMinute(long nowMillis) {
+        return weekMinute(nowMillis, currentZoneOffset(nowMillis));
+    }
+
+    private ZoneOffsetCache currentZoneOffset(long nowMillis) {
+        ZoneOffsetCache offset = zoneOffset;
+        if (offset == null || nowMillis < offset.validFrom || nowMillis >= offset.validUntil) {
+            offset = computeZoneOffset(nowMillis);
+            zoneOffset = offset;
+        }
+        return offset;
+    }
+
+    private static int weekMinute(long nowMillis, ZoneOffsetCache offset) {
+        long localMillis = nowMillis + offset.offsetMillis;
+        long epochDay = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+        int minuteOfDay = (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / MILLIS_PER_MINUTE);
+        // 1970-01-01 是周四
+        int dayOfWeek = (int) Math.floorMod(epochDay + 3, 7L);
+        return dayOfWeek * WeeklySchedule.MINUTES_PER_DAY + minuteOfDay;
+    }
+
+    private static ZoneOffsetCache computeZoneOffset(long nowMillis) {
+        ZoneRules rules = ZoneId.systemDefault().getRules();
+        Instant now = Instant.ofEpochMilli(nowMillis);
+        long offsetMillis = rules.getOffset(now).getTotalSeconds() * 1000L;
+        ZoneOffsetTransition previous = rules.previousTransition(now);
+        ZoneOffsetTransition next = rules.nextTransition(now);
+        long validFrom = previous != null ? previous.getInstant().toEpochMilli() : Long.MIN_VALUE;
+        long validUntil = next != null ? next.getInstant().toEpochMilli() : Long.MAX_VALUE;
+        return new ZoneOffsetCache(offsetMillis, validFrom, validUntil);
+    }
+
+    /**
+     * 当前是否在勿扰时段内
+     */
+    public boolean isInDoNotDisturbTime() {
+        return (getMode() & MODE_DO_NOT_DISTURB) != 0;
+    }
+
+    /**
+     * 当前是否在雷打不动时间段内
+     */
+    public boolean isInUnshakableTime() {
+        return (getMode() & MODE_UNSHAKABLE) != 0;
+    }
+
+    /**
+     * 指定的本地时间是否在雷打不动时间段内
+     * 雷打不动时间段每天相同, 按周一的分钟查询
+     */
+    public boolean isInUnshakableTime(LocalTime time) {
+        return snapshot.unshakable.contains(time.getHour() * 60 + time.getMinute());
+    }
+
+    /**
+     * 当前是否暂停功能
+     *
+     * @return 设置了暂停时间且未过期, 或者暂停直到手动开启(时间被设置为-1)
+     */
+    public boolean isPaused() {
+        return (getMode() & MODE_PAUSED) != 0;
+    }
+
+    public WeeklySchedule getDoNotDisturbSchedule() {
+        return snapshot.doNotDisturb;
+    }
+
+    public WeeklySchedule getUnshakableSchedule() {
+        return snapshot.unshakable;
+    }
+
+    public long getPauseUntil() {
+        return snapshot.pauseUntil;
+    }
+}
@@ -5,34 +5,70 @@ import android.content.SharedPreferences;
 
 import androidx.preference.PreferenceManager;
 
+import com.seeother.common.SettingsSnapshot;
+
 /**
  * 设置管理工具类
  * 提供所有配置项的读取方法，方便其他模块访问
+ * 设置项从进程内共享的只读快照读取, 快照在设置变化时由监听器重建
  */
 public class SettingsManager {
+    private static SettingsManager instance;
 
     private final SharedPreferences preferences;
+    private final ScheduleManager scheduleManager;
+    private volatile SettingsSnapshot snapshot;
+
+    // 监听器必须被强引用, 否则会被回收
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener = (prefs, key) -> {
+        if (key == null || SettingsSnapshot.KEYS.contains(key)) {
+            rebuildSnapshot();
+        }
+    };
 
-    public SettingsManager(Context context) {
-        this.preferences = PreferenceManager.getDefaultSharedPreferences(context);
+    private SettingsManager(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.preferences = PreferenceManager.getDefaultSharedPreferences(appContext);
+        this.scheduleManager = ScheduleManager.getInstance(appContext);
+        this.snapshot = SettingsSnapshot.from(preferences);
+        preferences.registerOnSharedPreferenceChangeListener(preferenceListener);
+    }
+
+    public static synchronized SettingsManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new SettingsManager(context);
+        }
+        return instance;
+    }
+
+    private void rebuildSnapshot() {
+        snapshot = SettingsSnapshot.from(preferences);
+    }
+
+    /**
+     * 获取当前设置快照
+     */
+    public SettingsSnapshot getSnapshot() {
+        return snapshot;
     }
 
     // 应用行为设置
     public boolean isHideFromRecent() {
-        return preferences.getBoolean("hide_from_recent", false);
+        return snapshot.hideFromRecent;
     }
 
     public boolean isGrayModeForNonRecommendAppsEnabled() {
-        return preferences.getBoolean("enable_gray_mode_for_non_recommend_apps", false);
+        return snapshot.grayModeForNonRecommendApps;
     }
 
     public long getPauseUntilTimestamp() {
-        return preferences.getLong("pause_until_timestamp", 0);
+        return scheduleManager.getPauseUntil();
     }
 
     // 暂停功能相关
     public void setPauseUntilTimestamp(long timestamp) {
         preferences.edit().putLong("pause_until_timestamp", timestamp).apply();
+        scheduleManager.recompile();
     }
 
     /**
@@ -41,55 +77,42 @@ public class SettingsManager {
      * @return 当设置了暂停时间且未过期, 或者暂停直到手动开启(时间被设置为-1)
      */
     public boolean getPauseEnabled() {
-        long pauseUntil = getPauseUntilTimestamp();
-        if (pauseUntil == -1) {
-            return true; // 暂停直到手动开启
-        }
-        return pauseUntil > 0 && System.currentTimeMillis() < pauseUntil;
+        return scheduleManager.isPaused();
     }
 
     public void clearPause() {
         preferences.edit().remove("pause_until_timestamp").apply();
+        scheduleManager.recompile();
     }
 
     // 紧急场景设置
     public boolean isVolumeDownQuickRestoreEnabled() {
-        return preferences.getBoolean("volume_down_quick_restore", true);
+        return snapshot.volumeDownQuickRestore;
     }
 
     public int getVolumeClickInterval() {
-        return preferences.getInt("volume_click_interval", 300);
+        return snapshot.volumeClickInterval;
     }
 
     public boolean isVolumeBothPauseTimeEnabled() {
-        return preferences.getBoolean("volume_both_pause_time_enabled", true);
+        return snapshot.volumeBothPauseTime;
     }
 
     public boolean isVolumeDownLongPressEnabled() {
-        return preferences.getBoolean("volume_down_long_press_enabled", true);
+        return snapshot.volumeDownLongPress;
     }
 
     public int getPauseDurationMinutes() {
-        try {
-            String value = preferences.getString("pause_duration_minutes", "15");
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return 15;
-        }
+        return snapshot.pauseDurationMinutes;
     }
 
     // 推荐应用设置
     public boolean isRecommendOnLessUsedAppEnabled() {
-        return preferences.getBoolean("recommend_on_less_used_app", false);
+        return snapshot.recommendOnLessUsedApp;
     }
 
     public int getRecommendIntervalMinutes() {
-        try {
-            String value = preferences.getString("recommend_interval_minutes", "1");
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return 1;
-        }
+        return snapshot.recommendIntervalMinutes;
     }
 
     // 上次推荐时间记录
@@ -108,37 +131,38 @@ public class SettingsManager {
      */
     public void setUnshakableTimePeriods(String timePeriods) {
         preferences.edit().putString("unshakable_time_periods", timePeriods).apply();
+        rebuildSnapshot();
+        scheduleManager.recompile();
     }
 
     /**
      * 获取雷打不动时间段列表
      */
     public String getUnshakableTimePeriods() {
-        return preferences.getString("unshakable_time_periods", "");
+        return snapshot.unshakableTimePeriods;
     }
 
     // 勿扰模式推荐应用设置
     public boolean isRecommendInDndModeEnabled() {
-        return preferences.getBoolean("recommend_in_dnd_mode", false);
+        return snapshot.recommendInDndMode;
+    }
+
+    // 调试设置
+    public boolean isEventTraceEnabled() {
+        return snapshot.eventTraceEnabled;
+    }
+
+    public boolean isEventTraceSnapshotEnabled() {
+        return snapshot.eventTraceSnapshotEnabled;
     }
 
     // 阈值设置
     public int getMonitoredAppThreshold() {
-        try {
-            String value = preferences.getString("monitored_app_threshold", "10");
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return 10;
-        }
+        return snapshot.monitoredAppThreshold;
     }
 
     public int getShortVideoThreshold() {
-        try {
-            String value = preferences.getString("short_video_threshold", "10");
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return 10;
-        }
+        return snapshot.shortVideoThreshold;
     }
 
     /**
@@ -146,67 +170,6 @@ public class SettingsManager {
      * @return true表示在雷打不动时间段内
      */
     public boolean isInUnshakableTime() {
-        String timePeriods = getUnshakableTimePeriods();
-        if (timePeriods == null || timePeriods.trim().isEmpty()) {
-            return false;
-        }
-
-        java.util.Calendar calendar = java.util.Calendar.getInstance();
-        int currentHour = calendar.get(java.util.Calendar.HOUR_OF_DAY);
-        int currentMinute = calendar.get(java.util.Calendar.MINUTE);
-        int currentTimeInMinutes = currentHour * 60 + currentMinute;
-
-        // 分割多个时间段
-        String[] periods = timePeriods.split(";");
-        for (String period : periods) {
-            period = period.trim();
-            if (period.isEmpty()) {
-                continue;
-            }
-
-            try {
-                // 分割开始和结束时间
-                String[] times = period.split("-");
-                if (times.length != 2) {
-                    continue;
-                }
-
-                // 解析开始时间
-                String[] startParts = times[0].trim().split(":");
-                if (startParts.length != 2) {
-                    continue;
-                }
-                int startHour = Integer.parseInt(startParts[0]);
-                int startMinute = Integer.parseInt(startParts[1]);
-                int startTimeInMinutes = startHour * 60 + startMinute;
-
-                // 解析结束时间
-                String[] endParts = times[1].trim().split(":");
-                if (endParts.length != 2) {
-                    continue;
-                }
-                int endHour = Integer.parseInt(endParts[0]);
-                int endMinute = Integer.parseInt(endParts[1]);
-                int endTimeInMinutes = endHour * 60 + endMinute;
-
-                // 检查当前时间是否在该时间段内
-                if (startTimeInMinutes <= endTimeInMinutes) {
-                    // 正常情况：不跨天
-                    if (currentTimeInMinutes >= startTimeInMinutes && currentTimeInMinutes <= endTimeInMinutes) {
-                        return true;
-                    }
-                } else {
-                    // 跨天情况：例如 22:00-02:00
-                    if (currentTimeInMinutes >= startTimeInMinutes || currentTimeInMinutes <= endTimeInMinutes) {
-                        return true;
-                    }
-                }
-            } catch (NumberFormatException e) {
-                // 忽略格式错误的时间段
-                continue;
-            }
-        }
-
-        return false;
+        return scheduleManager.isInUnshakableTime();
     }
-}
\ No newline at end of file
+}
@@ -1,151 +1,237 @@
 package com.seeother.manager;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.util.Log;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import com.seeother.data.entity.UsageEvent;
+import com.seeother.data.entity.UsageRollupDay;
+import com.seeother.data.entity.UsageRollupMonth;
+import com.seeother.guard.stats.DwellHistogram;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 统计管理器
  * 负责管理少用应用打开次数和短视频浏览次数的统计
+ * 计数保存在内存中, 按天(epoch day)和月分桶, 只在跨过缓存的零点边界时重新计算日期;
+ * 每次计数同时记录到 {@link UsageEventLog}, 启动时从按天/按月汇总表恢复当前分桶的计数;
+ * 短视频的观看时间按实际停留时长统计, 每个分桶保存一个固定大小的停留时长直方图
  */
 public class StatisticsManager {
     private static final String TAG = "StatisticsManager";
+
+    // 旧版本保存计数的 SharedPreferences, 只用于一次性迁移
     private static final String PREF_NAME = "statistics_pref";
-    
-    // 少用应用打开次数相关
     private static final String KEY_MONITORED_APP_OPEN_COUNT = "monitored_app_open_count";
-    private static final String KEY_LAST_MONITORED_APP_CHECK_DATE = "last_monitored_app_check_date";
-    
-    // 短视频浏览次数相关
     private static final String KEY_SHORT_VIDEO_COUNT_TODAY = "short_video_count_today";
     private static final String KEY_SHORT_VIDEO_COUNT_MONTH = "short_video_count_month";
-    private static final String KEY_LAST_VIDEO_CHECK_DATE = "last_video_check_date";
-    private static final String KEY_LAST_MONTH_CHECK = "last_month_check";
-    
-    // 阈值
-    private static final int MONITORED_APP_THRESHOLD = 10;
-    private static final int SHORT_VIDEO_THRESHOLD = 10;
+    private static final String KEY_LAST_VIDEO_CHECK_DATE = "last_video_check_date"; // yyyy-MM-dd
+    private static final String KEY_LAST_MONTH_CHECK = "last_month_check"; // yyyy-MM
+
+    private static StatisticsManager instance;
     
-    private final SharedPreferences preferences;
-    private final Context context;
+    private final SharedPreferences legacyPreferences;
     private final SettingsManager settingsManager;
+    private final UsageEventLog usageEventLog;
+    private final Object bucketLock = new Object();
 
-    public StatisticsManager(Context context) {
-        this.context = context;
-        this.preferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        this.settingsManager = new SettingsManager(context);
-        checkAndResetIfNeeded();
+    // 当前分桶
+    private volatile long dayStartMillis = Long.MAX_VALUE;
+    private volatile long nextMidnightMillis = Long.MIN_VALUE;
+    private long currentEpochDay = Long.MIN_VALUE;
+    private int currentMonth = Integer.MIN_VALUE; // 年 * 12 + 月(0-11)
+
+    // 计数
+    private final AtomicInteger monitoredAppOpenCount = new AtomicInteger();
+    private final AtomicInteger shortVideoCountToday = new AtomicInteger();
+    private final AtomicInteger shortVideoCountMonth = new AtomicInteger();
+    // 停留时长, 由 bucketLock 保护
+    private final DwellHistogram dwellToday = new DwellHistogram();
+    private final DwellHistogram dwellMonth = new DwellHistogram();
+
+    private final BroadcastReceiver timeChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // 时区或系统时间变化, 下次计数时重新计算零点边界
+            nextMidnightMillis = Long.MIN_VALUE;
+        }
+    };
+
+    private StatisticsManager(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.legacyPreferences = appContext.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        this.settingsManager = SettingsManager.getInstance(appContext);
+        this.usageEventLog = UsageEventLog.getInstance(appContext);
+        synchronized (bucketLock) {
+            updateBoundary(System.currentTimeMillis());
+        }
+        usageEventLog.post(this::load);
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        appContext.registerReceiver(timeChangeReceiver, filter);
+    }
+
+    public static synchronized StatisticsManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new StatisticsManager(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 在事件日志线程中从汇总表恢复当前分桶的计数, 恢复前已产生的计数保留并累加
+     */
+    private void load() {
+        int epochDay;
+        int month;
+        synchronized (bucketLock) {
+            epochDay = (int) currentEpochDay;
+            month = currentMonth;
+        }
+        migrateLegacyCounts(epochDay, month);
+
+        UsageRollupDay videoToday = usageEventLog.getDayTotal(epochDay, UsageEvent.TYPE_SHORT_VIDEO);
+        UsageRollupMonth videoMonth = usageEventLog.getMonthTotal(month, UsageEvent.TYPE_SHORT_VIDEO);
+        UsageRollupMonth openMonth = usageEventLog.getMonthTotal(month, UsageEvent.TYPE_MONITORED_APP_OPEN);
+        LocalDate today = LocalDate.ofEpochDay(epochDay);
+        DwellHistogram savedDwellToday = usageEventLog.getDwellHistogram(epochDay, epochDay);
+        DwellHistogram savedDwellMonth = usageEventLog.getDwellHistogram(
+                (int) today.withDayOfMonth(1).toEpochDay(), epochDay);
+        synchronized (bucketLock) {
+            if (currentEpochDay == epochDay) {
+                if (videoToday != null) shortVideoCountToday.addAndGet(videoToday.getEventCount());
+                dwellToday.merge(savedDwellToday);
+            }
+            if (currentMonth == month) {
+                if (videoMonth != null) shortVideoCountMonth.addAndGet(videoMonth.getEventCount());
+                if (openMonth != null) monitoredAppOpenCount.addAndGet(openMonth.getEventCount());
+                dwellMonth.merge(savedDwellMonth);
+            }
+        }
+        Log.d(TAG, "已恢复统计: 今天短视频 " + shortVideoCountToday.get() + ", 本月短视频 "
+                + shortVideoCountMonth.get() + ", 本月少用应用打开 " + monitoredAppOpenCount.get());
+    }
+
+    /**
+     * 将旧版本保存在 SharedPreferences 中的当天/当月计数写入汇总表, 之后删除旧数据
+     */
+    private void migrateLegacyCounts(int epochDay, int month) {
+        if (!legacyPreferences.contains(KEY_LAST_VIDEO_CHECK_DATE) && !legacyPreferences.contains(KEY_LAST_MONTH_CHECK)) {
+            return;
+        }
+        LocalDate today = LocalDate.ofEpochDay(epochDay);
+        boolean sameDay = today.toString().equals(legacyPreferences.getString(KEY_LAST_VIDEO_CHECK_DATE, ""));
+        boolean sameMonth = YearMonth.from(today).toString().equals(legacyPreferences.getString(KEY_LAST_MONTH_CHECK, ""));
+        int videoToday = sameDay ? legacyPreferences.getInt(KEY_SHORT_VIDEO_COUNT_TODAY, 0) : 0;
+        int videoMonth = sameMonth ? legacyPreferences.getInt(KEY_SHORT_VIDEO_COUNT_MONTH, 0) : 0;
+        int openMonth = sameMonth ? legacyPreferences.getInt(KEY_MONITORED_APP_OPEN_COUNT, 0) : 0;
+        usageEventLog.addToTotals(epochDay, month, UsageEvent.TYPE_SHORT_VIDEO, videoToday, videoMonth);
+        usageEventLog.addToTotals(epochDay, month, UsageEvent.TYPE_MONITORED_APP_OPEN, 0, openMonth);
+        legacyPreferences.edit().clear().commit();
+        Log.d(TAG, "已迁移旧版统计数据");
     }
 
     /**
-     * 检查是否需要重置数据（每天/每月）
+     * 检查是否跨过了零点(或系统时间被调回), 需要时切换到新的分桶
      */
     private void checkAndResetIfNeeded() {
-        String today = getTodayDate();
-        String lastVideoCheckDate = preferences.getString(KEY_LAST_VIDEO_CHECK_DATE, "");
-        
-        // 检查是否需要重置每日数据
-        if (!today.equals(lastVideoCheckDate)) {
-            Log.d(TAG, "新的一天，重置每日短视频计数");
-            preferences.edit()
-                    .putInt(KEY_SHORT_VIDEO_COUNT_TODAY, 0)
-                    .putString(KEY_LAST_VIDEO_CHECK_DATE, today)
-                    .apply();
+        long now = System.currentTimeMillis();
+        if (now >= dayStartMillis && now < nextMidnightMillis) {
+            return;
         }
-        
-        // 检查是否需要重置每月数据
-        String currentMonth = getCurrentMonth();
-        String lastMonthCheck = preferences.getString(KEY_LAST_MONTH_CHECK, "");
-        
-        if (!currentMonth.equals(lastMonthCheck)) {
-            Log.d(TAG, "新的月份，重置每月数据");
-            preferences.edit()
-                    .putInt(KEY_MONITORED_APP_OPEN_COUNT, 0)
-                    .putInt(KEY_SHORT_VIDEO_COUNT_MONTH, 0)
-                    .putString(KEY_LAST_MONTH_CHECK, currentMonth)
-                    .apply();
+        synchronized (bucketLock) {
+            if (now >= dayStartMillis && now < nextMidnightMillis) {
+                return;
+            }
+            updateBoundary(now);
         }
     }
 
     /**
-     * 获取今天的日期字符串 (yyyy-MM-dd)
+     * 按当前时区计算当天的起止时间, 日期或月份变化时重置对应的计数
      */
-    private String getTodayDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        return sdf.format(new Date());
+    private void updateBoundary(long now) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate today = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+        dayStartMillis = today.atStartOfDay(zone).toInstant().toEpochMilli();
+        nextMidnightMillis = today.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+
+        long epochDay = today.toEpochDay();
+        int month = UsageEventLog.monthKey(today);
+        if (currentEpochDay != Long.MIN_VALUE && epochDay != currentEpochDay) {
+            Log.d(TAG, "新的一天，重置每日短视频计数");
+            shortVideoCountToday.set(0);
+            dwellToday.clear();
+        }
+        if (currentMonth != Integer.MIN_VALUE && month != currentMonth) {
+            Log.d(TAG, "新的月份，重置每月数据");
+            monitoredAppOpenCount.set(0);
+            shortVideoCountMonth.set(0);
+            dwellMonth.clear();
+        }
+        currentEpochDay = epochDay;
+        currentMonth = month;
     }
 
     /**
-     * 获取当前月份字符串 (yyyy-MM)
+     * 立即写入缓存的事件, 在服务销毁或内存不足时调用
      */
-    private String getCurrentMonth() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM", Locale.getDefault());
-        return sdf.format(new Date());
+    public void flush() {
+        usageEventLog.flush();
     }
 
     /**
      * 增加少用应用打开次数
+     * @param packageName 打开的应用包名
      * @return 如果达到阈值返回true
      */
-    public boolean incrementMonitoredAppOpenCount() {
+    public boolean incrementMonitoredAppOpenCount(String packageName) {
         checkAndResetIfNeeded();
-        
-        int currentCount = preferences.getInt(KEY_MONITORED_APP_OPEN_COUNT, 0);
-        currentCount++;
-        
-        preferences.edit()
-                .putInt(KEY_MONITORED_APP_OPEN_COUNT, currentCount)
-                .apply();
+        int currentCount = monitoredAppOpenCount.incrementAndGet();
+        usageEventLog.append(packageName, UsageEvent.TYPE_MONITORED_APP_OPEN, System.currentTimeMillis(), 0);
         
         Log.d(TAG, "少用应用打开次数: " + currentCount);
         
         // 每达到设置的阈值返回true
         int threshold = settingsManager.getMonitoredAppThreshold();
-        if (currentCount % threshold == 0) {
-            return true;
-        }
-        
-        return false;
+        return currentCount % threshold == 0;
     }
 
     /**
      * 获取少用应用打开次数
      */
     public int getMonitoredAppOpenCount() {
-        return preferences.getInt(KEY_MONITORED_APP_OPEN_COUNT, 0);
+        checkAndResetIfNeeded();
+        return monitoredAppOpenCount.get();
     }
 
     /**
-     * 增加短视频浏览次数
+     * 增加短视频浏览次数, 每个视频只计一次(同一个视频连续重复识别时调用方不再调用)
+     * @param packageName 短视频应用包名
      * @return 如果达到阈值返回true
      */
-    public boolean incrementShortVideoCount() {
+    public boolean incrementShortVideoCount(String packageName) {
         checkAndResetIfNeeded();
-        
-        int todayCount = preferences.getInt(KEY_SHORT_VIDEO_COUNT_TODAY, 0);
-        int monthCount = preferences.getInt(KEY_SHORT_VIDEO_COUNT_MONTH, 0);
-        
-        todayCount++;
-        monthCount++;
-        
-        preferences.edit()
-                .putInt(KEY_SHORT_VIDEO_COUNT_TODAY, todayCount)
-                .putInt(KEY_SHORT_VIDEO_COUNT_MONTH, monthCount)
-                .apply();
+        int todayCount = shortVideoCountToday.incrementAndGet();
+        int monthCount = shortVideoCountMonth.incrementAndGet();
+        // 识别到视频时就记录次数, 与内存中的计数一致, 停留时长在视频结束时另外记录
+        usageEventLog.append(packageName, UsageEvent.TYPE_SHORT_VIDEO, System.currentTimeMillis(), 0);
         
         Log.d(TAG, "短视频浏览次数 - 今天: " + todayCount + ", 本月: " + monthCount);
         
         // 每达到设置的阈值返回true
         int threshold = settingsManager.getShortVideoThreshold();
-        if (monthCount % threshold == 0) {
-            return true;
-        }
-        
-        return false;
+        return monthCount % threshold == 0;
     }
 
     /**
@@ -153,7 +239,7 @@ public class StatisticsManager {
      */
     public int getShortVideoCountToday() {
         checkAndResetIfNeeded();
-        return preferences.getInt(KEY_SHORT_VIDEO_COUNT_TODAY, 0);
+        return shortVideoCountToday.get();
     }
 
     /**
@@ -161,18 +247,35 @@ public class StatisticsManager {
      */
     public int getShortVideoCountMonth() {
         checkAndResetIfNeeded();
-        return preferences.getInt(KEY_SHORT_VIDEO_COUNT_MONTH, 0);
+        return shortVideoCountMonth.get();
     }
 
     /**
-     * 将视频数量转换为时间（每个视频30秒）
-     * @param count 视频数量
+     * 记录一个短视频的停留时长, 在该视频结束(切换到下一个或离开应用)时调用。
+     * 浏览次数在识别到视频时已由 {@link #incrementShortVideoCount(String)} 计入并记录,
+     * 这里只累加停留时长和直方图, 不改变次数
+     *
+     * @param packageName 短视频应用包名
+     * @param dwellMillis 停留时长(毫秒)
+     */
+    public void recordShortVideoDwell(String packageName, long dwellMillis) {
+        checkAndResetIfNeeded();
+        synchronized (bucketLock) {
+            dwellToday.add(dwellMillis);
+            dwellMonth.add(dwellMillis);
+        }
+        usageEventLog.append(packageName, UsageEvent.TYPE_SHORT_VIDEO_DWELL, System.currentTimeMillis(), dwellMillis);
+    }
+
+    /**
+     * 格式化时长
+     * @param millis 毫秒
      * @return 格式化的时间字符串，如 "2h35min"
      */
-    public String formatTimeFromVideoCount(int count) {
-        int totalSeconds = count * 30;
-        int hours = totalSeconds / 3600;
-        int minutes = (totalSeconds % 3600) / 60;
+    public static String formatDuration(long millis) {
+        long totalSeconds = millis / 1000;
+        long hours = totalSeconds / 3600;
+        long minutes = (totalSeconds % 3600) / 60;
         
         if (hours > 0) {
             return hours + "h" + minutes + "min";
@@ -190,10 +293,19 @@ public class StatisticsManager {
         checkAndResetIfNeeded();
         int todayCount = getShortVideoCountToday();
         int monthCount = getShortVideoCountMonth();
-        String todayTime = formatTimeFromVideoCount(todayCount);
-        String monthTime = formatTimeFromVideoCount(monthCount);
+        long todayMillis;
+        long monthMillis;
+        long medianMillis;
+        long p90Millis;
+        synchronized (bucketLock) {
+            todayMillis = dwellToday.getSumMillis();
+            monthMillis = dwellMonth.getSumMillis();
+            medianMillis = dwellToday.percentile(0.5);
+            p90Millis = dwellToday.percentile(0.9);
+        }
         
-        return new VideoStatistics(todayCount, monthCount, todayTime, monthTime);
+        return new VideoStatistics(todayCount, monthCount, formatDuration(todayMillis), formatDuration(monthMillis),
+                medianMillis, p90Millis);
     }
 
     /**
@@ -204,12 +316,23 @@ public class StatisticsManager {
         public final int monthCount;
         public final String todayTime;
         public final String monthTime;
+        /**
+         * 今天每个视频停留时长的中位数(毫秒)
+         */
+        public final long todayMedianDwellMillis;
+        /**
+         * 今天每个视频停留时长的90百分位数(毫秒)
+         */
+        public final long todayP90DwellMillis;
 
-        public VideoStatistics(int todayCount, int monthCount, String todayTime, String monthTime) {
+        public VideoStatistics(int todayCount, int monthCount, String todayTime, String monthTime,
+                               long todayMedianDwellMillis, long todayP90DwellMillis) {
             this.todayCount = todayCount;
             this.monthCount = monthCount;
             this.todayTime = todayTime;
             this.monthTime = monthTime;
+            this.todayMedianDwellMillis = todayMedianDwellMillis;
+            this.todayP90DwellMillis = todayP90DwellMillis;
         }
     }
 }
@@ -0,0 +1,277 @@
+package com.seeother.manager;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import com.seeother.data.dao.UsageEventRoomDao;
+import com.seeother.data.db.AppDatabase;
+import com.seeother.data.entity.DwellBucketCount;
+import com.seeother.data.entity.UsageDwellBucket;
+import com.seeother.data.entity.UsageEvent;
+import com.seeother.data.entity.UsageRollupDay;
+import com.seeother.data.entity.UsageRollupMonth;
+import com.seeother.guard.stats.DwellHistogram;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 使用事件日志
+ * 事件先缓存在内存中, 在后台线程中按批次写入 usage_event, 同一事务内累加按天/按月的汇总行,
+ * 读取统计时只需按主键查询汇总表, 不扫描原始事件。
+ * 带停留时长的事件同时累加到按天的停留时长直方图, 直方图的行数只与桶数有关。
+ * 短视频的次数和停留时长是两个事件: 识别到视频时记录次数, 视频结束时记录停留时长,
+ * 进程在视频播放中被杀死时次数不会丢失。
+ * 超过保留期的原始事件会被删除, 只保留按天汇总; 更早的按天汇总也会被删除, 只保留按月汇总。
+ */
+public class UsageEventLog {
+    private static final String TAG = "UsageEventLog";
+    private static final long FLUSH_DELAY_MS = 5_000;
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final int RAW_RETENTION_DAYS = 30;
+    private static final int DAY_ROLLUP_RETENTION_DAYS = 400;
+    private static UsageEventLog instance;
+
+    private final UsageEventRoomDao dao;
+    private final Handler handler;
+    private final Runnable flushRunnable = this::flushNow;
+    private final Object lock = new Object();
+
+    private List<UsageEvent> pending = new ArrayList<>();
+    private boolean flushScheduled = false;
+    // 上次清理时的日期, 只在后台线程访问
+    private long lastCompactionDay = Long.MIN_VALUE;
+
+    private UsageEventLog(Context context) {
+        dao = AppDatabase.getInstance(context.getApplicationContext()).usageEventDao();
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    public static synchronized UsageEventLog getInstance(Context context) {
+        if (instance == null) {
+            instance = new UsageEventLog(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 记录一个事件, 延迟批量写入
+     */
+    public void append(String packageName, int type, long timestamp, long dwellMillis) {
+        UsageEvent event = new UsageEvent(packageName != null ? packageName : UsageEvent.ALL_PACKAGES,
+                type, timestamp, dwellMillis);
+        boolean flushImmediately;
+        boolean schedule;
+        synchronized (lock) {
+            pending.add(event);
+            flushImmediately = pending.size() >= MAX_BATCH_SIZE;
+            schedule = !flushScheduled;
+            flushScheduled = true;
+        }
+        if (flushImmediately) {
+            flush();
+        } else if (schedule) {
+            handler.postDelayed(flushRunnable, FLUSH_DELAY_MS);
+        }
+    }
+
+    /**
+     * 立即在后台线程写入缓存的事件, 在服务销毁或内存不足时调用
+     */
+    public void flush() {
+        handler.removeCallbacks(flushRunnable);
+        handler.post(flushRunnable);
+    }
+
+    /**
+     * 在后台线程中执行任务, 与批量写入串行
+     */
+    public void post(Runnable task) {
+        handler.post(task);
+    }
+
+    private void flushNow() {
+        List<UsageEvent> batch;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+
+        // 本批事件先在内存中合并, 每个汇总行只更新一次
+        ZoneId zone = ZoneId.systemDefault();
+        Map<String, UsageRollupDay> dayDeltas = new HashMap<>();
+        Map<String, UsageRollupMonth> monthDeltas = new HashMap<>();
+        Map<String, UsageDwellBucket> dwellDeltas = new HashMap<>();
+        for (UsageEvent event : batch) {
+            LocalDate date = Instant.ofEpochMilli(event.getTimestamp()).atZone(zone).toLocalDate();
+            int epochDay = (int) date.toEpochDay();
+            int month = monthKey(date);
+            addDelta(dayDeltas, monthDeltas, dwellDeltas, epochDay, month, event.getPackageName(), event);
+            if (!UsageEvent.ALL_PACKAGES.equals(event.getPackageName())) {
+                addDelta(dayDeltas, monthDeltas, dwellDeltas, epochDay, month, UsageEvent.ALL_PACKAGES, event);
+            }
+        }
+
+        try {
+            dao.append(batch, new ArrayList<>(dayDeltas.values()), new ArrayList<>(monthDeltas.values()),
+                    new ArrayList<>(dwellDeltas.values()));
+            Log.d(TAG, "写入 " + batch.size() + " 个事件, 更新 "
+                    + (dayDeltas.size() + monthDeltas.size() + dwellDeltas.size()) + " 个汇总行");
+        } catch (RuntimeException e) {
+            Log.e(TAG, "写入使用事件失败", e);
+            return;
+        }
+        compactIfNeeded(LocalDate.now(zone));
+    }
+
+    private static void addDelta(Map<String, UsageRollupDay> dayDeltas, Map<String, UsageRollupMonth> monthDeltas,
+                                 Map<String, UsageDwellBucket> dwellDeltas,
+                                 int epochDay, int month, String packageName, UsageEvent event) {
+        // 停留时长事件汇总到短视频的行, 只累加时长
+        boolean dwellOnly = event.getType() == UsageEvent.TYPE_SHORT_VIDEO_DWELL;
+        int type = dwellOnly ? UsageEvent.TYPE_SHORT_VIDEO : event.getType();
+        int count = dwellOnly ? 0 : 1;
+
+        String dayKey = epochDay + "|" + type + "|" + packageName;
+        UsageRollupDay day = dayDeltas.get(dayKey);
+        if (day == null) {
+            day = new UsageRollupDay(epochDay, packageName, type);
+            dayDeltas.put(dayKey, day);
+        }
+        day.setEventCount(day.getEventCount() + count);
+        day.setDwellMillis(day.getDwellMillis() + event.getDwellMillis());
+
+        String monthKey = month + "|" + type + "|" + packageName;
+        UsageRollupMonth monthRollup = monthDeltas.get(monthKey);
+        if (monthRollup == null) {
+            monthRollup = new UsageRollupMonth(month, packageName, type);
+            monthDeltas.put(monthKey, monthRollup);
+        }
+        monthRollup.setEventCount(monthRollup.getEventCount() + count);
+        monthRollup.setDwellMillis(monthRollup.getDwellMillis() + event.getDwellMillis());
+
+        if (event.getDwellMillis() > 0) {
+            int bucket = DwellHistogram.bucketOf(event.getDwellMillis());
+            String dwellKey = epochDay + "|" + bucket + "|" + packageName;
+            UsageDwellBucket dwell = dwellDeltas.get(dwellKey);
+            if (dwell == null) {
+                dwell = new UsageDwellBucket(epochDay, packageName, bucket);
+                dwellDeltas.put(dwellKey, dwell);
+            }
+            dwell.setItemCount(dwell.getItemCount() + 1);
+        }
+    }
+
+    /**
+     * 每天最多清理一次过期数据
+     */
+    private void compactIfNeeded(LocalDate today) {
+        long epochDay = today.toEpochDay();
+        if (epochDay == lastCompactionDay) {
+            return;
+        }
+        lastCompactionDay = epochDay;
+        long rawCutoff = today.minusDays(RAW_RETENTION_DAYS).atStartOfDay(ZoneId.systemDefault())
+                .toInstant().toEpochMilli();
+        try {
+            int events = dao.deleteEventsBefore(rawCutoff);
+            int days = dao.deleteDayRollupsBefore((int) (epochDay - DAY_ROLLUP_RETENTION_DAYS));
+            int buckets = dao.deleteDwellBucketsBefore((int) (epochDay - DAY_ROLLUP_RETENTION_DAYS));
+            Log.d(TAG, "清理过期数据: 原始事件 " + events + " 条, 按天汇总 " + days + " 条, 停留时长直方图 " + buckets + " 条");
+        } catch (RuntimeException e) {
+            Log.e(TAG, "清理过期数据失败", e);
+        }
+    }
+
+    /**
+     * 不记录原始事件, 直接累加某天/某月的合计, 用于导入旧版本的统计数据。
+     * 必须在后台线程中调用, 参见 {@link #post(Runnable)}
+     */
+    void addToTotals(int epochDay, int month, int type, int dayCount, int monthCount) {
+        List<UsageRollupDay> days = new ArrayList<>();
+        List<UsageRollupMonth> months = new ArrayList<>();
+        if (dayCount > 0) {
+            UsageRollupDay day = new UsageRollupDay(epochDay, UsageEvent.ALL_PACKAGES, type);
+            day.setEventCount(dayCount);
+            days.add(day);
+        }
+        if (monthCount > 0) {
+            UsageRollupMonth monthRollup = new UsageRollupMonth(month, UsageEvent.ALL_PACKAGES, type);
+            monthRollup.setEventCount(monthCount);
+            months.add(monthRollup);
+        }
+        if (!days.isEmpty() || !months.isEmpty()) {
+            dao.append(new ArrayList<>(), days, months, new ArrayList<>());
+        }
+    }
+
+    /**
+     * 获取某天的合计
+     *
+     * @return 没有记录时返回 null
+     */
+    public UsageRollupDay getDayTotal(int epochDay, int type) {
+        return dao.getDayRollup(epochDay, UsageEvent.ALL_PACKAGES, type);
+    }
+
+    /**
+     * 获取某月的合计
+     *
+     * @return 没有记录时返回 null
+     */
+    public UsageRollupMonth getMonthTotal(int month, int type) {
+        return dao.getMonthRollup(month, UsageEvent.ALL_PACKAGES, type);
+    }
+
+    /**
+     * 获取某天按应用分组的汇总, 按次数从多到少排序
+     */
+    public List<UsageRollupDay> getDayRollupsByApp(int epochDay, int type) {
+        return dao.getDayRollupsByApp(epochDay, type);
+    }
+
+    /**
+     * 获取某月按应用分组的汇总, 按次数从多到少排序
+     */
+    public List<UsageRollupMonth> getMonthRollupsByApp(int month, int type) {
+        return dao.getMonthRollupsByApp(month, type);
+    }
+
+    /**
+     * 读取一段日期内(包含两端)所有应用合计的短视频停留时长直方图
+     * 桶计数和总时长各用一次范围查询, 不随天数增加查询次数
+     */
+    public DwellHistogram getDwellHistogram(int fromDay, int toDay) {
+        int[] counts = new int[DwellHistogram.BUCKET_COUNT];
+        for (DwellBucketCount row : dao.getDwellBuckets(UsageEvent.ALL_PACKAGES, fromDay, toDay)) {
+            if (row.bucket >= 0 && row.bucket < counts.length) {
+                counts[row.bucket] = row.itemCount;
+            }
+        }
+        long sumMillis = dao.getDwellMillisBetween(UsageEvent.ALL_PACKAGES, UsageEvent.TYPE_SHORT_VIDEO, fromDay, toDay);
+        DwellHistogram histogram = new DwellHistogram();
+        histogram.addAll(counts, sumMillis);
+        return histogram;
+    }
+
+    /**
+     * 汇总表使用的月份编号: 年 * 12 + 月(0-11)
+     */
+    public static int monthKey(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+}
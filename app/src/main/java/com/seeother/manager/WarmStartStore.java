@@ -0,0 +1,234 @@
+package com.seeother.manager;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * 热启动状态快照
+ * 服务被系统杀死重启后, 内存中的状态(当前应用、应用策略、守卫规则、作者计数)都会丢失。
+ * 各组件把自己的状态注册为一个分段, 状态变化后延迟写入内存映射文件;
+ * 进程被杀死时页缓存仍由内核写回, 重启后在 onCreate 中直接读取恢复。
+ * <p>
+ * 文件格式: 魔数、版本号、保存时间、数据长度、CRC32, 之后是若干 (分段标识, 长度, 内容)。
+ * 版本号不一致、CRC 校验失败或超过 MAX_AGE_MS 的快照会被丢弃。
+ */
+public class WarmStartStore {
+    private static final String TAG = "WarmStartStore";
+    private static final String FILE_NAME = "warm_start.bin";
+    private static final int FILE_SIZE = 64 * 1024;
+    private static final int MAGIC = 0x534F5753; // "SOWS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final long MAX_AGE_MS = 10 * 60 * 1000L; // 超过10分钟的状态不再恢复
+    private static final long CHECKPOINT_DELAY_MS = 5000;
+
+    // 分段标识
+    public static final int SECTION_APP_POLICIES = 1;
+    public static final int SECTION_GUARD = 2;
+    public static final int SECTION_USAGE_MONITOR = 3;
+
+    /**
+     * 快照分段
+     */
+    public interface Section {
+        int getSectionId();
+
+        /**
+         * 写入分段内容, 在快照线程中调用
+         */
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static WarmStartStore instance;
+
+    private final File file;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Runnable checkpointRunnable = this::checkpoint;
+    private final Object writeLock = new Object();
+    private final CopyOnWriteArrayList<Section> sections = new CopyOnWriteArrayList<>();
+    // 启动时读取的分段, 只用于恢复
+    private final Map<Integer, byte[]> restoredSections = new HashMap<>();
+    private MappedByteBuffer buffer;
+    private boolean checkpointScheduled = false;
+
+    private WarmStartStore(Context context) {
+        file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+        thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        load();
+    }
+
+    public static synchronized WarmStartStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new WarmStartStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 映射文件并读取上次保存的分段
+     */
+    private void load() {
+        long start = SystemClock.elapsedRealtimeNanos();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        } catch (IOException e) {
+            Log.e(TAG, "映射快照文件失败", e);
+            return;
+        }
+
+        if (buffer.getInt(0) != MAGIC) {
+            return;
+        }
+        int version = buffer.getInt(4);
+        long savedAt = buffer.getLong(8);
+        int length = buffer.getInt(16);
+        int crc = buffer.getInt(20);
+        long age = System.currentTimeMillis() - savedAt;
+        if (version != VERSION || length <= 0 || length > FILE_SIZE - HEADER_SIZE) {
+            Log.d(TAG, "丢弃不兼容的快照, 版本: " + version);
+            return;
+        }
+        if (age < 0 || age > MAX_AGE_MS) {
+            Log.d(TAG, "丢弃过期的快照, 已保存 " + age / 1000 + " 秒");
+            return;
+        }
+
+        byte[] payload = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(HEADER_SIZE);
+        view.get(payload);
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        if ((int) checksum.getValue() != crc) {
+            Log.w(TAG, "快照校验失败, 丢弃");
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            while (in.available() > 0) {
+                int sectionId = in.readInt();
+                byte[] content = new byte[in.readInt()];
+                in.readFully(content);
+                restoredSections.put(sectionId, content);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "解析快照失败: " + e.getMessage());
+            restoredSections.clear();
+            return;
+        }
+        Log.d(TAG, "读取快照 " + length + " 字节, " + restoredSections.size() + " 个分段, 已保存 "
+                + age / 1000 + " 秒, 耗时 " + (SystemClock.elapsedRealtimeNanos() - start) / 1000 + "us");
+    }
+
+    /**
+     * 取出上次保存的分段, 每个分段只能恢复一次
+     *
+     * @return 没有可用快照时返回null
+     */
+    public synchronized DataInputStream restore(int sectionId) {
+        byte[] content = restoredSections.remove(sectionId);
+        return content != null ? new DataInputStream(new ByteArrayInputStream(content)) : null;
+    }
+
+    public void register(Section section) {
+        sections.add(section);
+    }
+
+    public void unregister(Section section) {
+        sections.remove(section);
+    }
+
+    /**
+     * 标记状态已变化, 延迟写入快照, 多次调用只写一次
+     */
+    public synchronized void markDirty() {
+        if (checkpointScheduled) return;
+        checkpointScheduled = true;
+        handler.postDelayed(checkpointRunnable, CHECKPOINT_DELAY_MS);
+    }
+
+    /**
+     * 立即在快照线程中写入
+     */
+    public void checkpointSoon() {
+        handler.removeCallbacks(checkpointRunnable);
+        handler.post(checkpointRunnable);
+    }
+
+    /**
+     * 在当前线程中立即写入, 用于服务销毁前保存最终状态
+     */
+    public void checkpoint() {
+        synchronized (this) {
+            checkpointScheduled = false;
+        }
+        if (buffer == null) return;
+        synchronized (writeLock) {
+            writeSnapshot();
+        }
+    }
+
+    private void writeSnapshot() {
+        long start = SystemClock.elapsedRealtimeNanos();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream(1024);
+            for (Section section : sections) {
+                sectionBytes.reset();
+                DataOutputStream sectionOut = new DataOutputStream(sectionBytes);
+                section.write(sectionOut);
+                sectionOut.flush();
+                out.writeInt(section.getSectionId());
+                out.writeInt(sectionBytes.size());
+                sectionBytes.writeTo(out);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "生成快照失败", e);
+            return;
+        }
+
+        byte[] payload = bytes.toByteArray();
+        if (payload.length > FILE_SIZE - HEADER_SIZE) {
+            Log.w(TAG, "快照过大, 跳过: " + payload.length + " 字节");
+            buffer.putInt(16, 0);
+            return;
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+
+        // 先把长度清零使旧快照失效, 写完内容后再写入头部
+        buffer.putInt(16, 0);
+        ByteBuffer view = buffer.duplicate();
+        view.position(HEADER_SIZE);
+        view.put(payload);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, System.currentTimeMillis());
+        buffer.putInt(20, (int) checksum.getValue());
+        buffer.putInt(16, payload.length);
+        Log.d(TAG, "写入快照 " + payload.length + " 字节, 耗时 "
+                + (SystemClock.elapsedRealtimeNanos() - start) / 1000 + "us");
+    }
+}
@@ -0,0 +1,271 @@
+package com.seeother.service;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.accessibility.AccessibilityEvent;
+
+/**
+ * 无障碍事件处理流水线
+ * 主线程只负责对事件做快照并入队, 实际处理在独立的 HandlerThread 中完成。
+ * 队列是有界环形缓冲区, 同一包名下尚未处理的滚动/内容变化事件会被新事件合并。
+ * 每次最多处理一批事件后重新投递, 让同一线程中到期的延迟任务(如 GuardEventDebouncer)及时执行。
+ */
+public class AccessibilityEventPipeline {
+    private static final String TAG = "AccessibilityEventPipeline";
+    private static final int DEFAULT_CAPACITY = 32;
+    private static final long SHUTDOWN_TIMEOUT_MS = 500;
+    private static final int DRAIN_BATCH_SIZE = 8;
+
+    /**
+     * 事件消费者, 在流水线线程中被调用
+     */
+    public interface Consumer {
+        void onEvent(EventSnapshot snapshot);
+    }
+
+    /**
+     * 事件快照, AccessibilityEvent 会被系统回收, 所以只保留需要的字段
+     */
+    public static final class EventSnapshot {
+        public final int eventType;
+        public final String packageName;
+        public final String className;
+        public final long uptimeMillis; // 入队时间
+
+        EventSnapshot(int eventType, String packageName, String className, long uptimeMillis) {
+            this.eventType = eventType;
+            this.packageName = packageName;
+            this.className = className;
+            this.uptimeMillis = uptimeMillis;
+        }
+    }
+
+    private final Object lock = new Object();
+    private final EventSnapshot[] ring;
+    private int head = 0; // 队首位置
+    private int size = 0; // 当前队列长度
+    private boolean drainScheduled = false;
+    private boolean running = true;
+
+    // 统计计数
+    private long enqueuedCount = 0;
+    private long processedCount = 0;
+    private long coalescedCount = 0;
+    private long droppedCount = 0;
+    private int maxQueueDepth = 0;
+
+    private final Consumer consumer;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Runnable drainRunnable = this::drain;
+
+    public AccessibilityEventPipeline(Consumer consumer) {
+        this(consumer, DEFAULT_CAPACITY);
+    }
+
+    public AccessibilityEventPipeline(Consumer consumer, int capacity) {
+        this.consumer = consumer;
+        this.ring = new EventSnapshot[Math.max(1, capacity)];
+        this.thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DEFAULT);
+        this.thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 是否为可以合并的高频事件
+     */
+    private static boolean isCoalescable(int eventType) {
+        return eventType == AccessibilityEvent.TYPE_VIEW_SCROLLED
+                || eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED;
+    }
+
+    /**
+     * 将事件快照加入队列, 立即返回
+     */
+    public void offer(int eventType, String packageName, String className) {
+        EventSnapshot snapshot = new EventSnapshot(eventType, packageName, className, SystemClock.uptimeMillis());
+        synchronized (lock) {
+            if (!running) return;
+            enqueuedCount++;
+
+            // 同一包名下还没处理的同类事件已经过期, 移除旧事件后把新事件放到队尾
+            if (isCoalescable(eventType)) {
+                for (int i = 0; i < size; i++) {
+                    EventSnapshot pending = ring[(head + i) % ring.length];
+                    if (pending.eventType == eventType && pending.packageName.equals(packageName)) {
+                        removeAt(i);
+                        coalescedCount++;
+                        break;
+                    }
+                }
+            }
+
+            if (size == ring.length && !makeRoom(snapshot)) {
+                return;
+            }
+
+            ring[(head + size) % ring.length] = snapshot;
+            size++;
+            if (size > maxQueueDepth) {
+                maxQueueDepth = size;
+            }
+
+            if (!drainScheduled) {
+                drainScheduled = true;
+                handler.post(drainRunnable);
+            }
+        }
+    }
+
+    /**
+     * 队列已满时腾出位置:
+     * 1. 队列中有高频事件时丢弃最旧的一个;
+     * 2. 队列中全是窗口切换事件时, 新的高频事件被丢弃;
+     * 3. 新的窗口切换事件替换同一包名较早的窗口切换事件, 没有时丢弃最旧的窗口切换事件(已被之后的切换取代)
+     *
+     * @return 新事件是否可以入队
+     */
+    private boolean makeRoom(EventSnapshot snapshot) {
+        for (int i = 0; i < size; i++) {
+            if (isCoalescable(ring[(head + i) % ring.length].eventType)) {
+                removeAt(i);
+                droppedCount++;
+                return true;
+            }
+        }
+        if (isCoalescable(snapshot.eventType)) {
+            droppedCount++;
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (ring[(head + i) % ring.length].packageName.equals(snapshot.packageName)) {
+                removeAt(i);
+                coalescedCount++;
+                return true;
+            }
+        }
+        removeAt(0);
+        droppedCount++;
+        return true;
+    }
+
+    /**
+     * 移除队列中第 offset 个元素, 后续元素依次前移
+     */
+    private void removeAt(int offset) {
+        for (int i = offset; i < size - 1; i++) {
+            ring[(head + i) % ring.length] = ring[(head + i + 1) % ring.length];
+        }
+        ring[(head + size - 1) % ring.length] = null;
+        size--;
+    }
+
+    /**
+     * 在流水线线程中依次消费队列中的事件, 每次最多处理 DRAIN_BATCH_SIZE 个,
+     * 还有剩余时重新投递, 排在已到期的延迟任务之后
+     */
+    private void drain() {
+        for (int processed = 0; ; processed++) {
+            EventSnapshot snapshot;
+            synchronized (lock) {
+                if (!running || size == 0) {
+                    drainScheduled = false;
+                    return;
+                }
+                if (processed == DRAIN_BATCH_SIZE) {
+                    handler.post(drainRunnable);
+                    return;
+                }
+                snapshot = ring[head];
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                size--;
+            }
+
+            try {
+                consumer.onEvent(snapshot);
+            } catch (Exception e) {
+                Log.e(TAG, "处理无障碍事件失败", e);
+            }
+
+            synchronized (lock) {
+                processedCount++;
+            }
+        }
+    }
+
+    /**
+     * 流水线线程的 Handler, 供需要在同一线程中延迟执行的组件使用
+     */
+    Handler getHandler() {
+        return handler;
+    }
+
+    /**
+     * 停止流水线, 丢弃未处理的事件, 并等待正在处理的事件完成,
+     * 返回后消费者不会再被调用, 可以安全地释放消费者使用的资源
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            running = false;
+            for (int i = 0; i < ring.length; i++) {
+                ring[i] = null;
+            }
+            head = 0;
+            size = 0;
+        }
+        handler.removeCallbacksAndMessages(null);
+        thread.quitSafely();
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        try {
+            thread.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            Log.w(TAG, "等待流水线线程结束超时");
+        }
+    }
+
+    // 统计信息
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    public int getMaxQueueDepth() {
+        synchronized (lock) {
+            return maxQueueDepth;
+        }
+    }
+
+    public long getEnqueuedCount() {
+        synchronized (lock) {
+            return enqueuedCount;
+        }
+    }
+
+    public long getProcessedCount() {
+        synchronized (lock) {
+            return processedCount;
+        }
+    }
+
+    public long getCoalescedCount() {
+        synchronized (lock) {
+            return coalescedCount;
+        }
+    }
+
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return droppedCount;
+        }
+    }
+}
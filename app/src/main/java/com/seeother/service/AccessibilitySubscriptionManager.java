@@ -0,0 +1,134 @@
+package com.seeother.service;
+
+import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.os.Handler;
+import android.util.Log;
+import android.view.accessibility.AccessibilityEvent;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.seeother.data.db.AppDatabase;
+
+import java.util.Set;
+
+/**
+ * 无障碍事件订阅管理器
+ * 根据前台应用和守卫规则动态调整 AccessibilityServiceInfo, 让系统只投递我们会处理的事件。
+ * TYPE_WINDOW_STATE_CHANGED 需要所有应用都投递(用于判断前台应用), 因此 packageNames 保持为空,
+ * 只有前台应用存在对应规则时才订阅 TYPE_VIEW_SCROLLED / TYPE_WINDOW_CONTENT_CHANGED。
+ */
+public class AccessibilitySubscriptionManager {
+    private static final String TAG = "AccessibilitySubscriptionManager";
+    private static final int BASE_EVENT_TYPES = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED;
+    private static final int NOTIFICATION_TIMEOUT = 100;
+
+    /**
+     * 获取包名需要额外订阅的事件类型
+     */
+    public interface EventTypeResolver {
+        int getEventTypes(String packageName);
+    }
+
+    private final AccessibilityService service;
+    private final Handler handler;
+    private final EventTypeResolver resolver;
+    private final InvalidationTracker.Observer tableObserver;
+    private final Runnable updateRunnable = this::update;
+
+    private volatile String foregroundPackage;
+    private int appliedEventTypes = -1;
+    private volatile boolean started = false;
+
+    // 统计信息
+    private long reconfigureCount = 0;
+    private long skippedCount = 0;
+
+    /**
+     * @param handler 流水线线程的 Handler, 规则查询和重新配置都在该线程执行
+     */
+    public AccessibilitySubscriptionManager(AccessibilityService service, Handler handler,
+                                            EventTypeResolver resolver) {
+        this.service = service;
+        this.handler = handler;
+        this.resolver = resolver;
+        // 监控应用或守卫规则变化时重新计算订阅
+        this.tableObserver = new InvalidationTracker.Observer("monitored_app", "app_guard_rules") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                handler.post(updateRunnable);
+            }
+        };
+    }
+
+    /**
+     * 服务连接后调用, 按当前前台应用计算并应用订阅
+     */
+    public void start() {
+        if (started) return;
+        started = true;
+        handler.post(updateRunnable);
+        AppDatabase.getInstance(service).getInvalidationTracker().addObserver(tableObserver);
+    }
+
+    /**
+     * 前台应用切换, 在流水线线程中调用
+     */
+    public void onForegroundChanged(String packageName) {
+        foregroundPackage = packageName;
+        update();
+    }
+
+    private void update() {
+        if (!started) return;
+        String packageName = foregroundPackage;
+        int eventTypes = BASE_EVENT_TYPES;
+        if (packageName != null) {
+            eventTypes |= resolver.getEventTypes(packageName);
+        }
+        if (eventTypes == appliedEventTypes) {
+            skippedCount++;
+            return;
+        }
+        apply(eventTypes);
+    }
+
+    private void apply(int eventTypes) {
+        AccessibilityServiceInfo info = new AccessibilityServiceInfo();
+        info.flags |= AccessibilityServiceInfo.FLAG_RETRIEVE_INTERACTIVE_WINDOWS
+                | AccessibilityServiceInfo.FLAG_REPORT_VIEW_IDS
+                | AccessibilityServiceInfo.FLAG_REQUEST_FILTER_KEY_EVENTS;
+        info.eventTypes = eventTypes;
+        info.feedbackType |= AccessibilityServiceInfo.FEEDBACK_GENERIC;
+        info.notificationTimeout = NOTIFICATION_TIMEOUT;
+        try {
+            service.setServiceInfo(info);
+            appliedEventTypes = eventTypes;
+            reconfigureCount++;
+            Log.d(TAG, "更新事件订阅: " + AccessibilityEvent.eventTypeToString(eventTypes)
+                    + ", 前台应用: " + foregroundPackage);
+        } catch (Exception e) {
+            Log.e(TAG, "更新事件订阅失败", e);
+        }
+    }
+
+    /**
+     * 停止监听数据库变化
+     */
+    public void stop() {
+        if (!started) return;
+        started = false;
+        handler.removeCallbacks(updateRunnable);
+        AppDatabase.getInstance(service).getInvalidationTracker().removeObserver(tableObserver);
+    }
+
+    // 统计信息
+    public long getReconfigureCount() {
+        return reconfigureCount;
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+}
@@ -0,0 +1,222 @@
+package com.seeother.service;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.seeother.guard.trace.TraceNode;
+import com.seeother.guard.trace.TraceRecord;
+import com.seeother.guard.trace.TraceWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无障碍事件轨迹记录器
+ * 把服务收到的事件和交给守卫处理的事件写入应用私有目录下的轮转二进制文件, 供 TraceReplay 在 JVM 上回放。
+ * 写文件在独立的低优先级线程中进行; 节点快照需要读取节点树, 在调用线程(守卫处理线程)中完成,
+ * 快照只保留有文本或ViewId的节点及其祖先, 子节点下标与实际节点树不同。
+ */
+public class EventTraceRecorder {
+    private static final String TAG = "EventTraceRecorder";
+    private static final String DIRECTORY_NAME = "event_traces";
+    private static final long MAX_FILE_BYTES = 1024 * 1024; // 单个文件最大1MB
+    private static final int MAX_FILES = 4;                 // 最多保留4个文件
+    private static final int MAX_PENDING = 1024;            // 写入线程积压过多时丢弃新记录
+    private static final long FLUSH_DELAY_MS = 2000;
+    private static final int SNAPSHOT_MAX_NODES = 600;
+    private static final int SNAPSHOT_MAX_DEPTH = 30;
+    private static final int MAX_TEXT_LENGTH = 64;
+
+    private final File directory;
+    private final boolean snapshotEnabled;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Runnable flushRunnable = this::flush;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Rect bounds = new Rect(); // 只在快照线程中使用
+
+    // 以下字段只在写入线程中访问
+    private TraceWriter writer;
+    private long recordedCount = 0;
+
+    public EventTraceRecorder(Context context, boolean snapshotEnabled) {
+        this.directory = getTraceDirectory(context);
+        this.snapshotEnabled = snapshotEnabled;
+        this.thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        this.thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 轨迹文件目录
+     */
+    public static File getTraceDirectory(Context context) {
+        return new File(context.getFilesDir(), DIRECTORY_NAME);
+    }
+
+    public boolean isSnapshotEnabled() {
+        return snapshotEnabled;
+    }
+
+    /**
+     * 记录服务收到的原始事件, 可以在任意线程调用
+     */
+    public void recordRaw(int eventType, String packageName, String className) {
+        enqueue(new TraceRecord(TraceRecord.KIND_RAW, eventType, packageName, className,
+                SystemClock.elapsedRealtimeNanos(), null));
+    }
+
+    /**
+     * 记录交给守卫处理的事件, 开启快照时同步读取节点树
+     */
+    public void recordEvaluated(int eventType, String packageName, String activityName,
+                                AccessibilityNodeInfo rootNode) {
+        long nanos = SystemClock.elapsedRealtimeNanos();
+        TraceNode snapshot = null;
+        if (snapshotEnabled && rootNode != null && pending.get() < MAX_PENDING) {
+            try {
+                snapshot = capture(rootNode, 0, new int[]{SNAPSHOT_MAX_NODES});
+            } catch (Exception e) {
+                Log.w(TAG, "获取节点快照失败: " + e.getMessage());
+            }
+        }
+        enqueue(new TraceRecord(TraceRecord.KIND_EVALUATED, eventType, packageName, activityName, nanos, snapshot));
+    }
+
+    private void enqueue(TraceRecord record) {
+        if (pending.incrementAndGet() > MAX_PENDING) {
+            pending.decrementAndGet();
+            droppedCount.incrementAndGet();
+            return;
+        }
+        handler.post(() -> {
+            pending.decrementAndGet();
+            write(record);
+        });
+    }
+
+    /**
+     * 复制节点子树, 没有文本、ViewId且没有保留子节点的节点会被剪掉
+     */
+    private TraceNode capture(AccessibilityNodeInfo node, int depth, int[] budget) {
+        budget[0]--;
+        CharSequence text = node.getText();
+        String textString = text != null && text.length() > 0 ? truncate(text) : null;
+        String viewId = node.getViewIdResourceName();
+        CharSequence className = node.getClassName();
+        node.getBoundsInScreen(bounds);
+        TraceNode snapshot = new TraceNode(textString, viewId, className != null ? className.toString() : null,
+                bounds.left, bounds.top, bounds.right, bounds.bottom);
+
+        if (depth < SNAPSHOT_MAX_DEPTH) {
+            int childCount = node.getChildCount();
+            for (int i = 0; i < childCount && budget[0] > 0; i++) {
+                AccessibilityNodeInfo child = node.getChild(i);
+                if (child == null) continue;
+                try {
+                    TraceNode childSnapshot = capture(child, depth + 1, budget);
+                    if (childSnapshot != null) {
+                        snapshot.addChild(childSnapshot);
+                    }
+                } finally {
+                    child.recycle();
+                }
+            }
+        }
+
+        boolean keep = depth == 0 || textString != null || viewId != null || snapshot.getChildCount() > 0;
+        return keep ? snapshot : null;
+    }
+
+    private static String truncate(CharSequence text) {
+        return text.length() > MAX_TEXT_LENGTH ? text.subSequence(0, MAX_TEXT_LENGTH).toString() : text.toString();
+    }
+
+    private void write(TraceRecord record) {
+        try {
+            if (writer == null || writer.size() >= MAX_FILE_BYTES) {
+                rotate();
+            }
+            writer.write(record);
+            recordedCount++;
+            handler.removeCallbacks(flushRunnable);
+            handler.postDelayed(flushRunnable, FLUSH_DELAY_MS);
+        } catch (IOException e) {
+            Log.e(TAG, "写入事件轨迹失败", e);
+            closeWriter();
+        }
+    }
+
+    /**
+     * 关闭当前文件并创建新文件, 删除超出数量的旧文件
+     */
+    private void rotate() throws IOException {
+        closeWriter();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建轨迹目录: " + directory);
+        }
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("trace-") && name.endsWith(".bin"));
+        if (files != null && files.length >= MAX_FILES) {
+            Arrays.sort(files); // 文件名包含创建时间, 按名称排序即按时间排序
+            for (int i = 0; i <= files.length - MAX_FILES; i++) {
+                if (!files[i].delete()) {
+                    Log.w(TAG, "删除旧轨迹文件失败: " + files[i]);
+                }
+            }
+        }
+        File file = new File(directory, "trace-" + System.currentTimeMillis() + ".bin");
+        writer = new TraceWriter(new BufferedOutputStream(new FileOutputStream(file), 16 * 1024));
+        Log.d(TAG, "开始写入事件轨迹: " + file.getName());
+    }
+
+    private void flush() {
+        if (writer == null) return;
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "刷新事件轨迹失败", e);
+            closeWriter();
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Log.w(TAG, "关闭事件轨迹文件失败: " + e.getMessage());
+        }
+        writer = null;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * 写完已提交的记录后关闭文件并停止线程
+     */
+    public void shutdown() {
+        handler.post(() -> {
+            closeWriter();
+            Log.d(TAG, "事件轨迹记录结束, 共 " + recordedCount + " 条, 丢弃 " + droppedCount + " 条");
+        });
+        thread.quitSafely();
+    }
+}
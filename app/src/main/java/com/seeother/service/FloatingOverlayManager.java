@@ -0,0 +1,304 @@
+package com.seeother.service;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.PixelFormat;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
+
+import androidx.appcompat.view.ContextThemeWrapper;
+
+import com.airbnb.lottie.LottieAnimationView;
+import com.airbnb.lottie.LottieComposition;
+import com.airbnb.lottie.LottieCompositionFactory;
+import com.seeother.R;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 全屏守卫悬浮窗管理器
+ * 服务启动后在主线程空闲时预先解析 Lottie 动画并按当前夜间模式填充布局,
+ * 悬浮窗关闭后视图保持分离状态等待复用, 触发时只需要 addView。
+ * 只在主线程中使用。
+ */
+public class FloatingOverlayManager {
+    private static final String TAG = "FloatingOverlayManager";
+    private static final String MAIN_ANIMATION = "tired.lottie";
+    private static final String LOADING_ANIMATION = "loading.lottie";
+
+    // 已解析的动画, 进程内共享
+    private static final Map<String, LottieComposition> compositions = new HashMap<>();
+
+    /**
+     * 悬浮窗按钮回调
+     */
+    public interface Callback {
+        void onTryLuck();
+
+        void onClose();
+    }
+
+    private final Context context;
+    private final WindowManager windowManager;
+    private final Callback callback;
+    private final WindowManager.LayoutParams params;
+
+    private View overlayView; // 预先填充的视图, 为null时在显示时填充
+    private boolean overlayNightMode;
+    private boolean showing = false;
+    private boolean prewarmScheduled = false;
+
+    // 显示耗时统计(从触发到第一次绘制)
+    private long pendingTriggerNanos = 0;
+    private long showCount = 0;
+    private long prewarmedShowCount = 0;
+    private long totalTimeToOverlayNanos = 0;
+    private long maxTimeToOverlayNanos = 0;
+    private long lastTimeToOverlayNanos = 0;
+
+    private final ViewTreeObserver.OnPreDrawListener firstDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            if (overlayView != null) {
+                overlayView.getViewTreeObserver().removeOnPreDrawListener(this);
+            }
+            if (pendingTriggerNanos != 0) {
+                recordTimeToOverlay(SystemClock.elapsedRealtimeNanos() - pendingTriggerNanos);
+                pendingTriggerNanos = 0;
+            }
+            return true;
+        }
+    };
+
+    public FloatingOverlayManager(Context context, WindowManager windowManager, Callback callback) {
+        this.context = context;
+        this.windowManager = windowManager;
+        this.callback = callback;
+        params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
+                PixelFormat.TRANSLUCENT
+        );
+        params.gravity = Gravity.CENTER;
+    }
+
+    /**
+     * 预先解析动画并在主线程空闲时填充视图
+     */
+    public void prewarm() {
+        loadComposition(MAIN_ANIMATION);
+        loadComposition(LOADING_ANIMATION);
+        if (prewarmScheduled) return;
+        prewarmScheduled = true;
+        Looper.myQueue().addIdleHandler(() -> {
+            prewarmScheduled = false;
+            if (!showing && (overlayView == null || overlayNightMode != isNightMode())) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                inflate();
+                Log.d(TAG, "预先填充悬浮窗, 耗时 " + (SystemClock.elapsedRealtimeNanos() - start) / 1000 + "us");
+            }
+            return false;
+        });
+    }
+
+    private void loadComposition(String assetName) {
+        synchronized (compositions) {
+            if (compositions.containsKey(assetName)) return;
+        }
+        LottieCompositionFactory.fromAsset(context, assetName)
+                .addListener(composition -> {
+                    synchronized (compositions) {
+                        compositions.put(assetName, composition);
+                    }
+                    // 已填充的视图还在使用按文件名加载的动画, 换成解析好的
+                    if (overlayView != null && !showing) {
+                        bindAnimations(overlayView);
+                    }
+                })
+                .addFailureListener(e -> Log.e(TAG, "解析Lottie动画失败: " + assetName, e));
+    }
+
+    private static LottieComposition getComposition(String assetName) {
+        synchronized (compositions) {
+            return compositions.get(assetName);
+        }
+    }
+
+    private boolean isNightMode() {
+        int nightModeFlags = context.getResources().getConfiguration().uiMode & Configuration.UI_MODE_NIGHT_MASK;
+        return nightModeFlags == Configuration.UI_MODE_NIGHT_YES;
+    }
+
+    /**
+     * 按当前夜间模式填充视图并设置按钮事件
+     */
+    private void inflate() {
+        overlayNightMode = isNightMode();
+        // 使用适合当前模式的主题
+        Context contextThemeWrapper;
+        if (overlayNightMode) {
+            // 夜间模式使用DarkActionBar主题
+            contextThemeWrapper = new ContextThemeWrapper(context, com.google.android.material.R.style.Theme_MaterialComponents_DayNight_DarkActionBar);
+        } else {
+            // 日间模式使用Light主题
+            contextThemeWrapper = new ContextThemeWrapper(context, com.google.android.material.R.style.Theme_MaterialComponents_Light);
+        }
+
+        View view = LayoutInflater.from(contextThemeWrapper).inflate(R.layout.floating_window_fullscreen, null);
+        bindAnimations(view);
+        view.findViewById(R.id.btn_try_luck).setOnClickListener(v -> callback.onTryLuck());
+        view.findViewById(R.id.btn_close_page).setOnClickListener(v -> callback.onClose());
+        overlayView = view;
+    }
+
+    private void bindAnimations(View view) {
+        bindAnimation(view.findViewById(R.id.animation_view), MAIN_ANIMATION);
+        bindAnimation(view.findViewById(R.id.loading_animation), LOADING_ANIMATION);
+    }
+
+    private void bindAnimation(LottieAnimationView animationView, String assetName) {
+        try {
+            LottieComposition composition = getComposition(assetName);
+            if (composition != null) {
+                animationView.setComposition(composition);
+            } else if (animationView.getComposition() == null) {
+                // 还没有解析完成, 按文件名加载
+                animationView.setAnimation(assetName);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "加载Lottie动画失败", e);
+        }
+    }
+
+    /**
+     * 显示悬浮窗
+     *
+     * @param triggerNanos 触发时间(SystemClock.elapsedRealtimeNanos), 用于统计显示耗时
+     * @return 是否已显示
+     */
+    public boolean show(long triggerNanos) {
+        if (showing) return false;
+        boolean prewarmed = overlayView != null && overlayNightMode == isNightMode();
+        if (!prewarmed) {
+            inflate();
+        }
+
+        try {
+            pendingTriggerNanos = triggerNanos;
+            overlayView.getViewTreeObserver().addOnPreDrawListener(firstDrawListener);
+            windowManager.addView(overlayView, params);
+            showing = true;
+            if (prewarmed) {
+                prewarmedShowCount++;
+            }
+            return true;
+        } catch (Exception e) {
+            overlayView.getViewTreeObserver().removeOnPreDrawListener(firstDrawListener);
+            pendingTriggerNanos = 0;
+            Log.e(TAG, "Could not show floating window", e);
+            return false;
+        }
+    }
+
+    /**
+     * 模拟点击"试试手气"按钮
+     */
+    public void performTryLuck() {
+        if (!showing) return;
+        View target = overlayView.findViewById(R.id.btn_try_luck);
+        if (target != null) {
+            target.performClick();
+        }
+    }
+
+    /**
+     * 移除悬浮窗, 视图保留用于下次显示
+     */
+    public void dismiss() {
+        if (!showing) return;
+        showing = false;
+        try {
+            windowManager.removeView(overlayView);
+        } catch (Exception e) {
+            Log.e(TAG, "移除悬浮窗失败", e);
+            overlayView = null;
+            return;
+        }
+        // 从头播放
+        LottieAnimationView mainAnimation = overlayView.findViewById(R.id.animation_view);
+        LottieAnimationView loadingAnimation = overlayView.findViewById(R.id.loading_animation);
+        mainAnimation.setProgress(0f);
+        loadingAnimation.setProgress(0f);
+        if (overlayNightMode != isNightMode()) {
+            overlayView = null;
+            prewarm();
+        }
+    }
+
+    /**
+     * 配置变化时(如切换夜间模式)重新预先填充
+     */
+    public void onConfigurationChanged() {
+        if (!showing && overlayView != null && overlayNightMode != isNightMode()) {
+            overlayView = null;
+            prewarm();
+        }
+    }
+
+    /**
+     * 释放预先填充的视图
+     */
+    public void release() {
+        dismiss();
+        overlayView = null;
+        Log.d(TAG, "显示悬浮窗 " + showCount + " 次, 预填充命中 " + prewarmedShowCount + " 次, 平均耗时 "
+                + getAverageTimeToOverlayNanos() / 1000 + "us, 最大耗时 " + maxTimeToOverlayNanos / 1000 + "us");
+    }
+
+    public boolean isShowing() {
+        return showing;
+    }
+
+    private void recordTimeToOverlay(long nanos) {
+        showCount++;
+        totalTimeToOverlayNanos += nanos;
+        lastTimeToOverlayNanos = nanos;
+        if (nanos > maxTimeToOverlayNanos) {
+            maxTimeToOverlayNanos = nanos;
+        }
+        Log.d(TAG, "悬浮窗显示耗时 " + nanos / 1000 + "us");
+    }
+
+    public long getShowCount() {
+        return showCount;
+    }
+
+    /**
+     * 使用预先填充视图显示的次数
+     */
+    public long getPrewarmedShowCount() {
+        return prewarmedShowCount;
+    }
+
+    /**
+     * 最近一次从触发到悬浮窗第一次绘制的耗时
+     */
+    public long getLastTimeToOverlayNanos() {
+        return lastTimeToOverlayNanos;
+    }
+
+    public long getAverageTimeToOverlayNanos() {
+        return showCount == 0 ? 0 : totalTimeToOverlayNanos / showCount;
+    }
+
+    public long getMaxTimeToOverlayNanos() {
+        return maxTimeToOverlayNanos;
+    }
+}
@@ -1,17 +1,18 @@
 package com.seeother.service;
 
 import android.accessibilityservice.AccessibilityService;
-import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.Intent;
 import android.content.res.Configuration;
+import android.os.Handler;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-
+import com.seeother.guard.GuardEventDebouncer;
 import com.seeother.manager.AppGuardManager;
+import com.seeother.manager.DisplayEffectReconciler;
+import com.seeother.manager.ScheduleManager;
 import com.seeother.manager.SettingsManager;
 import com.seeother.utils.GlobalToast;
 import com.seeother.utils.SettingsSecureUtil;
@@ -23,21 +24,51 @@ public class MyAccessibilityService extends AccessibilityService {
     private static final String TAG = "MyAccessibilityService";
 
     private static WeakReference<MyAccessibilityService> instance;
-    private static String foregroundPackage;
-    private static String foregroundActivity;
+    private static volatile String foregroundPackage;
+    private static volatile String foregroundActivity;
     private long lastVolumeDownClickTime = 0;
     private long lastVolumeUpClickTime = 0;
 
     // 应用守卫管理器
     private AppGuardManager appGuardManager;
     private SettingsManager settingsManager;
+    private ScheduleManager scheduleManager;
+    // 事件处理流水线, 避免在主线程中查询数据库和遍历节点树
+    private AccessibilityEventPipeline eventPipeline;
+    // 按应用合并滚动/内容变化事件, 只在流水线线程中使用
+    private GuardEventDebouncer guardDebouncer;
+    // 根据前台应用动态调整事件订阅
+    private AccessibilitySubscriptionManager subscriptionManager;
+    // 事件轨迹记录, 只在设置中开启时创建
+    private EventTraceRecorder traceRecorder;
 
     @Override
     public void onCreate() {
         super.onCreate();
         instance = new WeakReference<>(this);
         appGuardManager = new AppGuardManager(this);
-        settingsManager = new SettingsManager(this);
+        // 服务被系统重启时恢复规则索引和作者计数
+        appGuardManager.enableWarmStart();
+        settingsManager = SettingsManager.getInstance(this);
+        scheduleManager = ScheduleManager.getInstance(this);
+        eventPipeline = new AccessibilityEventPipeline(this::handleEvent);
+        Handler pipelineHandler = eventPipeline.getHandler();
+        guardDebouncer = new GuardEventDebouncer(new GuardEventDebouncer.Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMillis) {
+                pipelineHandler.postDelayed(task, delayMillis);
+            }
+
+            @Override
+            public void removeCallbacks(Runnable task) {
+                pipelineHandler.removeCallbacks(task);
+            }
+        }, appGuardManager::getGuardInterval, this::evaluateGuard);
+        subscriptionManager = new AccessibilitySubscriptionManager(this, pipelineHandler,
+                appGuardManager::getGuardEventTypes);
+        if (settingsManager.isEventTraceEnabled()) {
+            traceRecorder = new EventTraceRecorder(this, settingsManager.isEventTraceSnapshotEnabled());
+        }
 
         // 确保SettingsSecureUtil已初始化（防止在无障碍服务启动时未初始化的边缘情况）
         try {
@@ -51,20 +82,8 @@ public class MyAccessibilityService extends AccessibilityService {
     @Override
     protected void onServiceConnected() {
         super.onServiceConnected();
-        AccessibilityServiceInfo info = new AccessibilityServiceInfo();
-        info.flags |= AccessibilityServiceInfo.FLAG_RETRIEVE_INTERACTIVE_WINDOWS
-                | AccessibilityServiceInfo.FLAG_REPORT_VIEW_IDS
-                | AccessibilityServiceInfo.FLAG_REQUEST_FILTER_KEY_EVENTS;
-
-        info.eventTypes |= AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
-                | AccessibilityEvent.TYPE_VIEW_SCROLLED
-                | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
-                | AccessibilityEvent.TYPE_WINDOWS_CHANGED;
-
-        info.feedbackType |= AccessibilityServiceInfo.FEEDBACK_GENERIC;
-        info.notificationTimeout = 100;
-        this.setServiceInfo(info);
-
+        // 只订阅窗口切换事件, 滚动/内容变化事件按前台应用的守卫规则动态订阅
+        subscriptionManager.start();
     }
 
     @Override
@@ -82,6 +101,13 @@ public class MyAccessibilityService extends AccessibilityService {
 //        Log.d(TAG, "包名: " + event.getPackageName());
 //        Log.d(TAG, "类名: " + event.getClassName());
 
+        int eventType = event.getEventType();
+        if (eventType != AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+                && eventType != AccessibilityEvent.TYPE_VIEW_SCROLLED
+                && eventType != AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
+            return;
+        }
+
         String appName = (event.getPackageName() != null) ? event.getPackageName().toString() : null;
         String activityClassName = (event.getClassName() != null) ? event.getClassName().toString() : null;
         if (appName == null || activityClassName == null) return;
@@ -92,7 +118,28 @@ public class MyAccessibilityService extends AccessibilityService {
         // 不响应输入法
         if (activityClassName.contains("input")) return;
 
-        if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+        EventTraceRecorder recorder = traceRecorder;
+        if (recorder != null) {
+            recorder.recordRaw(eventType, appName, activityClassName);
+        }
+
+        // 只做快照, 交给流水线线程处理
+        AccessibilityEventPipeline pipeline = eventPipeline;
+        if (pipeline != null) {
+            pipeline.offer(eventType, appName, activityClassName);
+        }
+    }
+
+    /**
+     * 在流水线线程中处理事件快照
+     */
+    private void handleEvent(AccessibilityEventPipeline.EventSnapshot event) {
+        String appName = event.packageName;
+        String activityClassName = event.className;
+        AppGuardManager guardManager = appGuardManager;
+        if (guardManager == null) return;
+
+        if (event.eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
             // 判断是真的是桌面, 否则打开应用时，可能导致收到桌面的广播, 突然退出灰度模式
             if (appName.equals("com.miui.home")) {
                 AccessibilityNodeInfo rootNode = getRootInActiveWindow();
@@ -126,50 +173,56 @@ public class MyAccessibilityService extends AccessibilityService {
             }
             foregroundPackage = appName;
             foregroundActivity = activityClassName;
+            // 前台应用已切换, 丢弃其他应用还未处理的事件
+            guardDebouncer.cancelOthers(appName);
+            subscriptionManager.onForegroundChanged(appName);
+            guardManager.onForegroundChanged(appName);
             // 检查服务是否运行，如果没有运行则启动
             if (!isServiceRunning()) {
                 Intent serviceIntent = new Intent(this, UsageMonitorService.class);
                 startService(serviceIntent);
             }
-            // 发送广播
-            Intent intent = new Intent("com.seeother.action.WINDOW_STATE_CHANGED");
-            intent.putExtra("packageName", appName);
-            intent.putExtra("activityName", activityClassName);
-            LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
+            // 通知 UsageMonitorService
+            ServiceEventBus.getInstance().postWindowStateChanged(appName, activityClassName);
         }
-        // 使用应用守卫管理器处理事件
-        if (event.getEventType() == AccessibilityEvent.TYPE_VIEW_SCROLLED ||
-                event.getEventType() == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
-            String currentPackage = (event.getPackageName() != null) ? event.getPackageName().toString() : null;
-
-//            printTextNodesAndIds(event);
-            
-            // 首先检查是否在勿扰时段内
-            boolean shouldSkipProcessing = false;
-            try {
-                shouldSkipProcessing = SettingsSecureUtil.getInstance().isInDoNotDisturbTime();
-            } catch (IllegalStateException e) {
-                Log.e(TAG, "SettingsSecureUtil 未初始化，无法检查勿扰模式", e);
-                // 如果SettingsSecureUtil未初始化，继续正常处理
-                shouldSkipProcessing = false;
+        // 滚动/内容变化事件先按应用合并, 窗口结束后再交给守卫处理
+        if (event.eventType == AccessibilityEvent.TYPE_VIEW_SCROLLED ||
+                event.eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
+            guardDebouncer.submit(event.eventType, appName, foregroundActivity);
+        }
+    }
+
+    /**
+     * 合并窗口结束后, 使用应用守卫管理器处理事件
+     */
+    private void evaluateGuard(int eventType, String currentPackage, String activityName) {
+        AppGuardManager guardManager = appGuardManager;
+        if (guardManager == null) return;
+
+//        printTextNodesAndIds();
+
+        // 首先检查是否在勿扰时段内, 只读取时间表缓存的状态
+        boolean shouldSkipProcessing = scheduleManager.isInDoNotDisturbTime();
+
+        // 如果不在勿扰时段内，才检查是否应该处理此事件
+        if (!shouldSkipProcessing && guardManager.shouldProcessEvent(eventType, currentPackage, activityName)) {
+            // 检查服务是否运行，如果没有运行则启动
+            if (!isServiceRunning()) {
+                Intent serviceIntent = new Intent(this, UsageMonitorService.class);
+                startService(serviceIntent);
             }
-            
-            // 如果不在勿扰时段内，才检查是否应该处理此事件
-            if (!shouldSkipProcessing && appGuardManager.shouldProcessEvent(event.getEventType(), currentPackage, foregroundActivity)) {
-                // 检查服务是否运行，如果没有运行则启动
-                if (!isServiceRunning()) {
-                    Intent serviceIntent = new Intent(this, UsageMonitorService.class);
-                    startService(serviceIntent);
-                }
 
-                // 获取根节点并处理事件
-                AccessibilityNodeInfo rootNode = getRootInActiveWindow();
-                if (rootNode != null) {
-                    try {
-                        appGuardManager.processEvent(event.getEventType(), currentPackage, foregroundActivity, rootNode);
-                    } finally {
-                        rootNode.recycle();
+            // 获取根节点并处理事件
+            AccessibilityNodeInfo rootNode = getRootInActiveWindow();
+            if (rootNode != null) {
+                try {
+                    EventTraceRecorder recorder = traceRecorder;
+                    if (recorder != null) {
+                        recorder.recordEvaluated(eventType, currentPackage, activityName, rootNode);
                     }
+                    guardManager.processEvent(eventType, currentPackage, activityName, rootNode);
+                } finally {
+                    rootNode.recycle();
                 }
             }
         }
@@ -245,12 +298,7 @@ public class MyAccessibilityService extends AccessibilityService {
      * 发送广播消除影响
      */
     private void removeAllEffects() {
-        try {
-            SettingsSecureUtil.getInstance().disableColorSpace();
-            SettingsSecureUtil.getInstance().disableHighContrastText();
-        } catch (IllegalStateException e) {
-            Log.e(TAG, "SettingsSecureUtil 未初始化", e);
-        }
+        DisplayEffectReconciler.getInstance(this).clearNow();
 
         // 检查服务是否运行，如果没有运行则启动
         if (!isServiceRunning()) {
@@ -258,9 +306,8 @@ public class MyAccessibilityService extends AccessibilityService {
             startService(serviceIntent);
         }
 
-        // 发送广播通知UsageMonitorService暂停悬浮窗
-        Intent intent = new Intent("com.seeother.action.DISABLE_FLOATING_WINDOW");
-        LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
+        // 通知UsageMonitorService暂停悬浮窗
+        ServiceEventBus.getInstance().postDisableFloatingWindow();
 
     }
 
@@ -328,26 +375,33 @@ public class MyAccessibilityService extends AccessibilityService {
         foregroundPackage = null;
         foregroundActivity = null;
 
+        // 先停止事件流水线并等待正在处理的事件完成, 再释放守卫管理器
+        if (subscriptionManager != null) {
+            subscriptionManager.stop();
+            subscriptionManager = null;
+        }
+        if (eventPipeline != null) {
+            eventPipeline.shutdown();
+            eventPipeline = null;
+        }
+        guardDebouncer = null;
+        if (traceRecorder != null) {
+            traceRecorder.shutdown();
+            traceRecorder = null;
+        }
+
         // 释放应用守卫管理器资源
         if (appGuardManager != null) {
             appGuardManager.destroy();
             appGuardManager = null;
         }
 
-        // 发送广播通知其他组件无障碍服务, 清空包名和活动名称信息
-        Intent intent = new Intent("com.seeother.action.WINDOW_STATE_CHANGED");
-        intent.putExtra("packageName", foregroundPackage);
-        intent.putExtra("activityName", foregroundActivity);
-        LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
+        // 通知其他组件无障碍服务已关闭, 清空包名和活动名称信息
+        ServiceEventBus.getInstance().postWindowStateChanged(foregroundPackage, foregroundActivity);
 
 //        Log.d("MyAccessibilityService", "无障碍服务已关闭");
         // 没有无障碍权限, 关闭颜色空间(因为无法判断当前的应用)
-        try {
-            SettingsSecureUtil.getInstance().disableColorSpace();  // 关闭颜色空间
-            SettingsSecureUtil.getInstance().disableHighContrastText();
-        } catch (IllegalStateException e) {
-            Log.e(TAG, "SettingsSecureUtil 未初始化，无法在服务销毁时移除视觉效果", e);
-        }
+        DisplayEffectReconciler.getInstance(this).clearNow();  // 关闭颜色空间和高对比度文字
     }
 
     @Override
@@ -357,6 +411,27 @@ public class MyAccessibilityService extends AccessibilityService {
         foregroundActivity = null;
     }
 
+    /**
+     * 获取事件流水线(用于查看丢弃数和队列深度等统计信息)
+     */
+    public AccessibilityEventPipeline getEventPipeline() {
+        return eventPipeline;
+    }
+
+    /**
+     * 获取守卫事件合并器(用于查看提交数和实际处理数)
+     */
+    public GuardEventDebouncer getGuardDebouncer() {
+        return guardDebouncer;
+    }
+
+    /**
+     * 获取事件轨迹记录器, 未开启记录时返回null
+     */
+    public EventTraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
     // 修改检查服务是否运行的方法
     private boolean isServiceRunning() {
         return UsageMonitorService.isRunning();
@@ -417,10 +492,8 @@ public class MyAccessibilityService extends AccessibilityService {
 
     /**
      * 打印包含文本内容的节点及其对应ID
-     *
-     * @param event 可访问性事件
      */
-    private void printTextNodesAndIds(AccessibilityEvent event) {
+    private void printTextNodesAndIds() {
         AccessibilityNodeInfo rootNode = getRootInActiveWindow();
         if (rootNode == null)
             return;
@@ -0,0 +1,352 @@
+package com.seeother.service;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 服务间事件总线
+ * 代替 LocalBroadcastManager 在无障碍服务、守卫管理器和 UsageMonitorService 之间传递事件。
+ * 事件是类型化的, 不创建 Intent/Bundle: 每个订阅者有一个预分配的无锁环形队列(多生产者单消费者),
+ * 事件在订阅者指定的 Handler 线程中批量分发; 未指定 Handler 时在发布线程中同步分发。
+ * 队列已满时事件进入按类型合并的溢出槽(每种类型只保留最新的一个), 溢出槽清空前之后的事件也进入溢出槽,
+ * 保证分发顺序与发布顺序一致。
+ */
+public final class ServiceEventBus {
+    private static final String TAG = "ServiceEventBus";
+    private static final int QUEUE_CAPACITY = 64; // 必须是2的幂
+
+    static final int TYPE_WINDOW_STATE_CHANGED = 1;
+    static final int TYPE_SHOW_FLOATING_WINDOW = 2;
+    static final int TYPE_DISABLE_FLOATING_WINDOW = 3;
+    private static final int TYPE_COUNT = 3;
+
+    private static final ServiceEventBus instance = new ServiceEventBus();
+
+    /**
+     * 事件订阅者, 只需实现关心的事件
+     */
+    public interface Subscriber {
+        /**
+         * 前台窗口切换, 无障碍服务关闭时包名和Activity为null
+         */
+        default void onWindowStateChanged(String packageName, String activityName) {
+        }
+
+        /**
+         * 达到守卫条件, 需要显示悬浮窗
+         */
+        default void onShowFloatingWindow() {
+        }
+
+        /**
+         * 用户通过音量键临时关闭功能
+         */
+        default void onDisableFloatingWindow() {
+        }
+    }
+
+    /**
+     * 单个订阅者的队列和分发统计
+     */
+    public static final class Subscription {
+        private final Subscriber subscriber;
+        private final Handler handler;
+        private final int mask = QUEUE_CAPACITY - 1;
+
+        // 环形队列槽位, sequences 控制槽位的发布和回收
+        private final AtomicLongArray sequences = new AtomicLongArray(QUEUE_CAPACITY);
+        private final int[] types = new int[QUEUE_CAPACITY];
+        private final String[] packageNames = new String[QUEUE_CAPACITY];
+        private final String[] activityNames = new String[QUEUE_CAPACITY];
+        private final long[] postNanos = new long[QUEUE_CAPACITY];
+        private final AtomicLong tail = new AtomicLong();
+        private long head = 0; // 只在消费线程中访问
+        private long currentPostNanos = 0; // 正在分发的事件的发布时间
+        private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+        private final Runnable drainRunnable = this::drain;
+
+        // 溢出槽, 按进入顺序排列, 每种类型最多一个, 由 overflowLock 保护
+        private final Object overflowLock = new Object();
+        private final int[] overflowTypes = new int[TYPE_COUNT];
+        private final String[] overflowPackageNames = new String[TYPE_COUNT];
+        private final String[] overflowActivityNames = new String[TYPE_COUNT];
+        private final long[] overflowPostNanos = new long[TYPE_COUNT];
+        private int overflowSize = 0;
+        private volatile boolean overflowPending = false;
+        // 分发溢出槽时使用的副本, 只在消费线程中访问
+        private final int[] flushTypes = new int[TYPE_COUNT];
+        private final String[] flushPackageNames = new String[TYPE_COUNT];
+        private final String[] flushActivityNames = new String[TYPE_COUNT];
+        private final long[] flushPostNanos = new long[TYPE_COUNT];
+
+        // 分发统计
+        private volatile long deliveredCount = 0;
+        private volatile long totalLatencyNanos = 0;
+        private volatile long maxLatencyNanos = 0;
+        private final AtomicLong overflowCount = new AtomicLong();
+        private final AtomicLong coalescedCount = new AtomicLong();
+
+        Subscription(Subscriber subscriber, Handler handler) {
+            this.subscriber = subscriber;
+            this.handler = handler;
+            for (int i = 0; i < QUEUE_CAPACITY; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        void post(int type, String packageName, String activityName, long nanos) {
+            if (handler == null) {
+                dispatch(type, packageName, activityName, nanos);
+                return;
+            }
+            if (overflowPending || !offer(type, packageName, activityName, nanos)) {
+                synchronized (overflowLock) {
+                    // 溢出槽为空时队列可能已经腾出空间, 再试一次
+                    if (overflowPending || !offer(type, packageName, activityName, nanos)) {
+                        addOverflow(type, packageName, activityName, nanos);
+                    }
+                }
+            }
+            if (drainScheduled.compareAndSet(false, true)) {
+                handler.post(drainRunnable);
+            }
+        }
+
+        /**
+         * 事件进入溢出槽, 已有同类型事件时移除旧事件, 新事件排在最后
+         */
+        private void addOverflow(int type, String packageName, String activityName, long nanos) {
+            overflowCount.incrementAndGet();
+            for (int i = 0; i < overflowSize; i++) {
+                if (overflowTypes[i] == type) {
+                    coalescedCount.incrementAndGet();
+                    overflowSize--;
+                    System.arraycopy(overflowTypes, i + 1, overflowTypes, i, overflowSize - i);
+                    System.arraycopy(overflowPackageNames, i + 1, overflowPackageNames, i, overflowSize - i);
+                    System.arraycopy(overflowActivityNames, i + 1, overflowActivityNames, i, overflowSize - i);
+                    System.arraycopy(overflowPostNanos, i + 1, overflowPostNanos, i, overflowSize - i);
+                    break;
+                }
+            }
+            overflowTypes[overflowSize] = type;
+            overflowPackageNames[overflowSize] = packageName;
+            overflowActivityNames[overflowSize] = activityName;
+            overflowPostNanos[overflowSize] = nanos;
+            overflowSize++;
+            overflowPending = true;
+        }
+
+        private boolean offer(int type, String packageName, String activityName, long nanos) {
+            long position;
+            int index;
+            while (true) {
+                position = tail.get();
+                index = (int) (position & mask);
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        break;
+                    }
+                } else if (difference < 0) {
+                    return false; // 队列已满
+                }
+            }
+            types[index] = type;
+            packageNames[index] = packageName;
+            activityNames[index] = activityName;
+            postNanos[index] = nanos;
+            sequences.lazySet(index, position + 1);
+            return true;
+        }
+
+        private void drain() {
+            // 先清除标志再读取, 之后发布的事件会重新调度
+            drainScheduled.set(false);
+            while (true) {
+                drainQueue();
+                if (!overflowPending) {
+                    return;
+                }
+                // 队列中的事件都早于溢出槽中的事件, 队列清空后才分发溢出槽
+                int count;
+                synchronized (overflowLock) {
+                    if (sequences.get((int) (head & mask)) == head + 1) {
+                        continue; // 加锁前又有事件进入队列
+                    }
+                    count = overflowSize;
+                    System.arraycopy(overflowTypes, 0, flushTypes, 0, count);
+                    System.arraycopy(overflowPackageNames, 0, flushPackageNames, 0, count);
+                    System.arraycopy(overflowActivityNames, 0, flushActivityNames, 0, count);
+                    System.arraycopy(overflowPostNanos, 0, flushPostNanos, 0, count);
+                    Arrays.fill(overflowPackageNames, null);
+                    Arrays.fill(overflowActivityNames, null);
+                    overflowSize = 0;
+                    overflowPending = false;
+                }
+                for (int i = 0; i < count; i++) {
+                    dispatch(flushTypes[i], flushPackageNames[i], flushActivityNames[i], flushPostNanos[i]);
+                    flushPackageNames[i] = null;
+                    flushActivityNames[i] = null;
+                }
+            }
+        }
+
+        private void drainQueue() {
+            while (true) {
+                int index = (int) (head & mask);
+                if (sequences.get(index) != head + 1) {
+                    return;
+                }
+                int type = types[index];
+                String packageName = packageNames[index];
+                String activityName = activityNames[index];
+                long nanos = postNanos[index];
+                packageNames[index] = null;
+                activityNames[index] = null;
+                sequences.lazySet(index, head + QUEUE_CAPACITY);
+                head++;
+                dispatch(type, packageName, activityName, nanos);
+            }
+        }
+
+        private void dispatch(int type, String packageName, String activityName, long nanos) {
+            long latency = SystemClock.elapsedRealtimeNanos() - nanos;
+            currentPostNanos = nanos;
+            try {
+                switch (type) {
+                    case TYPE_WINDOW_STATE_CHANGED:
+                        subscriber.onWindowStateChanged(packageName, activityName);
+                        break;
+                    case TYPE_SHOW_FLOATING_WINDOW:
+                        subscriber.onShowFloatingWindow();
+                        break;
+                    case TYPE_DISABLE_FLOATING_WINDOW:
+                        subscriber.onDisableFloatingWindow();
+                        break;
+                    default:
+                        break;
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "分发事件失败: " + type, e);
+            }
+            recordLatency(latency);
+        }
+
+        private synchronized void recordLatency(long latencyNanos) {
+            deliveredCount++;
+            totalLatencyNanos += latencyNanos;
+            if (latencyNanos > maxLatencyNanos) {
+                maxLatencyNanos = latencyNanos;
+            }
+        }
+
+        /**
+         * 正在分发的事件的发布时间(SystemClock.elapsedRealtimeNanos), 只能在回调中调用
+         */
+        public long getCurrentPostNanos() {
+            return currentPostNanos;
+        }
+
+        public long getDeliveredCount() {
+            return deliveredCount;
+        }
+
+        /**
+         * 平均分发延迟(发布到回调开始执行)
+         */
+        public long getAverageLatencyNanos() {
+            long count = deliveredCount;
+            return count == 0 ? 0 : totalLatencyNanos / count;
+        }
+
+        public long getMaxLatencyNanos() {
+            return maxLatencyNanos;
+        }
+
+        /**
+         * 队列已满或溢出槽非空时进入溢出槽的事件数
+         */
+        public long getOverflowCount() {
+            return overflowCount.get();
+        }
+
+        /**
+         * 在溢出槽中被同类型新事件替换掉的事件数
+         */
+        public long getCoalescedCount() {
+            return coalescedCount.get();
+        }
+    }
+
+    // 订阅者数组在注册/注销时整体替换, 发布时遍历不加锁也不分配内存
+    private volatile Subscription[] subscriptions = new Subscription[0];
+
+    private ServiceEventBus() {
+    }
+
+    public static ServiceEventBus getInstance() {
+        return instance;
+    }
+
+    /**
+     * 注册订阅者
+     *
+     * @param handler 分发事件的线程, 为null时在发布线程中同步分发
+     */
+    public synchronized Subscription register(Subscriber subscriber, Handler handler) {
+        Subscription subscription = new Subscription(subscriber, handler);
+        Subscription[] current = subscriptions;
+        Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = subscription;
+        subscriptions = updated;
+        return subscription;
+    }
+
+    /**
+     * 注销订阅者, 已入队但未分发的事件会被丢弃
+     */
+    public synchronized void unregister(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] updated = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                subscriptions = updated;
+                if (subscription.handler != null) {
+                    subscription.handler.removeCallbacks(subscription.drainRunnable);
+                }
+                Log.d(TAG, "注销订阅者, 分发 " + subscription.getDeliveredCount() + " 个事件, 平均延迟 "
+                        + subscription.getAverageLatencyNanos() / 1000 + "us, 最大延迟 "
+                        + subscription.getMaxLatencyNanos() / 1000 + "us, 溢出 " + subscription.getOverflowCount()
+                        + " 次, 合并 " + subscription.getCoalescedCount() + " 次");
+                return;
+            }
+        }
+    }
+
+    public void postWindowStateChanged(String packageName, String activityName) {
+        post(TYPE_WINDOW_STATE_CHANGED, packageName, activityName);
+    }
+
+    public void postShowFloatingWindow() {
+        post(TYPE_SHOW_FLOATING_WINDOW, null, null);
+    }
+
+    public void postDisableFloatingWindow() {
+        post(TYPE_DISABLE_FLOATING_WINDOW, null, null);
+    }
+
+    private void post(int type, String packageName, String activityName) {
+        long nanos = SystemClock.elapsedRealtimeNanos();
+        for (Subscription subscription : subscriptions) {
+            subscription.post(type, packageName, activityName, nanos);
+        }
+    }
+}
@@ -1,73 +1,115 @@
 package com.seeother.service;
 
 import android.app.Service;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
+import android.content.res.Configuration;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
-import android.view.Gravity;
-import android.view.LayoutInflater;
-import android.view.View;
 import android.view.WindowManager;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.view.ContextThemeWrapper;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
-import com.airbnb.lottie.LottieAnimationView;
-import com.google.android.material.button.MaterialButton;
 import com.seeother.MainActivity;
-import com.seeother.R;
-import com.seeother.data.db.MonitoredAppDao;
+import com.seeother.common.AppPolicy;
 import com.seeother.data.db.RecommendAppDao;
-import com.seeother.data.entity.MonitoredApp;
-import com.seeother.data.entity.RecommendApp;
+import com.seeother.manager.AppPolicyManager;
+import com.seeother.manager.DisplayEffectReconciler;
+import com.seeother.manager.RecommendAppSampler;
 import com.seeother.manager.RecommendLinkManager;
+import com.seeother.manager.ScheduleManager;
 import com.seeother.manager.SettingsManager;
 import com.seeother.manager.StatisticsManager;
+import com.seeother.manager.WarmStartStore;
 import com.seeother.utils.GlobalToast;
 import com.seeother.utils.SettingsSecureUtil;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Calendar;
-import java.util.List;
-import java.util.Random;
 
 public class UsageMonitorService extends Service {
     private static final String TAG = "UsageMonitorService";
     private static boolean isServiceRunning = false; // 添加静态标志位
-    private MonitoredApp monitoredApp;
+    private AppPolicy monitoredApp; // 当前应用的策略, 不是少用应用时为null
     private Handler handler;
     private WindowManager windowManager;
-    private View floatingView;
+    // 全屏守卫悬浮窗, 预先填充视图和解析动画
+    private FloatingOverlayManager overlayManager;
+    private final FloatingOverlayManager.Callback overlayCallback = new FloatingOverlayManager.Callback() {
+        @Override
+        public void onTryLuck() {
+            // 根据概率决定打开链接还是推荐应用
+            if (linkManager.shouldOpenLink()) {
+                openRecommendedLink();
+            } else {
+                openRecommendedApp();
+            }
+
+            // 延迟移除, 防止看到吸引人的内容
+            handler.postDelayed(() -> removeFloatingView(), 100);
+        }
+
+        @Override
+        public void onClose() {
+            removeFloatingView();
+        }
+    };
     private String currentPackage = "";
-    private MonitoredAppDao monitoredAppDao;
+    private AppPolicyManager appPolicyManager;
     private RecommendAppDao recommendAppDao;
+    private RecommendAppSampler recommendAppSampler;
+    private DisplayEffectReconciler displayEffectReconciler;
+    // 时间表状态变化(进入/离开勿扰时段, 暂停结束)时, 即使没有切换应用也重新计算灰度模式
+    private ScheduleManager scheduleManager;
+    private final ScheduleManager.ModeListener modeListener = mode -> {
+        if (!currentPackage.isEmpty()) {
+            updateGrayMode(currentPackage);
+        }
+    };
     private SettingsManager settingsManager;
     private RecommendLinkManager linkManager;
     private StatisticsManager statisticsManager;
     private long lastRecommendTime = 0; // 记录上次推荐的时间
+    // 热启动快照: 服务被系统重启后恢复当前应用, 避免重复提示、统计和推荐
+    private static final int SNAPSHOT_VERSION = 1;
+    private WarmStartStore warmStartStore;
+    private final WarmStartStore.Section snapshotSection = new WarmStartStore.Section() {
+        @Override
+        public int getSectionId() {
+            return WarmStartStore.SECTION_USAGE_MONITOR;
+        }
 
-    // 广播接收器
-    private final BroadcastReceiver receiver = new BroadcastReceiver() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-            if ("com.seeother.action.WINDOW_STATE_CHANGED".equals(action)) {
-                String packageName = intent.getStringExtra("packageName");
-                String activityName = intent.getStringExtra("activityName");
-                checkCurrentApp(packageName, activityName);
-            } else if ("com.seeother.action.SHOW_FLOATING_WINDOW".equals(action)) {
-                if (checkPauseTime()) return;
-                showFloatingWindow();
-            } else if ("com.seeother.action.DISABLE_FLOATING_WINDOW".equals(action)) {
-                // 如果当前有悬浮窗，立即移除
-                removeFloatingView();
-                disableGrayMode();
-            }
+        public void write(DataOutputStream out) throws IOException {
+            out.writeByte(SNAPSHOT_VERSION);
+            out.writeUTF(currentPackage);
+        }
+    };
+
+    // 服务事件订阅, 在主线程中处理
+    private ServiceEventBus.Subscription eventSubscription;
+    private final ServiceEventBus.Subscriber eventSubscriber = new ServiceEventBus.Subscriber() {
+        @Override
+        public void onWindowStateChanged(String packageName, String activityName) {
+            checkCurrentApp(packageName, activityName);
+        }
+
+        @Override
+        public void onShowFloatingWindow() {
+            if (checkPauseTime()) return;
+            showFloatingWindow();
+        }
+
+        @Override
+        public void onDisableFloatingWindow() {
+            // 如果当前有悬浮窗，立即移除
+            removeFloatingView();
+            displayEffectReconciler.clearNow();
         }
     };
 
@@ -76,8 +118,11 @@ public class UsageMonitorService extends Service {
         super.onCreate();
         handler = new Handler();
         windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
-        monitoredAppDao = new MonitoredAppDao(this);
+        overlayManager = new FloatingOverlayManager(this, windowManager, overlayCallback);
+        overlayManager.prewarm();
+        appPolicyManager = AppPolicyManager.getInstance(this);
         recommendAppDao = new RecommendAppDao(this);
+        recommendAppSampler = RecommendAppSampler.getInstance(this);
 
         isServiceRunning = true; // 设置服务运行状态
 
@@ -89,78 +134,72 @@ public class UsageMonitorService extends Service {
             SettingsSecureUtil.init(this);
         }
 
-        settingsManager = new SettingsManager(this);
+        settingsManager = SettingsManager.getInstance(this);
+        displayEffectReconciler = DisplayEffectReconciler.getInstance(this);
+        scheduleManager = ScheduleManager.getInstance(this);
+        scheduleManager.addModeListener(modeListener);
         linkManager = RecommendLinkManager.getInstance(this);
-        statisticsManager = new StatisticsManager(this);
+        statisticsManager = StatisticsManager.getInstance(this);
         // 读取上次推荐时间
         lastRecommendTime = settingsManager.getLastRecommendTime();
-        // 注册广播
-        IntentFilter filter = new IntentFilter();
-        filter.addAction("com.seeother.action.WINDOW_STATE_CHANGED");
-        filter.addAction("com.seeother.action.SHOW_FLOATING_WINDOW"); // 添加新的 action
-        filter.addAction("com.seeother.action.DISABLE_FLOATING_WINDOW"); // 添加禁用悬浮窗的广播
-        LocalBroadcastManager.getInstance(this).registerReceiver(receiver, filter);
+        // 恢复上次的前台应用
+        warmStartStore = WarmStartStore.getInstance(this);
+        restoreSnapshot();
+        warmStartStore.register(snapshotSection);
+        // 订阅窗口切换、显示悬浮窗和禁用悬浮窗事件
+        eventSubscription = ServiceEventBus.getInstance().register(eventSubscriber, handler);
     }
 
-    private void removeFloatingView() {
-        if (floatingView != null) {
-            windowManager.removeView(floatingView);
-            floatingView = null;
+    /**
+     * 从热启动快照恢复当前应用
+     */
+    private void restoreSnapshot() {
+        DataInputStream in = warmStartStore.restore(WarmStartStore.SECTION_USAGE_MONITOR);
+        if (in == null) return;
+        try {
+            if (in.readByte() != SNAPSHOT_VERSION) return;
+            currentPackage = in.readUTF();
+            AppPolicy policy = appPolicyManager.getPolicy(currentPackage);
+            monitoredApp = policy.isMonitored() ? policy : null;
+            Log.d(TAG, "从快照恢复当前应用: " + currentPackage);
+        } catch (IOException e) {
+            Log.w(TAG, "恢复快照失败: " + e.getMessage());
         }
     }
 
+    private void removeFloatingView() {
+        overlayManager.dismiss();
+    }
+
     private void openRecommendedApp() {
         // 更新推荐时间
         lastRecommendTime = System.currentTimeMillis();
         settingsManager.setLastRecommendTime(lastRecommendTime);
-        List<RecommendApp> recommendApps = recommendAppDao.getAllApps();
-        if (recommendApps.isEmpty()) return;
-
-        // 计算总权重
-        int totalWeight = 0;
-        for (RecommendApp app : recommendApps) {
-            totalWeight += app.getWeight();
-        }
+        // 按权重选择, 尽量不选当前应用
+        String recommendedPackage = recommendAppSampler.sample(currentPackage);
+        if (recommendedPackage == null) return;
 
-        // 生成一个随机值，范围是[0, totalWeight)
-        int randomWeight = new Random().nextInt(totalWeight);
-
-        // 遍历累加权重，当随机值小于累加和时，返回当前应用
-        int currentWeight = 0;
-        for (RecommendApp app : recommendApps) {
-            currentWeight += app.getWeight();
-            if (randomWeight < currentWeight) {
-                String recommendedPackage = app.getPkgName();
-                // size>1修复只有一个应用时, 陷入无限递归
-                if (recommendedPackage != null && recommendedPackage.equals(currentPackage) && recommendApps.size() > 1) {
-                    openRecommendedApp(); // 递归调用重新选择
-                    return;
-                }
-                // 其他应用正常打开
-                Intent intent = getPackageManager().getLaunchIntentForPackage(app.getPkgName());
-                if (intent != null) {
-                    startActivity(intent);
-                    break;
-                } else {
-                    Log.e(TAG, "推荐应用无法打开: " + app.getPkgName());
-                    // 创建对话框提示用户
-                    new Handler(Looper.getMainLooper()).post(() -> {
-                        AlertDialog dialog = new AlertDialog.Builder(new ContextThemeWrapper(this, com.google.android.material.R.style.Theme_MaterialComponents))
-                                .setTitle("应用无法打开")
-                                .setMessage("应用 " + app.getPkgName() + " 可能已被卸载或不支持，是否从推荐列表中移除？")
-                                .setPositiveButton("确定", (dialog1, which) -> {
-                                    recommendAppDao.deleteByPkgName(app.getPkgName());
-                                    removeFloatingView();
-                                })
-                                .setNegativeButton("取消", null)
-                                .create();
-                        if (dialog.getWindow() != null) {
-                            dialog.getWindow().setType(WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY);
-                            dialog.show();
-                        }
-                    });
+        Intent intent = recommendAppSampler.getLaunchIntent(recommendedPackage);
+        if (intent != null) {
+            startActivity(intent);
+        } else {
+            Log.e(TAG, "推荐应用无法打开: " + recommendedPackage);
+            // 创建对话框提示用户
+            new Handler(Looper.getMainLooper()).post(() -> {
+                AlertDialog dialog = new AlertDialog.Builder(new ContextThemeWrapper(this, com.google.android.material.R.style.Theme_MaterialComponents))
+                        .setTitle("应用无法打开")
+                        .setMessage("应用 " + recommendedPackage + " 可能已被卸载或不支持，是否从推荐列表中移除？")
+                        .setPositiveButton("确定", (dialog1, which) -> {
+                            recommendAppDao.deleteByPkgName(recommendedPackage);
+                            removeFloatingView();
+                        })
+                        .setNegativeButton("取消", null)
+                        .create();
+                if (dialog.getWindow() != null) {
+                    dialog.getWindow().setType(WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY);
+                    dialog.show();
                 }
-            }
+            });
         }
     }
 
@@ -193,7 +232,9 @@ public class UsageMonitorService extends Service {
 
         if (!packageName.equals(currentPackage)) {
             currentPackage = packageName;
-            monitoredApp = monitoredAppDao.getAppByPkgName(packageName);
+            warmStartStore.markDirty();
+            AppPolicy policy = appPolicyManager.getPolicy(packageName);
+            monitoredApp = policy.isMonitored() ? policy : null;
             
             // 统计少用应用打开次数
             if (monitoredApp != null) {
@@ -204,70 +245,60 @@ public class UsageMonitorService extends Service {
                     GlobalToast.showShort(this, "SOM: Running");
                 }
                 
-                boolean reachedThreshold = statisticsManager.incrementMonitoredAppOpenCount();
+                boolean reachedThreshold = statisticsManager.incrementMonitoredAppOpenCount(packageName);
                 if (reachedThreshold) {
                     // 达到阈值，显示打开次数
                     showMonitoredAppCountWindow();
                 }
             }
 
-            // 检查是否需要启用灰度模式，包含多种情况：
-            // 1. 监控应用设置了启用灰度模式
-            // 2. 非推荐应用灰度模式开关启用且符合条件
-            boolean shouldEnableGrayMode = false;
-
-            try {
-                // 检查是否在勿扰时段内
-                boolean isInDoNotDisturbTime = SettingsSecureUtil.getInstance().isInDoNotDisturbTime();
-
-                if (!isInDoNotDisturbTime) {
-                    // 情况1：监控应用设置了启用灰度模式
-                    if (monitoredApp != null && monitoredApp.getEnableGrayMode()) {
-                        shouldEnableGrayMode = true;
-                    }
-                    // 情况2：非推荐应用灰度模式
-                    else if (shouldEnableGrayModeForNonRecommendApp(packageName)) {
-                        shouldEnableGrayMode = true;
-                    }
-
-                    // 检查是否需要在打开少用应用时推荐其他应用
-                    if (shouldRecommendOnLessUsedApp()) {
-                        handler.postDelayed(() -> {
-                            if (linkManager.shouldOpenLink()) {
-                                openRecommendedLink();
-                            } else {
-                                openRecommendedApp();
-                            }
-                        }, 100); // 延迟100ms，确保应用已经打开
+            // 检查是否需要在打开少用应用时推荐其他应用
+            if (!scheduleManager.isInDoNotDisturbTime() && shouldRecommendOnLessUsedApp()) {
+                handler.postDelayed(() -> {
+                    if (linkManager.shouldOpenLink()) {
+                        openRecommendedLink();
+                    } else {
+                        openRecommendedApp();
                     }
-                }
-            } catch (IllegalStateException e) {
-                Log.e(TAG, "SettingsSecureUtil 未初始化，无法检查勿扰模式", e);
-                // 如果无法检查勿扰模式，只检查监控应用的设置
-                if (monitoredApp != null && monitoredApp.getEnableGrayMode()) {
-                    shouldEnableGrayMode = true;
-                }
+                }, 100); // 延迟100ms，确保应用已经打开
             }
 
-            if (shouldEnableGrayMode) {
-                enableGrayMode();
-            } else {
-                disableGrayMode();
+            updateGrayMode(packageName);
+        }
+    }
+
+    /**
+     * 根据当前应用和时间表状态更新灰度模式, 包含多种情况：
+     * 1. 监控应用设置了启用灰度模式
+     * 2. 非推荐应用灰度模式开关启用且符合条件
+     * 勿扰时段内不启用灰度模式
+     */
+    private void updateGrayMode(String packageName) {
+        boolean shouldEnableGrayMode = false;
+        if (!scheduleManager.isInDoNotDisturbTime()) {
+            // 情况1：监控应用设置了启用灰度模式
+            if (monitoredApp != null && monitoredApp.isGrayMode()) {
+                shouldEnableGrayMode = true;
+            }
+            // 情况2：非推荐应用灰度模式
+            else if (shouldEnableGrayModeForNonRecommendApp(packageName)) {
+                shouldEnableGrayMode = true;
             }
         }
+
+        if (shouldEnableGrayMode) {
+            enableGrayMode();
+        } else {
+            disableGrayMode();
+        }
     }
 
     /**
      * 显示少用应用打开次数的悬浮窗
      */
     private void showMonitoredAppCountWindow() {
-        try {
-            // 检查是否在勿扰时段
-            if (SettingsSecureUtil.getInstance().isInDoNotDisturbTime()) {
-                return;
-            }
-        } catch (IllegalStateException e) {
-            Log.e(TAG, "SettingsSecureUtil 未初始化", e);
+        // 检查是否在勿扰时段
+        if (scheduleManager.isInDoNotDisturbTime()) {
             return;
         }
         
@@ -291,109 +322,26 @@ public class UsageMonitorService extends Service {
     }
 
     private void showFloatingWindow() {
-        if (floatingView != null) return;
+        if (overlayManager.isShowing()) return;
         if (settingsManager.getPauseEnabled()) return;
 
-        // 获取当前是否为夜间模式
-        int nightModeFlags = getResources().getConfiguration().uiMode &
-                android.content.res.Configuration.UI_MODE_NIGHT_MASK;
-        boolean isNightMode = nightModeFlags == android.content.res.Configuration.UI_MODE_NIGHT_YES;
-
-        // 使用适合当前模式的主题
-        Context contextThemeWrapper;
-        if (isNightMode) {
-            // 夜间模式使用DarkActionBar主题
-            contextThemeWrapper = new ContextThemeWrapper(this, com.google.android.material.R.style.Theme_MaterialComponents_DayNight_DarkActionBar);
-        } else {
-            // 日间模式使用Light主题
-            contextThemeWrapper = new ContextThemeWrapper(this, com.google.android.material.R.style.Theme_MaterialComponents_Light);
-        }
-
-        floatingView = LayoutInflater.from(contextThemeWrapper).inflate(R.layout.floating_window_fullscreen, null);
-
-        // 设置全屏悬浮窗的动画和按钮
-        LottieAnimationView mainAnimation = floatingView.findViewById(R.id.animation_view);
-        LottieAnimationView loadingAnimation = floatingView.findViewById(R.id.loading_animation);
-        MaterialButton tryLuckButton = floatingView.findViewById(R.id.btn_try_luck);
-
-        // 加载动画
-        try {
-            mainAnimation.setAnimation("tired.lottie");
-            loadingAnimation.setAnimation("loading.lottie");
-        } catch (Exception e) {
-            Log.e(TAG, "加载Lottie动画失败", e);
+        // 从守卫事件发布开始计算显示耗时
+        long triggerNanos = eventSubscription != null ? eventSubscription.getCurrentPostNanos() : 0;
+        if (triggerNanos == 0) {
+            triggerNanos = SystemClock.elapsedRealtimeNanos();
         }
-
-        // 设置按钮点击事件
-        tryLuckButton.setOnClickListener(v -> {
-            // 根据概率决定打开链接还是推荐应用
-            if (linkManager.shouldOpenLink()) {
-                openRecommendedLink();
-            } else {
-                openRecommendedApp();
-            }
-
-            // 延迟移除, 防止看到吸引人的内容
-            new Handler().postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    removeFloatingView();
-                }
-            }, 100);
-        });
-
-        // 设置关闭按钮点击事件
-        MaterialButton closeButton = floatingView.findViewById(R.id.btn_close_page);
-        closeButton.setOnClickListener(v -> {
-            removeFloatingView();
-        });
-        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
-                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
-                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
-                android.graphics.PixelFormat.TRANSLUCENT
-        );
-        params.gravity = Gravity.CENTER;
-
-        try {
-            windowManager.addView(floatingView, params);
-            new Handler().postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    if (floatingView == null) return;
-                    View target = floatingView.findViewById(R.id.btn_try_luck);
-                    if (target != null) {
-                        target.performClick();
-                    }
-                }
-            }, 0);
-        } catch (Exception e) {
-            Log.e(TAG, "Could not show floating window", e);
+        if (overlayManager.show(triggerNanos)) {
+            handler.postDelayed(overlayManager::performTryLuck, 0);
         }
     }
 
     private void enableGrayMode() {
         if (settingsManager.getPauseEnabled()) return;
-        try {
-            SettingsSecureUtil.getInstance().enableColorSpace();
-            if (monitoredApp != null && monitoredApp.getEnableHighContrast()) {
-                SettingsSecureUtil.getInstance().enableHighContrastText();
-            }
-        } catch (IllegalStateException e) {
-            Log.e(TAG, "SettingsSecureUtil 未初始化，无法启用灰度模式", e);
-            // 尝试在此处初始化
-            SettingsSecureUtil.init(this);
-        }
+        displayEffectReconciler.setDesired(true, monitoredApp != null && monitoredApp.isHighContrast());
     }
 
     private void disableGrayMode() {
-        try {
-            SettingsSecureUtil.getInstance().disableColorSpace();
-            SettingsSecureUtil.getInstance().disableHighContrastText();
-        } catch (IllegalStateException e) {
-            Log.e(TAG, "SettingsSecureUtil 未初始化，无法禁用灰度模式", e);
-            // 尝试在此处初始化
-            SettingsSecureUtil.init(this);
-        }
+        displayEffectReconciler.setDesired(false, false);
     }
 
     private boolean checkPauseTime() {
@@ -423,18 +371,12 @@ public class UsageMonitorService extends Service {
         }
 
         // 检查是否在勿扰时段
-        try {
-            if (SettingsSecureUtil.getInstance().isInDoNotDisturbTime()) {
-                return false;
-            }
-        } catch (IllegalStateException e) {
-            Log.e(TAG, "SettingsSecureUtil 未初始化，无法检查勿扰模式", e);
+        if (scheduleManager.isInDoNotDisturbTime()) {
             return false;
         }
 
         // 检查当前应用是否为推荐应用
-        RecommendApp recommendApp = recommendAppDao.getAppByPkgName(packageName);
-        return recommendApp == null; // 如果不是推荐应用，返回true
+        return !appPolicyManager.getPolicy(packageName).isRecommended(); // 如果不是推荐应用，返回true
     }
 
     /**
@@ -462,14 +404,8 @@ public class UsageMonitorService extends Service {
         }
 
         // 检查是否在勿扰时段，如果在勿扰时段且未开启勿扰模式推荐开关，则不推荐
-        try {
-            if (SettingsSecureUtil.getInstance().isInDoNotDisturbTime() 
-                    && !settingsManager.isRecommendInDndModeEnabled()) {
-                return false;
-            }
-        } catch (IllegalStateException e) {
-            Log.e(TAG, "SettingsSecureUtil 未初始化，无法检查勿扰模式", e);
-            // 如果无法检查勿扰模式，默认不在勿扰时段
+        if (scheduleManager.isInDoNotDisturbTime() && !settingsManager.isRecommendInDndModeEnabled()) {
+            return false;
         }
 
         // 检查时间间隔是否足够
@@ -485,6 +421,20 @@ public class UsageMonitorService extends Service {
         return true;
     }
 
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        overlayManager.onConfigurationChanged();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // 进程可能即将被回收, 提前写入快照
+        warmStartStore.checkpointSoon();
+        statisticsManager.flush();
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         return null;
@@ -495,9 +445,15 @@ public class UsageMonitorService extends Service {
         super.onDestroy();
         handler.removeCallbacksAndMessages(null);
 
-        removeFloatingView();
-        // 注销广播
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(receiver);
+        overlayManager.release();
+        scheduleManager.removeModeListener(modeListener);
+        // 注销事件订阅
+        ServiceEventBus.getInstance().unregister(eventSubscription);
+        eventSubscription = null;
+        // 保存最终状态
+        warmStartStore.checkpoint();
+        warmStartStore.unregister(snapshotSection);
+        statisticsManager.flush();
         isServiceRunning = false;
     }
 
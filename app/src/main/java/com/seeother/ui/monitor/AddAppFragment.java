@@ -1,6 +1,7 @@
 package com.seeother.ui.monitor;
 
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
@@ -13,23 +14,17 @@ import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.seeother.R;
-import com.seeother.common.AppInfo;
-import com.seeother.data.db.MonitoredAppDao;
-import com.seeother.data.db.RecommendAppDao;
-import com.seeother.data.entity.MonitoredApp;
-import com.seeother.data.entity.RecommendApp;
 import com.seeother.databinding.FragmentMonitorAddAppBinding;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.seeother.manager.InstalledAppCatalog;
+import com.seeother.utils.FirstRowTimer;
 
 public class AddAppFragment extends Fragment {
 
     private FragmentMonitorAddAppBinding binding;
     private AddAppViewModel viewModel;
     private AppListAdapter adapter;
-    private MonitoredAppDao monitoredAppDao;
-    private RecommendAppDao recommendAppDao;
+    // 页面打开时间, 首行显示后清零
+    private long openedAtNanos;
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater,
@@ -41,9 +36,8 @@ public class AddAppFragment extends Fragment {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
+        openedAtNanos = SystemClock.elapsedRealtimeNanos();
         viewModel = new ViewModelProvider(this).get(AddAppViewModel.class);
-        monitoredAppDao = new MonitoredAppDao(this.getContext());
-        recommendAppDao = new RecommendAppDao(this.getContext());
 
         // 隐藏底部导航栏
         View navView = requireActivity().findViewById(R.id.nav_view);
@@ -73,8 +67,10 @@ public class AddAppFragment extends Fragment {
     }
 
     private void setupRecyclerView() {
-        adapter = new AppListAdapter(this.getContext());
+        adapter = new AppListAdapter(this.getContext(), viewModel.getDbExecutor());
         binding.rvApps.setAdapter(adapter);
+        // 勾选状态已保存, 之后的搜索结果使用新的状态
+        adapter.setOnAppClickListener(app -> viewModel.setChecked(app.getPackageName(), app.getChecked()));
     }
 
     private void setupSearchView() {
@@ -99,25 +95,13 @@ public class AddAppFragment extends Fragment {
     private void observeData() {
         viewModel.getAppList().observe(getViewLifecycleOwner(), apps -> {
             binding.progressBar.setVisibility(View.GONE);
-            List<AppInfo> appList = new ArrayList<>();
-            for (AppInfo app : apps) {
-                RecommendApp recommendApp = recommendAppDao.getAppByPkgName(app.getPackageName());
-                if (recommendApp != null) continue;
-                MonitoredApp monitoredApp = monitoredAppDao.getAppByPkgName(app.getPackageName());
-                app.setChecked(monitoredApp != null);
-                appList.add(app);
+            adapter.setAppList(apps);
+            if (openedAtNanos != 0 && !apps.isEmpty()) {
+                String source = InstalledAppCatalog.getInstance(requireContext()).isLoadedFromIndex()
+                        ? "磁盘索引" : "全量加载";
+                FirstRowTimer.watch(binding.rvApps, openedAtNanos, "添加监控应用(" + source + ")");
+                openedAtNanos = 0;
             }
-            // 将选中的应用排在前面
-            appList.sort((app1, app2) -> {
-                if (app1.getChecked() && !app2.getChecked()) {
-                    return -1; // app1排在前面
-                } else if (!app1.getChecked() && app2.getChecked()) {
-                    return 1; // app2排在前面
-                } else {
-                    return 0; // 保持原顺序
-                }
-            });
-            adapter.setAppList(appList);
         });
     }
 }
@@ -1,6 +1,8 @@
 package com.seeother.ui.monitor;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,41 +13,50 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.seeother.R;
 import com.seeother.common.AppInfo;
 import com.seeother.data.db.MonitoredAppDao;
 import com.seeother.data.entity.MonitoredApp;
+import com.seeother.utils.AppIconLoader;
+import com.seeother.utils.StableIds;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-
-public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHolder> {
-    private List<AppInfo> appList = new ArrayList<>();
+import java.util.concurrent.Executor;
+
+/**
+ * 选择监控应用的列表
+ * 列表在后台线程中对比差异, 勾选状态变化时只局部刷新对应行的 CheckBox;
+ * 行的勾选状态由 ViewModel 在数据库线程中读取, 勾选和取消也在该线程中写入
+ */
+public class AppListAdapter extends ListAdapter<AppInfo, AppListAdapter.ViewHolder> {
     private OnAppClickListener listener;
     private final MonitoredAppDao monitoredAppDao;
     private final Context context;
-    private Set<String> monitoredPackages; // 用于存储被监控的包名
-
+    private final AppIconLoader iconLoader;
+    private final Executor dbExecutor;
+    private final StableIds stableIds = new StableIds();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 最后提交的列表, 差异计算完成前 getCurrentList 仍是旧列表
+    private List<AppInfo> submittedRows = new ArrayList<>();
+
+    /**
+     * 勾选状态已写入数据库后回调, app 为新的行
+     */
     public interface OnAppClickListener {
         void onAppClick(AppInfo app);
     }
 
-    public AppListAdapter(Context context) {
+    public AppListAdapter(Context context, Executor dbExecutor) {
+        super(AppInfo.DIFF_CALLBACK);
         this.context = context;
+        this.iconLoader = AppIconLoader.getInstance(context);
         this.monitoredAppDao = new MonitoredAppDao(context);
-        loadMonitoredApps(); // 加载被监控的应用列表
-    }
-
-    private void loadMonitoredApps() {
-        monitoredPackages = new HashSet<>();
-        List<MonitoredApp> monitoredApps = monitoredAppDao.getAllApps();
-        for (MonitoredApp app : monitoredApps) {
-            monitoredPackages.add(app.getPkgName());
-        }
+        this.dbExecutor = dbExecutor;
+        setHasStableIds(true);
     }
 
     public void setOnAppClickListener(OnAppClickListener listener) {
@@ -53,12 +64,17 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHold
     }
 
     public void setAppList(List<AppInfo> apps) {
-        this.appList = apps;
-        // 设置每个应用的初始监控状态
-        for (AppInfo app : this.appList) {
-            app.setChecked(monitoredPackages.contains(app.getPackageName()));
-        }
-        notifyDataSetChanged();
+        submitRows(apps);
+    }
+
+    private void submitRows(List<AppInfo> rows) {
+        submittedRows = rows;
+        submitList(rows);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idOf(getItem(position).getPackageName());
     }
 
     @NonNull
@@ -66,80 +82,124 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHold
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_app, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+        // 只响应用户点击, 绑定时设置 CheckBox 状态不会触发
+        holder.checkBox.setOnClickListener(v -> onCheckBoxClicked(holder));
+        // 设置整个项的点击事件（可选）
+        holder.itemView.setOnClickListener(v -> holder.checkBox.performClick());
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty()) {
+            // 只有勾选状态变化
+            holder.checkBox.setChecked(getItem(position).getChecked());
+            return;
+        }
+        onBindViewHolder(holder, position);
     }
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        AppInfo app = appList.get(position);
-        holder.ivIcon.setImageDrawable(app.getAppIcon());
+        AppInfo app = getItem(position);
+        iconLoader.load(holder.ivIcon, app.getPackageName());
         holder.tvName.setText(app.getAppName());
-
-        // 设置CheckBox的初始状态，并避免触发监听器
-        holder.checkBox.setOnCheckedChangeListener(null);
         holder.checkBox.setChecked(app.getChecked());
+    }
 
-        // 设置 CheckBox 的点击监听器
-        holder.checkBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
-            if (isChecked) {
-                // 添加到监控列表
-                MonitoredApp monitoredApp = new MonitoredApp();
-                monitoredApp.setPkgName(app.getPackageName());
-                monitoredApp.setEnableGrayMode(false); // 默认值
-
+    private void onCheckBoxClicked(ViewHolder holder) {
+        int position = holder.getAdapterPosition();
+        if (position == RecyclerView.NO_POSITION) {
+            return;
+        }
+        AppInfo app = getItem(position);
+        String packageName = app.getPackageName();
+        if (holder.checkBox.isChecked()) {
+            // 添加到监控列表
+            MonitoredApp monitoredApp = new MonitoredApp();
+            monitoredApp.setPkgName(packageName);
+            monitoredApp.setEnableGrayMode(false); // 默认值
+
+            dbExecutor.execute(() -> {
                 long id = monitoredAppDao.insert(monitoredApp);
-                if (id != -1) {
-                    app.setChecked(true);
-                    monitoredPackages.add(app.getPackageName());
-                    if (listener != null) {
-                        listener.onAppClick(app);
+                // 在主线程更新UI
+                mainHandler.post(() -> {
+                    if (id == -1) {
+                        restoreChecked(packageName);
+                        return;
                     }
-                }
-            } else {
-                // 显示确认对话框
-                new AlertDialog.Builder(context)
-                        .setTitle("删除应用")
-                        .setMessage("确定要删除 " + app.getAppName() + " 吗？将删除与之关联的配置")
-                        .setPositiveButton("确定", (dialog, which) -> {
-                            // 删除应用本身
-                            MonitoredApp existingApp = monitoredAppDao.getAppByPkgName(app.getPackageName());
-                            if (existingApp != null) {
-                                int ret = monitoredAppDao.delete(existingApp.getId());
-                                if (ret > 0) {
-                                    app.setChecked(false);
-                                    monitoredPackages.remove(app.getPackageName());
+                    onCheckedSaved(app, true);
+                });
+            });
+        } else {
+            // 显示确认对话框
+            new AlertDialog.Builder(context)
+                    .setTitle("删除应用")
+                    .setMessage("确定要删除 " + app.getAppName() + " 吗？将删除与之关联的配置")
+                    .setPositiveButton("确定", (dialog, which) -> {
+                        // 删除应用本身
+                        dbExecutor.execute(() -> {
+                            MonitoredApp existingApp = monitoredAppDao.getAppByPkgName(packageName);
+                            boolean deleted = existingApp == null || monitoredAppDao.delete(existingApp.getId()) > 0;
+                            // 在主线程更新UI
+                            mainHandler.post(() -> {
+                                if (deleted) {
+                                    onCheckedSaved(app, false);
                                     Toast.makeText(context, "删除成功", Toast.LENGTH_SHORT).show();
                                 } else {
+                                    restoreChecked(packageName);
                                     Toast.makeText(context, "删除失败", Toast.LENGTH_SHORT).show();
                                 }
-                            }
-                        })
-                        .setNegativeButton("取消", (dialog, which) -> {
-                            // 恢复 CheckBox 状态
-                            holder.checkBox.setChecked(true);
-                        })
-                        .show();
-            }
-        });
+                            });
+                        });
+                    })
+                    // 恢复 CheckBox 状态
+                    .setNegativeButton("取消", (dialog, which) -> restoreChecked(packageName))
+                    .setOnCancelListener(dialog -> restoreChecked(packageName))
+                    .show();
+        }
+    }
 
-        // 设置整个项的点击事件（可选）
-        holder.itemView.setOnClickListener(v -> {
-            holder.checkBox.performClick();
-        });
+    private void onCheckedSaved(AppInfo app, boolean checked) {
+        updateChecked(app.getPackageName(), checked);
+        if (listener != null) {
+            listener.onAppClick(app.withChecked(checked));
+        }
     }
 
-    @Override
-    public int getItemCount() {
-        return appList.size();
+    /**
+     * 用新的勾选状态替换对应的行, 只有这一行会局部刷新
+     */
+    private void updateChecked(String packageName, boolean checked) {
+        List<AppInfo> rows = new ArrayList<>(submittedRows);
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getPackageName().equals(packageName)) {
+                rows.set(i, rows.get(i).withChecked(checked));
+                submitRows(rows);
+                return;
+            }
+        }
     }
 
-    // 刷新监控状态（在数据库更改后调用）
-    public void refreshMonitoredStatus() {
-        loadMonitoredApps();
-        for (AppInfo app : appList) {
-            app.setChecked(monitoredPackages.contains(app.getPackageName()));
+    /**
+     * 操作取消或失败时, 让 CheckBox 恢复为行中记录的状态
+     */
+    private void restoreChecked(String packageName) {
+        List<AppInfo> rows = getCurrentList();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getPackageName().equals(packageName)) {
+                notifyItemChanged(i, AppInfo.PAYLOAD_CHECKED);
+                return;
+            }
         }
-        notifyDataSetChanged();
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        // 行已离开屏幕, 取消还未完成的图标加载
+        iconLoader.cancel(holder.ivIcon);
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -154,4 +214,4 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHold
             checkBox = view.findViewById(R.id.cb_monitored);
         }
     }
-}
\ No newline at end of file
+}
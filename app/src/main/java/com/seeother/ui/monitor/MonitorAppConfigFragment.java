@@ -26,6 +26,7 @@ import com.seeother.data.repository.AppGuardRuleRepository;
 import com.seeother.databinding.FragmentMonitorAppConfigBinding;
 import com.seeother.utils.PermissionChecker;
 import com.seeother.R;
+import com.seeother.utils.AppIconLoader;
 
 import java.util.List;
 
@@ -56,7 +57,6 @@ public class MonitorAppConfigFragment extends Fragment {
 
             monitoredApp = monitoredAppDao.getAppByPkgName(pkgName);
             monitoredApp.setAppName(pm.getApplicationLabel(appInfo).toString());
-            monitoredApp.setAppIcon(pm.getApplicationIcon(pkgName));
         } catch (PackageManager.NameNotFoundException e) {
             e.printStackTrace();
         }
@@ -74,7 +74,7 @@ public class MonitorAppConfigFragment extends Fragment {
         super.onViewCreated(view, savedInstanceState);
 
         // 设置应用信息
-        binding.ivAppIcon.setImageDrawable(monitoredApp.getAppIcon());
+        AppIconLoader.getInstance(requireContext()).load(binding.ivAppIcon, monitoredApp.getPkgName());
         binding.tvAppName.setText(monitoredApp.getAppName());
 
         // 设置灰度开关
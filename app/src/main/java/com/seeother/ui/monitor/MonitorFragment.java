@@ -17,7 +17,9 @@ import com.seeother.data.entity.MonitoredApp;
 import com.seeother.databinding.FragmentMonitorBinding;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MonitorFragment extends Fragment {
 
@@ -62,12 +64,15 @@ public class MonitorFragment extends Fragment {
     private void observeData() {
         monitorViewModel.getAppList().observe(getViewLifecycleOwner(), apps -> {
             binding.progressBar.setVisibility(View.GONE);
+            // 一次读取全部监控应用, 按应用列表的顺序排列
+            Map<String, MonitoredApp> monitoredApps = new HashMap<>();
+            for (MonitoredApp monitoredApp : monitoredAppDao.getAllApps()) {
+                monitoredApps.put(monitoredApp.getPkgName(), monitoredApp);
+            }
             List<MonitoredApp> monitoredAppList = new ArrayList<>();
             for (AppInfo app : apps) {
-                MonitoredApp monitoredApp = monitoredAppDao.getAppByPkgName(app.getPackageName());
+                MonitoredApp monitoredApp = monitoredApps.get(app.getPackageName());
                 if(monitoredApp!=null){
-                    app.setChecked(true);
-                    monitoredApp.setAppIcon(app.getAppIcon());
                     monitoredApp.setAppName(app.getAppName());
                     monitoredAppList.add(monitoredApp);
                 }
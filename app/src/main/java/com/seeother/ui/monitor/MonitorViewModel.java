@@ -1,43 +1,39 @@
 package com.seeother.ui.monitor;
 
 import android.content.Context;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
-import android.graphics.drawable.Drawable;
 
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.ViewModel;
 
 import com.seeother.common.AppInfo;
+import com.seeother.manager.InstalledAppCatalog;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class MonitorViewModel extends ViewModel {
-    private final MutableLiveData<List<AppInfo>> appList = new MutableLiveData<>();
+    private final MediatorLiveData<List<AppInfo>> appList = new MediatorLiveData<>();
+    private boolean sourceAttached = false;
 
     public LiveData<List<AppInfo>> getAppList() {
         return appList;
     }
 
+    /**
+     * 订阅共享的应用目录, 目录已加载时立即得到结果, 应用安装/卸载后自动更新
+     */
     public void loadInstalledApps(Context context) {
-        new Thread(() -> {
-            PackageManager pm = context.getPackageManager();
-            List<ApplicationInfo> packages = pm.getInstalledApplications(PackageManager.GET_META_DATA);
-            List<AppInfo> apps = new ArrayList<>();
-
-            for (ApplicationInfo packageInfo : packages) {
-                    String appName = pm.getApplicationLabel(packageInfo).toString();
-                    Drawable appIcon = pm.getApplicationIcon(packageInfo);
-                    apps.add(new AppInfo(packageInfo.packageName, appName, appIcon));
+        if (sourceAttached) return;
+        sourceAttached = true;
+        appList.addSource(InstalledAppCatalog.getInstance(context).getApps(), entries -> {
+            if (entries == null) return;
+            // 目录已按应用名称排序
+            List<AppInfo> apps = new ArrayList<>(entries.size());
+            for (InstalledAppCatalog.Entry entry : entries) {
+                apps.add(new AppInfo(entry.packageName, entry.label));
             }
-
-            // 按应用名称排序
-            apps.sort((a1, a2) ->
-                    a1.getAppName().compareToIgnoreCase(a2.getAppName()));
-
-            appList.postValue(apps);
-        }).start();
+            appList.setValue(apps);
+        });
     }
-}
\ No newline at end of file
+}
@@ -10,39 +10,50 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.navigation.Navigation;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.seeother.R;
-import com.seeother.data.db.MonitoredAppDao;
 import com.seeother.data.entity.MonitoredApp;
+import com.seeother.utils.AppIconLoader;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Objects;
 
-public class MonitoredAppListAdapter extends RecyclerView.Adapter<MonitoredAppListAdapter.ViewHolder> {
-    private List<MonitoredApp> appList = new ArrayList<>();
-    private final MonitoredAppDao monitoredAppDao;
-    private Set<String> monitoredPackages;
+/**
+ * 已监控应用列表
+ * 每次提交的都是从数据库新读取的对象, 提交后不再修改, 列表在后台线程中对比差异
+ */
+public class MonitoredAppListAdapter extends ListAdapter<MonitoredApp, MonitoredAppListAdapter.ViewHolder> {
+    private static final DiffUtil.ItemCallback<MonitoredApp> DIFF_CALLBACK = new DiffUtil.ItemCallback<MonitoredApp>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MonitoredApp oldItem, @NonNull MonitoredApp newItem) {
+            return Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MonitoredApp oldItem, @NonNull MonitoredApp newItem) {
+            return Objects.equals(oldItem.getPkgName(), newItem.getPkgName())
+                    && Objects.equals(oldItem.getAppName(), newItem.getAppName());
+        }
+    };
+
+    private final AppIconLoader iconLoader;
 
     public MonitoredAppListAdapter(Context context) {
-        this.monitoredAppDao = new MonitoredAppDao(context);
-        loadMonitoredApps();
+        super(DIFF_CALLBACK);
+        this.iconLoader = AppIconLoader.getInstance(context);
+        setHasStableIds(true);
     }
 
-    private void loadMonitoredApps() {
-        monitoredPackages = new HashSet<>();
-        List<MonitoredApp> monitoredApps = monitoredAppDao.getAllApps();
-        for (MonitoredApp app : monitoredApps) {
-            monitoredPackages.add(app.getPkgName());
-        }
+    public void setAppList(List<MonitoredApp> apps) {
+        submitList(apps);
     }
 
-    public void setAppList(List<MonitoredApp> apps) {
-        this.appList = apps;
-        // 设置每个应用的初始监控状态
-        notifyDataSetChanged();
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     @NonNull
@@ -50,25 +61,32 @@ public class MonitoredAppListAdapter extends RecyclerView.Adapter<MonitoredAppLi
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.monitored_app, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+        // 设置整个项的点击事件（可选）
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            Bundle args = new Bundle();
+            args.putString("pkgName", getItem(position).getPkgName());
+            Navigation.findNavController(v).navigate(R.id.monitorAppConfigFragment, args);
+        });
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        MonitoredApp app = appList.get(position);
-        holder.ivIcon.setImageDrawable(app.getAppIcon());
+        MonitoredApp app = getItem(position);
+        iconLoader.load(holder.ivIcon, app.getPkgName());
         holder.tvName.setText(app.getAppName());
-        Bundle args = new Bundle();
-        args.putString("pkgName", app.getPkgName());
-        // 设置整个项的点击事件（可选）
-        holder.itemView.setOnClickListener(v -> {
-            Navigation.findNavController(v).navigate(R.id.monitorAppConfigFragment, args);
-        });
     }
 
     @Override
-    public int getItemCount() {
-        return appList.size();
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        // 行已离开屏幕, 取消还未完成的图标加载
+        iconLoader.cancel(holder.ivIcon);
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -83,4 +101,4 @@ public class MonitoredAppListAdapter extends RecyclerView.Adapter<MonitoredAppLi
             tvLimitTime = view.findViewById(R.id.tv_app_limit_time);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package com.seeother.ui.recommend;
 
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
@@ -13,23 +14,17 @@ import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.seeother.R;
-import com.seeother.common.AppInfo;
-import com.seeother.data.db.MonitoredAppDao;
-import com.seeother.data.db.RecommendAppDao;
-import com.seeother.data.entity.MonitoredApp;
-import com.seeother.data.entity.RecommendApp;
 import com.seeother.databinding.FragmentRecommendAddAppBinding;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.seeother.manager.InstalledAppCatalog;
+import com.seeother.utils.FirstRowTimer;
 
 public class AddAppFragment extends Fragment {
 
     private FragmentRecommendAddAppBinding binding;
     private AddAppViewModel viewModel;
     private AddAppListAdapter adapter;
-    private MonitoredAppDao monitoredAppDao;
-    private RecommendAppDao recommendAppDao;
+    // 页面打开时间, 首行显示后清零
+    private long openedAtNanos;
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater,
@@ -41,9 +36,8 @@ public class AddAppFragment extends Fragment {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
+        openedAtNanos = SystemClock.elapsedRealtimeNanos();
         viewModel = new ViewModelProvider(this).get(AddAppViewModel.class);
-        monitoredAppDao = new MonitoredAppDao(this.getContext());
-        recommendAppDao = new RecommendAppDao(this.getContext());
 
         // 隐藏底部导航栏
         View navView = requireActivity().findViewById(R.id.nav_view);
@@ -73,13 +67,13 @@ public class AddAppFragment extends Fragment {
     }
 
     private void setupRecyclerView() {
-        adapter = new AddAppListAdapter(this.getContext());
+        adapter = new AddAppListAdapter(this.getContext(), viewModel.getDbExecutor());
         binding.rvRecommendApps.setAdapter(adapter);
         
         // 设置应用点击监听器
         adapter.setOnAppClickListener(app -> {
-            // 应用状态改变时的回调，这里可以添加额外的处理逻辑
-            // 例如显示提示信息等
+            // 勾选状态已保存, 之后的搜索结果使用新的状态
+            viewModel.setChecked(app.getPackageName(), app.getChecked());
         });
     }
 
@@ -104,28 +98,14 @@ public class AddAppFragment extends Fragment {
 
     private void observeData() {
         viewModel.getAppList().observe(getViewLifecycleOwner(), apps -> {
-            List<AppInfo> appList = new ArrayList<>();
             binding.progressBar.setVisibility(View.GONE);
-            for (AppInfo app : apps) {
-                MonitoredApp monitoredApp = monitoredAppDao.getAppByPkgName(app.getPackageName());
-                if(monitoredApp!=null) continue;
-                RecommendApp recommendApp = recommendAppDao.getAppByPkgName(app.getPackageName());
-                if(recommendApp !=null) {
-                    app.setChecked(true);
-                }
-                appList.add(app);
+            adapter.setAppList(apps);
+            if (openedAtNanos != 0 && !apps.isEmpty()) {
+                String source = InstalledAppCatalog.getInstance(requireContext()).isLoadedFromIndex()
+                        ? "磁盘索引" : "全量加载";
+                FirstRowTimer.watch(binding.rvRecommendApps, openedAtNanos, "添加推荐应用(" + source + ")");
+                openedAtNanos = 0;
             }
-            // 将选中的应用排在前面
-            appList.sort((app1, app2) -> {
-                if (app1.getChecked() && !app2.getChecked()) {
-                    return -1; // app1排在前面
-                } else if (!app1.getChecked() && app2.getChecked()) {
-                    return 1; // app2排在前面
-                } else {
-                    return 0; // 保持原顺序
-                }
-            });
-            adapter.setAppList(appList);
         });
     }
 
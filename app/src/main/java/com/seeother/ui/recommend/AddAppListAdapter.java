@@ -2,6 +2,8 @@ package com.seeother.ui.recommend;
 
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,43 +13,52 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.seeother.R;
 import com.seeother.common.AppInfo;
 import com.seeother.data.db.RecommendAppDao;
 import com.seeother.data.entity.RecommendApp;
+import com.seeother.utils.AppIconLoader;
+import com.seeother.utils.StableIds;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-
-public class AddAppListAdapter extends RecyclerView.Adapter<AddAppListAdapter.ViewHolder> {
-    private List<AppInfo> appList = new ArrayList<>();
+import java.util.concurrent.Executor;
+
+/**
+ * 选择推荐应用的列表
+ * 列表在后台线程中对比差异, 勾选状态变化时只局部刷新对应行的 CheckBox;
+ * 行的勾选状态由 ViewModel 在数据库线程中读取, 勾选和取消也在该线程中写入
+ */
+public class AddAppListAdapter extends ListAdapter<AppInfo, AddAppListAdapter.ViewHolder> {
     private OnAppClickListener listener;
     private final RecommendAppDao recommendAppDao;
     private final Context context;
-    private Set<String> recommendedPackages;
+    private final AppIconLoader iconLoader;
+    private final Executor dbExecutor;
+    private final StableIds stableIds = new StableIds();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private final RecommendDataManager dataManager;
+    // 最后提交的列表, 差异计算完成前 getCurrentList 仍是旧列表
+    private List<AppInfo> submittedRows = new ArrayList<>();
 
+    /**
+     * 勾选状态已写入数据库后回调, app 为新的行
+     */
     public interface OnAppClickListener {
         void onAppClick(AppInfo app);
     }
 
-    public AddAppListAdapter(Context context) {
+    public AddAppListAdapter(Context context, Executor dbExecutor) {
+        super(AppInfo.DIFF_CALLBACK);
         this.context = context;
+        this.iconLoader = AppIconLoader.getInstance(context);
         this.recommendAppDao = new RecommendAppDao(context);
         this.dataManager = RecommendDataManager.getInstance();
-        loadMonitoredApps();
-    }
-
-    private void loadMonitoredApps() {
-        recommendedPackages = new HashSet<>();
-        List<RecommendApp> recommendedApps = recommendAppDao.getAllApps();
-        for (RecommendApp app : recommendedApps) {
-            recommendedPackages.add(app.getPkgName());
-        }
+        this.dbExecutor = dbExecutor;
+        setHasStableIds(true);
     }
 
     public void setOnAppClickListener(OnAppClickListener listener) {
@@ -55,12 +66,17 @@ public class AddAppListAdapter extends RecyclerView.Adapter<AddAppListAdapter.Vi
     }
 
     public void setAppList(List<AppInfo> apps) {
-        this.appList = apps;
-        // 设置每个应用的初始监控状态
-        for (AppInfo app : this.appList) {
-            app.setChecked(recommendedPackages.contains(app.getPackageName()));
-        }
-        notifyDataSetChanged();
+        submitRows(apps);
+    }
+
+    private void submitRows(List<AppInfo> rows) {
+        submittedRows = rows;
+        submitList(rows);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idOf(getItem(position).getPackageName());
     }
 
     @NonNull
@@ -68,94 +84,136 @@ public class AddAppListAdapter extends RecyclerView.Adapter<AddAppListAdapter.Vi
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_app, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+        // 只响应用户点击, 绑定时设置 CheckBox 状态不会触发
+        holder.checkBox.setOnClickListener(v -> onCheckBoxClicked(holder));
+        // 设置整个项的点击事件（可选）
+        holder.itemView.setOnClickListener(v -> holder.checkBox.performClick());
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty()) {
+            // 只有勾选状态变化
+            holder.checkBox.setChecked(getItem(position).getChecked());
+            return;
+        }
+        onBindViewHolder(holder, position);
     }
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        AppInfo app = appList.get(position);
-        holder.ivIcon.setImageDrawable(app.getAppIcon());
+        AppInfo app = getItem(position);
+        iconLoader.load(holder.ivIcon, app.getPackageName());
         holder.tvName.setText(app.getAppName());
-
-        // 设置CheckBox的初始状态，并避免触发监听器
-        holder.checkBox.setOnCheckedChangeListener(null);
         holder.checkBox.setChecked(app.getChecked());
+    }
 
-        // 设置 CheckBox 的点击监听器
-        holder.checkBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
-            if (isChecked) {
-                // 添加到推荐列表
-                RecommendApp recommendApp = new RecommendApp();
-                recommendApp.setPkgName(app.getPackageName());
-                recommendApp.setWeight(1);     // 默认值
-
-                new Thread(() -> {
-                    long id = recommendAppDao.insert(recommendApp);
-                    if (id != -1) {
-                        // 在主线程更新UI
-                        if (context instanceof androidx.fragment.app.FragmentActivity) {
-                            ((androidx.fragment.app.FragmentActivity) context).runOnUiThread(() -> {
-                                app.setChecked(true);
-                                recommendedPackages.add(app.getPackageName());
+    private void onCheckBoxClicked(ViewHolder holder) {
+        int position = holder.getAdapterPosition();
+        if (position == RecyclerView.NO_POSITION) {
+            return;
+        }
+        AppInfo app = getItem(position);
+        String packageName = app.getPackageName();
+        if (holder.checkBox.isChecked()) {
+            // 添加到推荐列表
+            RecommendApp recommendApp = new RecommendApp();
+            recommendApp.setPkgName(packageName);
+            recommendApp.setWeight(1);     // 默认值
+
+            dbExecutor.execute(() -> {
+                long id = recommendAppDao.insert(recommendApp);
+                // 在主线程更新UI
+                mainHandler.post(() -> {
+                    if (id == -1) {
+                        restoreChecked(packageName);
+                        return;
+                    }
+                    updateChecked(packageName, true);
+                    // 通知数据发生变化
+                    dataManager.notifyDataChanged();
+                    if (listener != null) {
+                        listener.onAppClick(app.withChecked(true));
+                    }
+                    Intent intent = context.getPackageManager().getLaunchIntentForPackage(packageName);
+                    if (intent != null) {
+                        new AlertDialog.Builder(context)
+                                .setTitle("打开测试提示")
+                                .setMessage("为了保证能够打开该应用，将进行一次打开测试。\n如果弹出系统弹窗，请同意 SeeOther 打开该应用。")
+                                .setPositiveButton("我知道了", (dialog, which) -> {
+                                    context.startActivity(intent);
+                                })
+                                .setNegativeButton("稍后同意", null)
+                                .show();
+                    }
+                });
+            });
+        } else {
+            // 显示确认对话框
+            new AlertDialog.Builder(context)
+                    .setTitle("取消推荐")
+                    .setMessage("确定要取消推荐 " + app.getAppName() + " 吗？")
+                    .setPositiveButton("确定", (dialog, which) -> {
+                        // 从数据库中删除
+                        dbExecutor.execute(() -> {
+                            RecommendApp existingApp = recommendAppDao.getAppByPkgName(packageName);
+                            boolean deleted = existingApp != null && recommendAppDao.delete(existingApp.getId()) > 0;
+                            // 在主线程更新UI
+                            mainHandler.post(() -> {
+                                if (!deleted) {
+                                    restoreChecked(packageName);
+                                    return;
+                                }
+                                updateChecked(packageName, false);
                                 // 通知数据发生变化
                                 dataManager.notifyDataChanged();
-                                Intent intent = context.getPackageManager().getLaunchIntentForPackage(app.getPackageName());
-                                if (intent != null) {
-                                    new AlertDialog.Builder(context)
-                                            .setTitle("打开测试提示")
-                                            .setMessage("为了保证能够打开该应用，将进行一次打开测试。\n如果弹出系统弹窗，请同意 SeeOther 打开该应用。")
-                                            .setPositiveButton("我知道了", (dialog, which) -> {
-                                                context.startActivity(intent);
-                                            })
-                                            .setNegativeButton("稍后同意", null)
-                                            .show();
+                                if (listener != null) {
+                                    listener.onAppClick(app.withChecked(false));
                                 }
                             });
-                        }
-                    }
-                }).start();
-            } else {
-                // 显示确认对话框
-                new AlertDialog.Builder(context)
-                        .setTitle("取消推荐")
-                        .setMessage("确定要取消推荐 " + app.getAppName() + " 吗？")
-                        .setPositiveButton("确定", (dialog, which) -> {
-                            // 从数据库中删除
-                            new Thread(() -> {
-                                RecommendApp existingApp = recommendAppDao.getAppByPkgName(app.getPackageName());
-                                if (existingApp != null) {
-                                    int result = recommendAppDao.delete(existingApp.getId());
-                                    if (result > 0) {
-                                        // 在主线程更新UI
-                                        if (context instanceof androidx.fragment.app.FragmentActivity) {
-                                            ((androidx.fragment.app.FragmentActivity) context).runOnUiThread(() -> {
-                                                app.setChecked(false);
-                                                recommendedPackages.remove(app.getPackageName());
-                                                // 通知数据发生变化
-                                                dataManager.notifyDataChanged();
-                                            });
-                                        }
-                                    }
-                                }
-                            }).start();
-                        })
-                        .setNegativeButton("取消", (dialog, which) -> {
-                            // 恢复 CheckBox 状态
-                            holder.checkBox.setChecked(true);
-                        })
-                        .show();
+                        });
+                    })
+                    // 恢复 CheckBox 状态
+                    .setNegativeButton("取消", (dialog, which) -> restoreChecked(packageName))
+                    .setOnCancelListener(dialog -> restoreChecked(packageName))
+                    .show();
+        }
+    }
+
+    /**
+     * 用新的勾选状态替换对应的行, 只有这一行会局部刷新
+     */
+    private void updateChecked(String packageName, boolean checked) {
+        List<AppInfo> rows = new ArrayList<>(submittedRows);
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getPackageName().equals(packageName)) {
+                rows.set(i, rows.get(i).withChecked(checked));
+                submitRows(rows);
+                return;
             }
-        });
+        }
+    }
 
-        // 设置整个项的点击事件（可选）
-        holder.itemView.setOnClickListener(v -> {
-            holder.checkBox.performClick();
-        });
+    /**
+     * 操作取消或失败时, 让 CheckBox 恢复为行中记录的状态
+     */
+    private void restoreChecked(String packageName) {
+        List<AppInfo> rows = getCurrentList();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getPackageName().equals(packageName)) {
+                notifyItemChanged(i, AppInfo.PAYLOAD_CHECKED);
+                return;
+            }
+        }
     }
 
     @Override
-    public int getItemCount() {
-        return appList.size();
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        // 行已离开屏幕, 取消还未完成的图标加载
+        iconLoader.cancel(holder.ivIcon);
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -170,4 +228,4 @@ public class AddAppListAdapter extends RecyclerView.Adapter<AddAppListAdapter.Vi
             checkBox = view.findViewById(R.id.cb_monitored);
         }
     }
-}
\ No newline at end of file
+}
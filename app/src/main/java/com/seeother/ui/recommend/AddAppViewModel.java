@@ -1,51 +1,120 @@
 package com.seeother.ui.recommend;
 
 import android.content.Context;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
-import android.graphics.drawable.Drawable;
 
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
 import com.seeother.common.AppInfo;
+import com.seeother.data.db.MonitoredAppDao;
+import com.seeother.data.db.RecommendAppDao;
+import com.seeother.data.entity.MonitoredApp;
+import com.seeother.data.entity.RecommendApp;
+import com.seeother.manager.InstalledAppCatalog;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AddAppViewModel extends ViewModel {
-    private final MutableLiveData<List<AppInfo>> appList = new MutableLiveData<>();
-    private List<AppInfo> allApps = new ArrayList<>();
+    private final MediatorLiveData<List<AppInfo>> appList = new MediatorLiveData<>();
+    // 读写推荐/监控应用表的线程, 选择列表不在主线程访问数据库
+    private final ExecutorService dbExecutor = Executors.newSingleThreadExecutor();
+    private final MutableLiveData<PackageStatus> packageStatus = new MutableLiveData<>();
+    private MonitoredAppDao monitoredAppDao;
+    private RecommendAppDao recommendAppDao;
+    private List<AppInfo> allApps = null;
+    private PackageStatus status = null;
     private String currentQuery = "";
+    private boolean sourceAttached = false;
+
+    /**
+     * 已加入推荐和已被监控的包名, 在数据库线程中读取
+     */
+    private static final class PackageStatus {
+        final Set<String> recommended;
+        // 已被监控的应用不能再加入推荐
+        final Set<String> monitored;
+
+        PackageStatus(Set<String> recommended, Set<String> monitored) {
+            this.recommended = recommended;
+            this.monitored = monitored;
+        }
+    }
 
     public LiveData<List<AppInfo>> getAppList() {
         return appList;
     }
 
+    /**
+     * 数据库操作使用的线程, 列表中的勾选和取消也在这里写入
+     */
+    public Executor getDbExecutor() {
+        return dbExecutor;
+    }
+
+    /**
+     * 订阅共享的应用目录, 目录已加载时立即得到结果, 应用安装/卸载后自动更新;
+     * 同时在数据库线程中读取推荐状态, 两者都就绪后才发布列表
+     */
     public void loadInstalledApps(Context context) {
-        new Thread(() -> {
-            PackageManager pm = context.getPackageManager();
-            List<ApplicationInfo> packages = pm.getInstalledApplications(PackageManager.GET_META_DATA);
+        if (sourceAttached) return;
+        sourceAttached = true;
+        Context appContext = context.getApplicationContext();
+        monitoredAppDao = new MonitoredAppDao(appContext);
+        recommendAppDao = new RecommendAppDao(appContext);
+        appList.addSource(packageStatus, loaded -> {
+            status = loaded;
+            filterApps();
+        });
+        appList.addSource(InstalledAppCatalog.getInstance(appContext).getApps(), entries -> {
+            if (entries == null) return;
+            // 目录已按应用名称排序
             List<AppInfo> apps = new ArrayList<>();
-
-            for (ApplicationInfo packageInfo : packages) {
+            for (InstalledAppCatalog.Entry entry : entries) {
                 // 只获取有启动器图标的应用(过滤系统应用)
-                if (pm.getLaunchIntentForPackage(packageInfo.packageName) != null) {
-                    String appName = pm.getApplicationLabel(packageInfo).toString();
-                    Drawable appIcon = pm.getApplicationIcon(packageInfo);
-                    apps.add(new AppInfo(packageInfo.packageName, appName, appIcon));
-                }
+                if (!entry.launchable) continue;
+                apps.add(new AppInfo(entry.packageName, entry.label));
             }
-
-            // 按应用名称排序
-            Collections.sort(apps, (a1, a2) ->
-                    a1.getAppName().compareToIgnoreCase(a2.getAppName()));
-
             allApps = apps;
             filterApps();
-        }).start();
+        });
+        refreshCheckedStatus();
+    }
+
+    /**
+     * 在数据库线程中重新读取推荐状态(在数据库更改后调用)
+     */
+    public void refreshCheckedStatus() {
+        dbExecutor.execute(() -> {
+            Set<String> monitored = new HashSet<>();
+            for (MonitoredApp app : monitoredAppDao.getAllApps()) {
+                monitored.add(app.getPkgName());
+            }
+            Set<String> recommended = new HashSet<>();
+            for (RecommendApp app : recommendAppDao.getAllApps()) {
+                recommended.add(app.getPkgName());
+            }
+            packageStatus.postValue(new PackageStatus(recommended, monitored));
+        });
+    }
+
+    /**
+     * 列表中的勾选状态已写入数据库, 之后的搜索结果使用新的状态
+     */
+    public void setChecked(String packageName, boolean checked) {
+        if (status == null) return;
+        if (checked) {
+            status.recommended.add(packageName);
+        } else {
+            status.recommended.remove(packageName);
+        }
     }
 
     public void searchApps(String query) {
@@ -54,18 +123,35 @@ public class AddAppViewModel extends ViewModel {
     }
 
     private void filterApps() {
-        if (currentQuery.isEmpty()) {
-            appList.postValue(allApps);
+        if (allApps == null || status == null) {
             return;
         }
 
         List<AppInfo> filteredList = new ArrayList<>();
         for (AppInfo app : allApps) {
-            if (app.getAppName().toLowerCase().contains(currentQuery) ||
-                    app.getPackageName().toLowerCase().contains(currentQuery)) {
-                filteredList.add(app);
+            if (status.monitored.contains(app.getPackageName())) continue;
+            if (!currentQuery.isEmpty() && !app.getAppName().toLowerCase().contains(currentQuery) &&
+                    !app.getPackageName().toLowerCase().contains(currentQuery)) {
+                continue;
             }
+            filteredList.add(app.withChecked(status.recommended.contains(app.getPackageName())));
         }
-        appList.postValue(filteredList);
+        // 将选中的应用排在前面
+        filteredList.sort((app1, app2) -> {
+            if (app1.getChecked() && !app2.getChecked()) {
+                return -1; // app1排在前面
+            } else if (!app1.getChecked() && app2.getChecked()) {
+                return 1; // app2排在前面
+            } else {
+                return 0; // 保持原顺序
+            }
+        });
+        appList.setValue(filteredList);
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        dbExecutor.shutdown();
     }
-}
\ No newline at end of file
+}
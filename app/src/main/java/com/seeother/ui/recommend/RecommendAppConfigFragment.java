@@ -19,6 +19,7 @@ import com.google.android.material.snackbar.Snackbar;
 import com.seeother.data.db.RecommendAppDao;
 import com.seeother.data.entity.RecommendApp;
 import com.seeother.databinding.FragmentRecommendAppConfigBinding;
+import com.seeother.utils.AppIconLoader;
 
 public class RecommendAppConfigFragment extends Fragment {
     private static final String ARG_PKG_NAME = "pkgName";
@@ -47,7 +48,6 @@ public class RecommendAppConfigFragment extends Fragment {
 
             recommendApp = recommendAppDao.getAppByPkgName(pkgName);
             recommendApp.setAppName(pm.getApplicationLabel(appInfo).toString());
-            recommendApp.setAppIcon(pm.getApplicationIcon(pkgName));
         } catch (PackageManager.NameNotFoundException e) {
             e.printStackTrace();
         }
@@ -65,7 +65,7 @@ public class RecommendAppConfigFragment extends Fragment {
         super.onViewCreated(view, savedInstanceState);
 
         // 设置应用信息
-        binding.ivAppIcon.setImageDrawable(recommendApp.getAppIcon());
+        AppIconLoader.getInstance(requireContext()).load(binding.ivAppIcon, recommendApp.getPkgName());
         binding.tvAppName.setText(recommendApp.getAppName());
 
         // 初始化推荐权重
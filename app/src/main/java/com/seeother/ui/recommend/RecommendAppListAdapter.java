@@ -10,39 +10,62 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.navigation.Navigation;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.seeother.R;
-import com.seeother.data.db.RecommendAppDao;
 import com.seeother.data.entity.RecommendApp;
+import com.seeother.utils.AppIconLoader;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Objects;
 
-public class RecommendAppListAdapter extends RecyclerView.Adapter<RecommendAppListAdapter.ViewHolder> {
-    private List<RecommendApp> appList = new ArrayList<>();
-    private final RecommendAppDao recommendAppDao;
-    private Set<String> recommendedPackages; // 用于存储推荐跳转的包名
+/**
+ * 推荐应用列表
+ * 每次提交的都是从数据库新读取的对象, 提交后不再修改, 列表在后台线程中对比差异,
+ * 只有推荐权重变化时只局部刷新权重文字
+ */
+public class RecommendAppListAdapter extends ListAdapter<RecommendApp, RecommendAppListAdapter.ViewHolder> {
+    private static final Object PAYLOAD_WEIGHT = new Object();
 
+    private static final DiffUtil.ItemCallback<RecommendApp> DIFF_CALLBACK = new DiffUtil.ItemCallback<RecommendApp>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull RecommendApp oldItem, @NonNull RecommendApp newItem) {
+            return Objects.equals(oldItem.getId(), newItem.getId());
+        }
 
-    public RecommendAppListAdapter(Context context) {
-        this.recommendAppDao = new RecommendAppDao(context);
-        loadRecommendedApps(); // 加载添加到推荐跳转中的应用
-    }
+        @Override
+        public boolean areContentsTheSame(@NonNull RecommendApp oldItem, @NonNull RecommendApp newItem) {
+            return oldItem.getWeight() == newItem.getWeight() && isSameApp(oldItem, newItem);
+        }
 
-    private void loadRecommendedApps() {
-        recommendedPackages = new HashSet<>();
-        List<RecommendApp> recommendApps = recommendAppDao.getAllApps();
-        for (RecommendApp app : recommendApps) {
-            recommendedPackages.add(app.getPkgName());
+        @Override
+        public Object getChangePayload(@NonNull RecommendApp oldItem, @NonNull RecommendApp newItem) {
+            return isSameApp(oldItem, newItem) ? PAYLOAD_WEIGHT : null;
         }
+
+        private boolean isSameApp(RecommendApp oldItem, RecommendApp newItem) {
+            return Objects.equals(oldItem.getPkgName(), newItem.getPkgName())
+                    && Objects.equals(oldItem.getAppName(), newItem.getAppName());
+        }
+    };
+
+    private final AppIconLoader iconLoader;
+
+    public RecommendAppListAdapter(Context context) {
+        super(DIFF_CALLBACK);
+        this.iconLoader = AppIconLoader.getInstance(context);
+        setHasStableIds(true);
     }
 
     public void setAppList(List<RecommendApp> apps) {
-        this.appList = apps;
-        notifyDataSetChanged();
+        submitList(apps);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     @NonNull
@@ -50,35 +73,47 @@ public class RecommendAppListAdapter extends RecyclerView.Adapter<RecommendAppLi
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.recommend_app, parent, false);
-        return new ViewHolder(view);
-    }
-
-    @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        RecommendApp recommendApp = appList.get(position);
-        holder.ivIcon.setImageDrawable(recommendApp.getAppIcon());
-        holder.tvName.setText(recommendApp.getAppName());
-        holder.tvWeight.setText("推荐权重:" + recommendApp.getWeight());
-        Bundle args = new Bundle();
-        args.putString("pkgName", recommendApp.getPkgName());
+        ViewHolder holder = new ViewHolder(view);
         // 设置整个项的点击事件（可选）
         holder.itemView.setOnClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            Bundle args = new Bundle();
+            args.putString("pkgName", getItem(position).getPkgName());
             Navigation.findNavController(v).navigate(R.id.recommendAppConfigFragment, args);
         });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty()) {
+            // 只有推荐权重变化
+            bindWeight(holder, getItem(position));
+            return;
+        }
+        onBindViewHolder(holder, position);
     }
 
     @Override
-    public int getItemCount() {
-        return appList.size();
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        RecommendApp recommendApp = getItem(position);
+        iconLoader.load(holder.ivIcon, recommendApp.getPkgName());
+        holder.tvName.setText(recommendApp.getAppName());
+        bindWeight(holder, recommendApp);
     }
 
-    // 刷新监控状态（在数据库更改后调用）
-    public void refreshMonitoredStatus() {
-        loadRecommendedApps();
-//        for (RecommendApp app : appList) {
-//            app.setChecked(recommendedPackages.contains(app.getPackageName()));
-//        }
-        notifyDataSetChanged();
+    private void bindWeight(ViewHolder holder, RecommendApp recommendApp) {
+        holder.tvWeight.setText("推荐权重:" + recommendApp.getWeight());
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        // 行已离开屏幕, 取消还未完成的图标加载
+        iconLoader.cancel(holder.ivIcon);
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -93,4 +128,4 @@ public class RecommendAppListAdapter extends RecyclerView.Adapter<RecommendAppLi
             tvWeight = view.findViewById(R.id.tv_app_weight);
         }
     }
-}
\ No newline at end of file
+}
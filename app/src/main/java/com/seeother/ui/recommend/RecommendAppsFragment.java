@@ -20,7 +20,9 @@ import com.seeother.data.db.RecommendAppDao;
 import com.seeother.data.entity.RecommendApp;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class RecommendAppsFragment extends Fragment {
 
@@ -145,12 +147,16 @@ public class RecommendAppsFragment extends Fragment {
     private void observeData() {
         recommendViewModel.getAppList().observe(getViewLifecycleOwner(), apps -> {
             progressBar.setVisibility(View.GONE);
+            // 一次读取全部推荐应用, 按应用列表的顺序排列
+            Map<String, RecommendApp> recommendApps = new HashMap<>();
+            for (RecommendApp recommendApp : recommendAppDao.getAllApps()) {
+                recommendApps.put(recommendApp.getPkgName(), recommendApp);
+            }
             List<RecommendApp> recommendedAppList = new ArrayList<>();
             
             for (AppInfo app : apps) {
-                RecommendApp recommendApp = recommendAppDao.getAppByPkgName(app.getPackageName());
+                RecommendApp recommendApp = recommendApps.get(app.getPackageName());
                 if (recommendApp != null) {
-                    recommendApp.setAppIcon(app.getAppIcon());
                     recommendApp.setAppName(app.getAppName());
                     recommendedAppList.add(recommendApp);
                 }
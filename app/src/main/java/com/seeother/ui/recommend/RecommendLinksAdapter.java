@@ -8,18 +8,36 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.seeother.R;
+import com.seeother.utils.StableIds;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class RecommendLinksAdapter extends RecyclerView.Adapter<RecommendLinksAdapter.LinkViewHolder> {
+/**
+ * 推荐链接列表
+ * 链接不会重复, 以链接本身作为行的标识, 编辑后的链接视为新的一行
+ */
+public class RecommendLinksAdapter extends ListAdapter<String, RecommendLinksAdapter.LinkViewHolder> {
+    private static final DiffUtil.ItemCallback<String> DIFF_CALLBACK = new DiffUtil.ItemCallback<String>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull String oldItem, @NonNull String newItem) {
+            return oldItem.equals(newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull String oldItem, @NonNull String newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
 
     private final Context context;
-    private List<String> links;
     private final OnLinkActionListener listener;
+    private final StableIds stableIds = new StableIds();
 
     public interface OnLinkActionListener {
         void onEditLink(String link);
@@ -27,14 +45,19 @@ public class RecommendLinksAdapter extends RecyclerView.Adapter<RecommendLinksAd
     }
 
     public RecommendLinksAdapter(Context context, OnLinkActionListener listener) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.links = new ArrayList<>();
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     public void setLinks(List<String> links) {
-        this.links = links != null ? new ArrayList<>(links) : new ArrayList<>();
-        notifyDataSetChanged();
+        submitList(links != null ? new ArrayList<>(links) : new ArrayList<>());
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idOf(getItem(position));
     }
 
     @NonNull
@@ -46,15 +69,10 @@ public class RecommendLinksAdapter extends RecyclerView.Adapter<RecommendLinksAd
 
     @Override
     public void onBindViewHolder(@NonNull LinkViewHolder holder, int position) {
-        String link = links.get(position);
+        String link = getItem(position);
         holder.bind(link);
     }
 
-    @Override
-    public int getItemCount() {
-        return links.size();
-    }
-
     class LinkViewHolder extends RecyclerView.ViewHolder {
         private final TextView tvLink;
         private final TextView tvLinkType;
@@ -69,14 +87,14 @@ public class RecommendLinksAdapter extends RecyclerView.Adapter<RecommendLinksAd
             btnEdit.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && listener != null) {
-                    listener.onEditLink(links.get(position));
+                    listener.onEditLink(getItem(position));
                 }
             });
 
             btnDelete.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && listener != null) {
-                    listener.onDeleteLink(links.get(position));
+                    listener.onDeleteLink(getItem(position));
                 }
             });
         }
@@ -1,15 +1,14 @@
 package com.seeother.ui.recommend;
 
 import android.content.Context;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
-import android.graphics.drawable.Drawable;
 
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
 import com.seeother.common.AppInfo;
+import com.seeother.manager.InstalledAppCatalog;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -17,7 +16,9 @@ import java.util.List;
 public class RecommendViewModel extends ViewModel {
 
     private final MutableLiveData<String> mText;
-    private final MutableLiveData<List<AppInfo>> appList = new MutableLiveData<>();
+    private final MediatorLiveData<List<AppInfo>> appList = new MediatorLiveData<>();
+    private boolean sourceAttached = false;
+
     public RecommendViewModel() {
         mText = new MutableLiveData<>();
         mText.setValue("This is dashboard fragment");
@@ -31,33 +32,35 @@ public class RecommendViewModel extends ViewModel {
         return appList;
     }
 
+    /**
+     * 订阅共享的应用目录, 目录已加载时立即得到结果, 应用安装/卸载后自动更新
+     */
     public void loadInstalledApps(Context context) {
-        new Thread(() -> {
-            PackageManager pm = context.getPackageManager();
-            List<ApplicationInfo> packages = pm.getInstalledApplications(PackageManager.GET_META_DATA);
+        if (sourceAttached) return;
+        sourceAttached = true;
+        appList.addSource(InstalledAppCatalog.getInstance(context).getApps(), entries -> {
+            if (entries == null) return;
+            // 目录已按应用名称排序
             List<AppInfo> apps = new ArrayList<>();
-
-            for (ApplicationInfo packageInfo : packages) {
+            for (InstalledAppCatalog.Entry entry : entries) {
                 // 只获取有启动器图标的应用(过滤系统应用)
-                if (pm.getLaunchIntentForPackage(packageInfo.packageName) != null) {
-                    String appName = pm.getApplicationLabel(packageInfo).toString();
-                    Drawable appIcon = pm.getApplicationIcon(packageInfo);
-                    apps.add(new AppInfo(packageInfo.packageName, appName, appIcon));
+                if (entry.launchable) {
+                    apps.add(new AppInfo(entry.packageName, entry.label));
                 }
             }
-
-            // 按应用名称排序
-            apps.sort((a1, a2) ->
-                    a1.getAppName().compareToIgnoreCase(a2.getAppName()));
-
-            appList.postValue(apps);
-        }).start();
+            appList.setValue(apps);
+        });
     }
 
     /**
      * 刷新应用列表数据
+     * 应用目录由广播保持最新, 这里只重新发布当前列表, 让页面重新读取推荐应用配置
      */
     public void refreshApps(Context context) {
         loadInstalledApps(context);
+        List<AppInfo> current = appList.getValue();
+        if (current != null) {
+            appList.setValue(current);
+        }
     }
-}
\ No newline at end of file
+}
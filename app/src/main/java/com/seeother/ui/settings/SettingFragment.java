@@ -512,7 +512,7 @@ public class SettingFragment extends PreferenceFragmentCompat
     // 更新暂停模式状态显示
     private void updatePauseStatus() {
         if (pauseModeStatusPref != null) {
-            SettingsManager settingsManager = new SettingsManager(requireContext());
+            SettingsManager settingsManager = SettingsManager.getInstance(requireContext());
             boolean isPaused = settingsManager.getPauseEnabled();
             
             if (isPaused) {
@@ -36,7 +36,7 @@ public class UnshakableTimeDialog {
     
     public UnshakableTimeDialog(Context context) {
         this.context = context;
-        this.settingsManager = new SettingsManager(context);
+        this.settingsManager = SettingsManager.getInstance(context);
         this.timePeriods = new ArrayList<>();
         loadTimePeriods();
     }
@@ -0,0 +1,266 @@
+package com.seeother.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.pm.PackageInfoCompat;
+
+import com.seeother.R;
+import com.seeother.manager.InstalledAppCatalog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 应用图标加载器
+ * 列表只为可见的行加载图标: 在后台线程中把图标绘制为 ImageView 大小的位图, ViewHolder 被回收时取消加载。
+ * 位图先缓存在按字节限制大小的内存缓存中, 同时写入磁盘缓存, 磁盘缓存以包名+版本号+更新时间为键,
+ * 应用更新后自动失效。应用目录已加载时, 冷启动打开列表直接从磁盘读取, 不需要调用 PackageManager。
+ */
+public class AppIconLoader {
+    private static final String TAG = "AppIconLoader";
+    private static final String DISK_CACHE_DIR = "app_icons";
+    private static final int DEFAULT_SIZE_DP = 48;
+    private static final int MAX_MEMORY_CACHE_BYTES = 16 * 1024 * 1024;
+    private static AppIconLoader instance;
+
+    private final PackageManager packageManager;
+    private final InstalledAppCatalog appCatalog;
+    private final File diskCacheDir;
+    private final int defaultSizePx;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private AppIconLoader(Context context) {
+        Context appContext = context.getApplicationContext();
+        packageManager = appContext.getPackageManager();
+        appCatalog = InstalledAppCatalog.getInstance(appContext);
+        diskCacheDir = new File(appContext.getCacheDir(), DISK_CACHE_DIR);
+        defaultSizePx = Math.round(DEFAULT_SIZE_DP * appContext.getResources().getDisplayMetrics().density);
+
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, MAX_MEMORY_CACHE_BYTES);
+        memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+        appContext.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_BACKGROUND) {
+                    memoryCache.evictAll();
+                } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+                    memoryCache.trimToSize(memoryCache.maxSize() / 2);
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                memoryCache.evictAll();
+            }
+        });
+    }
+
+    public static synchronized AppIconLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppIconLoader(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 为 ImageView 加载应用图标, 取代该 ImageView 上还未完成的加载。只在主线程调用
+     */
+    public void load(ImageView view, String packageName) {
+        int size = targetSize(view);
+        String key = packageName + "@" + size;
+        Request current = (Request) view.getTag(R.id.tag_icon_request);
+        if (current != null) {
+            if (current.key.equals(key)) {
+                return; // 同一个图标正在加载
+            }
+            current.cancel();
+            view.setTag(R.id.tag_icon_request, null);
+        }
+
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+        view.setImageDrawable(null);
+        Request request = new Request(view, packageName, key, size);
+        view.setTag(R.id.tag_icon_request, request);
+        request.future = executor.submit(request);
+    }
+
+    /**
+     * 取消 ImageView 上还未完成的加载, 在 ViewHolder 被回收时调用
+     */
+    public void cancel(ImageView view) {
+        Request current = (Request) view.getTag(R.id.tag_icon_request);
+        if (current != null) {
+            current.cancel();
+            view.setTag(R.id.tag_icon_request, null);
+        }
+    }
+
+    private int targetSize(ImageView view) {
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (params != null && params.width > 0) {
+            return params.width;
+        }
+        if (view.getWidth() > 0) {
+            return view.getWidth();
+        }
+        return defaultSizePx;
+    }
+
+    private Bitmap loadBitmap(String packageName, int size) {
+        String fileName = diskCacheFileName(packageName, size);
+        File file = fileName != null ? new File(diskCacheDir, fileName) : null;
+        if (file != null && file.exists()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+
+        Drawable drawable;
+        try {
+            drawable = packageManager.getApplicationIcon(packageName);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, size, size);
+        drawable.draw(canvas);
+        if (file != null) {
+            writeDiskCache(packageName, file, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 磁盘缓存文件名: 包名-版本号-更新时间-尺寸.png, 包名中不会出现 '-'
+     *
+     * @return 应用不存在时返回 null
+     */
+    private String diskCacheFileName(String packageName, int size) {
+        long versionCode;
+        long lastUpdateTime;
+        InstalledAppCatalog.Entry entry = appCatalog.getEntry(packageName);
+        if (entry != null) {
+            versionCode = entry.versionCode;
+            lastUpdateTime = entry.lastUpdateTime;
+        } else {
+            try {
+                PackageInfo info = packageManager.getPackageInfo(packageName, 0);
+                versionCode = PackageInfoCompat.getLongVersionCode(info);
+                lastUpdateTime = info.lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                return null;
+            }
+        }
+        return packageName + "-" + versionCode + "-" + lastUpdateTime + "-" + size + ".png";
+    }
+
+    private void writeDiskCache(String packageName, File file, Bitmap bitmap) {
+        if (!diskCacheDir.exists() && !diskCacheDir.mkdirs()) {
+            return;
+        }
+        // 删除同一应用旧版本的图标
+        String versionPrefix = file.getName().substring(0, file.getName().lastIndexOf('-') + 1);
+        File[] files = diskCacheDir.listFiles((dir, name) ->
+                name.startsWith(packageName + "-") && !name.startsWith(versionPrefix));
+        if (files != null) {
+            for (File old : files) {
+                old.delete();
+            }
+        }
+
+        // 多个 ImageView 可能同时加载同一个图标, 先写入各自的临时文件再重命名
+        File temp = null;
+        try {
+            temp = File.createTempFile("tmp-" + packageName, ".tmp", diskCacheDir);
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "写入图标缓存失败: " + packageName, e);
+            if (temp != null) temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    private class Request implements Runnable {
+        final ImageView view;
+        final String packageName;
+        final String key;
+        final int size;
+        volatile boolean cancelled = false;
+        Future<?> future;
+
+        Request(ImageView view, String packageName, String key, int size) {
+            this.view = view;
+            this.packageName = packageName;
+            this.key = key;
+            this.size = size;
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            Bitmap bitmap = loadBitmap(packageName, size);
+            if (bitmap != null) {
+                memoryCache.put(key, bitmap);
+            }
+            mainHandler.post(() -> {
+                if (cancelled || view.getTag(R.id.tag_icon_request) != this) {
+                    return;
+                }
+                view.setTag(R.id.tag_icon_request, null);
+                if (bitmap != null) {
+                    view.setImageBitmap(bitmap);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.seeother.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ViewTreeObserver;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * 列表首行显示耗时
+ * 从页面打开到列表第一次绘制出行的时间, 用于对比应用选择列表冷启动的速度。
+ * 日志中注明应用目录来自磁盘索引还是全量加载; 删除 files/app_catalog.bin 后冷启动打开列表
+ * 即为没有索引时的耗时, 两种情况可以用同一个版本对比
+ */
+public final class FirstRowTimer {
+    private static final String TAG = "FirstRowTimer";
+
+    private FirstRowTimer() {
+    }
+
+    /**
+     * 在列表下一次绘制出行时记录耗时, 只记录一次
+     *
+     * @param startNanos 页面打开时间(SystemClock.elapsedRealtimeNanos)
+     * @param name       日志中显示的页面名称
+     */
+    public static void watch(RecyclerView recyclerView, long startNanos, String name) {
+        ViewTreeObserver observer = recyclerView.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (recyclerView.getChildCount() == 0) {
+                    return true; // 还没有布局出行
+                }
+                recyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                Log.d(TAG, name + " 首行显示耗时 "
+                        + (SystemClock.elapsedRealtimeNanos() - startNanos) / 1_000_000 + "ms");
+                return true;
+            }
+        });
+    }
+}
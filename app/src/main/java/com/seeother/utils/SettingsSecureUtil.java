@@ -9,6 +9,7 @@ import android.util.Log;
 import androidx.preference.PreferenceManager;
 
 import com.seeother.R;
+import com.seeother.manager.ScheduleManager;
 
 import java.lang.ref.WeakReference;
 import java.time.LocalTime;
@@ -22,6 +23,9 @@ public class SettingsSecureUtil {
 
     private final String serviceName = "com.seeother/.service.MyAccessibilityService";
 
+    public static final String KEY_DALTONIZER_ENABLED = "accessibility_display_daltonizer_enabled";
+    public static final String KEY_HIGH_TEXT_CONTRAST_ENABLED = "high_text_contrast_enabled";
+
     private SettingsSecureUtil(ContentResolver contentResolver, Context context) {
         this.contentResolver = contentResolver;
         // 使用WeakReference避免内存泄漏，并使用ApplicationContext
@@ -110,57 +114,75 @@ public class SettingsSecureUtil {
     }
 
     // 启用颜色空间
-    public void enableColorSpace() {
+    public boolean enableColorSpace() {
         try {
-            Settings.Secure.putInt(contentResolver, "accessibility_display_daltonizer_enabled", 1);
+            return Settings.Secure.putInt(contentResolver, KEY_DALTONIZER_ENABLED, 1);
         } catch (Exception e) {
             Log.e(TAG, "启用颜色空间失败", e);
             Context context = getContext();
             if (context != null) {
                 GlobalToast.showShort(context, "请授予ADB权限");
             }
+            return false;
         }
     }
 
     // 禁用颜色空间
-    public void disableColorSpace() {
+    public boolean disableColorSpace() {
         try {
-            Settings.Secure.putInt(contentResolver, "accessibility_display_daltonizer_enabled", 0);
+            return Settings.Secure.putInt(contentResolver, KEY_DALTONIZER_ENABLED, 0);
         } catch (Exception e) {
             Log.e(TAG, "禁用颜色空间失败", e);
             Context context = getContext();
             if (context != null) {
                 GlobalToast.showShort(context, "请授予ADB权限");
             }
+            return false;
         }
     }
 
     // 启用高对比度文字
-    public void enableHighContrastText() {
+    public boolean enableHighContrastText() {
         try {
-            Settings.Secure.putInt(contentResolver, "high_text_contrast_enabled", 1);
+            return Settings.Secure.putInt(contentResolver, KEY_HIGH_TEXT_CONTRAST_ENABLED, 1);
         } catch (Exception e) {
             Log.e(TAG, "启用高对比度文字失败", e);
             Context context = getContext();
             if (context != null) {
                 GlobalToast.showShort(context, "请授予ADB权限");
             }
+            return false;
         }
     }
 
     // 禁用高对比度文字
-    public void disableHighContrastText() {
+    public boolean disableHighContrastText() {
         try {
-            Settings.Secure.putInt(contentResolver, "high_text_contrast_enabled", 0);
+            return Settings.Secure.putInt(contentResolver, KEY_HIGH_TEXT_CONTRAST_ENABLED, 0);
         } catch (Exception e) {
             Log.e(TAG, "禁用高对比度文字失败", e);
             Context context = getContext();
             if (context != null) {
                 GlobalToast.showShort(context, "请授予ADB权限");
             }
+            return false;
         }
     }
 
+    /**
+     * 读取颜色空间(灰度)当前是否开启
+     */
+    public boolean isColorSpaceEnabled() {
+        return Settings.Secure.getInt(contentResolver, KEY_DALTONIZER_ENABLED, 0) == 1;
+    }
+
+    /**
+     * 读取高对比度文字当前是否开启
+     */
+    public boolean isHighContrastTextEnabled() {
+        return Settings.Secure.getInt(contentResolver, KEY_HIGH_TEXT_CONTRAST_ENABLED, 0) == 1;
+    }
+
     /**
      * 检查当前时间是否在勿扰模式时段内
      *
@@ -171,50 +193,7 @@ public class SettingsSecureUtil {
         if (context == null) {
             return false;
         }
-
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
-
-        // 获取当前时间和星期
-        Calendar calendar = Calendar.getInstance();
-        int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
-        int currentHour = calendar.get(Calendar.HOUR_OF_DAY);
-        int currentMinute = calendar.get(Calendar.MINUTE);
-        int currentTimeInMinutes = currentHour * 60 + currentMinute;
-
-        // 转换为周一到周日的索引 (Calendar.SUNDAY = 1, Calendar.MONDAY = 2, ...)
-        String[] weekdays = {"", "sunday", "monday", "tuesday", "wednesday", "thursday", "friday", "saturday"};
-        String todayKey = weekdays[dayOfWeek];
-
-        // 检查今天是否启用勿扰模式
-        boolean isEnabled = preferences.getBoolean("dnd_" + todayKey + "_enabled", false);
-        if (!isEnabled) {
-            return false;
-        }
-
-        // 获取开始和结束时间
-        String startTimeStr = preferences.getString("dnd_" + todayKey + "_start", "22:00");
-        String endTimeStr = preferences.getString("dnd_" + todayKey + "_end", "08:00");
-
-        try {
-            // 解析时间字符串
-            String[] startParts = startTimeStr.split(":");
-            String[] endParts = endTimeStr.split(":");
-
-            int startTimeInMinutes = Integer.parseInt(startParts[0]) * 60 + Integer.parseInt(startParts[1]);
-            int endTimeInMinutes = Integer.parseInt(endParts[0]) * 60 + Integer.parseInt(endParts[1]);
-
-            // 处理跨天的情况
-            if (startTimeInMinutes > endTimeInMinutes) {
-                // 跨天情况：如 22:00 - 08:00
-                return currentTimeInMinutes >= startTimeInMinutes || currentTimeInMinutes <= endTimeInMinutes;
-            } else {
-                // 同一天：如 08:00 - 22:00
-                return currentTimeInMinutes >= startTimeInMinutes && currentTimeInMinutes <= endTimeInMinutes;
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "解析勿扰时间失败", e);
-            return false;
-        }
+        return ScheduleManager.getInstance(context).isInDoNotDisturbTime();
     }
 
     /**
@@ -0,0 +1,23 @@
+package com.seeother.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 为没有数据库主键的列表行分配稳定的 id
+ * 同一个键在列表的整个生命周期内得到同一个 id, 不同的键一定得到不同的 id(不使用 hashCode, 避免冲突)。
+ * 只在主线程调用
+ */
+public final class StableIds {
+    private final Map<String, Long> ids = new HashMap<>();
+    private long nextId = 1;
+
+    public long idOf(String key) {
+        Long id = ids.get(key);
+        if (id == null) {
+            id = nextId++;
+            ids.put(key, id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,34 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+// 纯 JVM 的守卫核心逻辑, 不依赖 Android, 可以直接在桌面 JVM 上运行基准测试
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    jmh(libs.jmh.core)
+    jmh(libs.jmh.generator.annprocess)
+}
+
+// 运行: ./gradlew :guard-core:jmh
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+}
+
+// 回放事件轨迹: ./gradlew :guard-core:replayTrace --args="rules.tsv trace-xxx.bin"
+tasks.register<JavaExec>("replayTrace") {
+    group = "application"
+    description = "在 JVM 上回放无障碍事件轨迹"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.seeother.guard.trace.TraceReplay")
+}
@@ -0,0 +1,21 @@
+package com.seeother.guard;
+
+import java.time.LocalTime;
+
+/**
+ * 固定时钟, 消除基准测试中读取系统时间的开销和抖动
+ */
+final class FixedClock implements GuardClock {
+    private static final LocalTime NOON = LocalTime.of(12, 0);
+    private long nanos;
+
+    @Override
+    public long nanoTime() {
+        return nanos += 1000; // 每次读取前进1微秒, 保证耗时预算仍可生效
+    }
+
+    @Override
+    public LocalTime localTime() {
+        return NOON;
+    }
+}
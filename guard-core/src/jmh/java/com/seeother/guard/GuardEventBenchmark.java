@@ -0,0 +1,66 @@
+package com.seeother.guard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个事件的端到端开销: 规则组匹配 + 节点树遍历 + 作者计数决策
+ * 第一个规则的 ViewId 不存在, 搜索会一直进行到节点树遍历完(1k)或节点预算用完(10k),
+ * 再使用特殊符号规则的结果。作者节点在两种大小的树中位置相同且在预算之内,
+ * 两种情况测量的都是找到作者的完整处理
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GuardEventBenchmark {
+    private static final String PACKAGE_NAME = "com.example.video";
+    // 作者节点挂在前400个节点中, 可见优先时在2000个节点的预算内就能访问到
+    private static final int TARGET_BEFORE = 400;
+
+    @Param({"1000", "10000"})
+    public int nodeCount;
+
+    private SyntheticNode root;
+    private GuardRuleMatcher<SyntheticTrees.Rule> matcher;
+    private RuleGroupSearch ruleGroupSearch;
+    private NodeSearchEngine.Budget budget;
+    private GuardDecisionEngine decisionEngine;
+
+    @Setup
+    public void setUp() {
+        FixedClock clock = new FixedClock();
+        root = SyntheticTrees.generate(nodeCount, 6, "@author", 42, TARGET_BEFORE);
+        matcher = new GuardRuleMatcher<>(Arrays.asList(
+                new SyntheticTrees.Rule("com.example:id/missing", false, ""),
+                new SyntheticTrees.Rule("", true, "@")), clock);
+        ruleGroupSearch = new RuleGroupSearch(new NodeSearchEngine(clock), clock);
+        budget = new NodeSearchEngine.Budget(2000, 20, 30_000_000L);
+        decisionEngine = new GuardDecisionEngine(clock, GuardDecisionEngine.NO_UNSHAKABLE);
+
+        String authorName = ruleGroupSearch.search(matcher, 0, root,
+                NodeSearchEngine.Order.VISIBLE_FIRST, budget, null);
+        NodeSearchEngine.StopReason stopReason = ruleGroupSearch.getLastResult().stopReason;
+        NodeSearchEngine.StopReason expected = nodeCount > budget.maxNodes
+                ? NodeSearchEngine.StopReason.NODE_BUDGET : NodeSearchEngine.StopReason.EXHAUSTED;
+        if (!"@author".equals(authorName) || stopReason != expected) {
+            throw new IllegalStateException("作者节点不在搜索预算内: nodeCount=" + nodeCount
+                    + ", author=" + authorName + ", stopReason=" + stopReason);
+        }
+    }
+
+    @Benchmark
+    public GuardDecisionEngine.Decision processEvent() {
+        String authorName = ruleGroupSearch.search(matcher, 0, root,
+                NodeSearchEngine.Order.VISIBLE_FIRST, budget, null);
+        return decisionEngine.onAuthor(PACKAGE_NAME, authorName, 5, false);
+    }
+}
@@ -0,0 +1,90 @@
+package com.seeother.guard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规则匹配: 编译后的规则组匹配器 vs 逐条规则检查
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RuleMatchBenchmark {
+    private static final int NODE_COUNT = 256;
+
+    @Param({"1", "8", "32"})
+    public int ruleCount;
+
+    private List<SyntheticTrees.Rule> rules;
+    private GuardRuleMatcher<SyntheticTrees.Rule> matcher;
+    private NodeView[] nodes;
+    private String[] texts;
+
+    @Setup
+    public void setUp() {
+        rules = new ArrayList<>();
+        for (int i = 0; i < ruleCount; i++) {
+            if (i % 2 == 0) {
+                rules.add(new SyntheticTrees.Rule("", true, "text " + i));
+            } else {
+                rules.add(new SyntheticTrees.Rule("com.example:id/item_" + i, false, ""));
+            }
+        }
+        matcher = new GuardRuleMatcher<>(rules, new FixedClock());
+        texts = new String[ruleCount];
+
+        // 拍平一棵合成树作为待检查的节点
+        SyntheticNode root = SyntheticTrees.generate(NODE_COUNT, 4, null, 42);
+        List<NodeView> flat = new ArrayList<>();
+        flatten(root, flat);
+        nodes = flat.toArray(new NodeView[0]);
+    }
+
+    private static void flatten(SyntheticNode node, List<NodeView> out) {
+        out.add(node);
+        for (SyntheticNode child : node.children) {
+            flatten(child, out);
+        }
+    }
+
+    @Benchmark
+    public long compiledMatcher() {
+        long pending = matcher.getTreeRuleMask();
+        long matched = 0;
+        for (NodeView node : nodes) {
+            matched |= matcher.matchNode(node, pending, texts);
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public long perRuleCheck() {
+        long matched = 0;
+        for (NodeView node : nodes) {
+            CharSequence text = node.getText();
+            String textString = text != null ? text.toString() : null;
+            String viewId = node.getViewIdResourceName();
+            for (int i = 0; i < rules.size(); i++) {
+                SyntheticTrees.Rule rule = rules.get(i);
+                if (rule.hasViewId()) {
+                    if (rule.getViewId().equals(viewId) && textString != null && !textString.isEmpty()) {
+                        matched |= 1L << i;
+                    }
+                } else if (textString != null && textString.contains(rule.getSpecialSymbol())) {
+                    matched |= 1L << i;
+                }
+            }
+        }
+        return matched;
+    }
+}
@@ -0,0 +1,49 @@
+package com.seeother.guard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在1k/10k节点的合成树中搜索包含特殊符号的节点
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SymbolSearchBenchmark {
+
+    @Param({"1000", "10000"})
+    public int nodeCount;
+
+    @Param({"BFS", "DFS", "VISIBLE_FIRST"})
+    public NodeSearchEngine.Order order;
+
+    private SyntheticNode root;
+    private NodeSearchEngine engine;
+    private NodeSearchEngine.Budget budget;
+    private NodeSearchEngine.Matcher matcher;
+
+    @Setup
+    public void setUp() {
+        root = SyntheticTrees.generate(nodeCount, 6, "@author", 42);
+        engine = new NodeSearchEngine(new FixedClock());
+        budget = new NodeSearchEngine.Budget(nodeCount + 16, 64, Long.MAX_VALUE);
+        matcher = node -> {
+            CharSequence text = node.getText();
+            return text != null && text.toString().contains("@") ? text.toString() : null;
+        };
+    }
+
+    @Benchmark
+    public int search() {
+        NodeSearchEngine.Result result = engine.search(root, matcher, order, budget);
+        return result.nodesVisited;
+    }
+}
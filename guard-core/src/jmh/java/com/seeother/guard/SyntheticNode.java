@@ -0,0 +1,57 @@
+package com.seeother.guard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 内存中的合成节点, 用于在 JVM 上模拟无障碍节点树
+ */
+final class SyntheticNode implements NodeView {
+    final List<SyntheticNode> children = new ArrayList<>();
+    final String text;
+    final String viewId;
+    final String className;
+    final int[] bounds;
+
+    SyntheticNode(String text, String viewId, String className, int[] bounds) {
+        this.text = text;
+        this.viewId = viewId;
+        this.className = className;
+        this.bounds = bounds;
+    }
+
+    @Override
+    public int getChildCount() {
+        return children.size();
+    }
+
+    @Override
+    public NodeView getChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public CharSequence getText() {
+        return text;
+    }
+
+    @Override
+    public String getViewIdResourceName() {
+        return viewId;
+    }
+
+    @Override
+    public CharSequence getClassName() {
+        return className;
+    }
+
+    @Override
+    public void getBoundsInScreen(int[] outBounds) {
+        System.arraycopy(bounds, 0, outBounds, 0, 4);
+    }
+
+    @Override
+    public void recycle() {
+        // 合成节点不需要回收
+    }
+}
@@ -0,0 +1,101 @@
+package com.seeother.guard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 合成节点树生成器
+ * 按广度优先生成指定数量的节点, 一半子树位于屏幕外, 模拟列表中预加载的条目
+ */
+final class SyntheticTrees {
+    static final int SCREEN_WIDTH = 1080;
+    static final int SCREEN_HEIGHT = 2400;
+
+    private static final int[] SCREEN = {0, 0, SCREEN_WIDTH, SCREEN_HEIGHT};
+    private static final int[] OFF_SCREEN = {0, SCREEN_HEIGHT, SCREEN_WIDTH, SCREEN_HEIGHT * 2};
+    private static final String[] CLASS_NAMES = {
+            "android.widget.FrameLayout", "android.widget.LinearLayout",
+            "android.widget.TextView", "android.widget.ImageView"
+    };
+
+    private SyntheticTrees() {
+    }
+
+    /**
+     * 生成节点树
+     *
+     * @param nodeCount 节点总数
+     * @param fanout    每个节点最多的子节点数
+     * @param target    目标节点的文本, 放在最后生成的屏幕内节点上; 为null时不放置目标
+     * @param seed      随机种子, 保证每次生成的树相同
+     */
+    static SyntheticNode generate(int nodeCount, int fanout, String target, long seed) {
+        return generate(nodeCount, fanout, target, seed, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 生成节点树, 目标节点放在编号小于 targetBefore 的最后一个屏幕内节点上,
+     * 使不同大小的树中目标的位置相同
+     */
+    static SyntheticNode generate(int nodeCount, int fanout, String target, long seed, int targetBefore) {
+        Random random = new Random(seed);
+        SyntheticNode root = new SyntheticNode(null, "android:id/content", CLASS_NAMES[0], SCREEN);
+        List<SyntheticNode> frontier = new ArrayList<>();
+        frontier.add(root);
+        SyntheticNode lastOnScreen = root;
+        int created = 1;
+        for (int i = 0; created < nodeCount && i < frontier.size(); i++) {
+            SyntheticNode parent = frontier.get(i);
+            int childCount = 1 + random.nextInt(fanout);
+            for (int c = 0; c < childCount && created < nodeCount; c++) {
+                boolean onScreen = parent == root ? c % 2 == 0 : parent.bounds == SCREEN;
+                String className = CLASS_NAMES[random.nextInt(CLASS_NAMES.length)];
+                String text = className.endsWith("TextView") ? "text " + created : null;
+                String viewId = random.nextInt(4) == 0 ? "com.example:id/item_" + (created % 32) : null;
+                SyntheticNode child = new SyntheticNode(text, viewId, className, onScreen ? SCREEN : OFF_SCREEN);
+                parent.children.add(child);
+                frontier.add(child);
+                if (onScreen && created < targetBefore) {
+                    lastOnScreen = child;
+                }
+                created++;
+            }
+        }
+        if (target != null) {
+            SyntheticNode targetNode = new SyntheticNode(target, "com.example:id/author", "android.widget.TextView", SCREEN);
+            lastOnScreen.children.add(targetNode);
+        }
+        return root;
+    }
+
+    /**
+     * 简单规则实现
+     */
+    static final class Rule implements GuardRule {
+        final String viewId;
+        final boolean useSpecialSymbol;
+        final String specialSymbol;
+
+        Rule(String viewId, boolean useSpecialSymbol, String specialSymbol) {
+            this.viewId = viewId;
+            this.useSpecialSymbol = useSpecialSymbol;
+            this.specialSymbol = specialSymbol;
+        }
+
+        @Override
+        public String getViewId() {
+            return viewId;
+        }
+
+        @Override
+        public boolean isUseSpecialSymbol() {
+            return useSpecialSymbol;
+        }
+
+        @Override
+        public String getSpecialSymbol() {
+            return specialSymbol;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.seeother.guard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 推荐应用抽样: 别名表 vs 原来的线性累加扫描(排除当前应用时递归重选)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WeightedSampleBenchmark {
+
+    @Param({"4", "32", "256"})
+    public int appCount;
+
+    private List<String> packages;
+    private int[] weights;
+    private WeightedAliasSampler<String> sampler;
+    private String excluded;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        Random setupRandom = new Random(42);
+        packages = new ArrayList<>();
+        weights = new int[appCount];
+        for (int i = 0; i < appCount; i++) {
+            packages.add("com.example.app" + i);
+            weights[i] = 1 + setupRandom.nextInt(10);
+        }
+        // 排除权重最大的应用, 让拒绝更频繁
+        int heaviest = 0;
+        for (int i = 1; i < appCount; i++) {
+            if (weights[i] > weights[heaviest]) heaviest = i;
+        }
+        excluded = packages.get(heaviest);
+        sampler = WeightedAliasSampler.build(packages, weights);
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public String aliasSample() {
+        return sampler.sample(random, excluded);
+    }
+
+    @Benchmark
+    public String linearScan() {
+        return linearScan(packages, weights, excluded);
+    }
+
+    /**
+     * 原实现: 每次重新累加总权重, 新建 Random, 选中当前应用时递归
+     */
+    private static String linearScan(List<String> packages, int[] weights, String excluded) {
+        int totalWeight = 0;
+        for (int weight : weights) {
+            totalWeight += weight;
+        }
+        int randomWeight = new Random().nextInt(totalWeight);
+        int currentWeight = 0;
+        for (int i = 0; i < packages.size(); i++) {
+            currentWeight += weights[i];
+            if (randomWeight < currentWeight) {
+                String pkg = packages.get(i);
+                if (pkg.equals(excluded) && packages.size() > 1) {
+                    return linearScan(packages, weights, excluded);
+                }
+                return pkg;
+            }
+        }
+        return null;
+    }
+}
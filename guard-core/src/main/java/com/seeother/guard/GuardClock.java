@@ -0,0 +1,34 @@
+package com.seeother.guard;
+
+import java.time.LocalTime;
+
+/**
+ * 守卫核心使用的时钟, 基准测试中可以替换为固定时钟
+ */
+public interface GuardClock {
+
+    /**
+     * 系统时钟
+     */
+    GuardClock SYSTEM = new GuardClock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public LocalTime localTime() {
+            return LocalTime.now();
+        }
+    };
+
+    /**
+     * 单调时间, 用于搜索耗时预算
+     */
+    long nanoTime();
+
+    /**
+     * 当前时间, 没有作者信息的规则用它作为标识
+     */
+    LocalTime localTime();
+}
@@ -0,0 +1,138 @@
+package com.seeother.guard;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 守卫决策
+ * 按应用统计浏览过的作者数量, 达到阈值或处于雷打不动时间段时触发守卫。
+ * 雷打不动时间段按注入的时钟和时间表判断, 切换应用时清空计数。线程安全。
+ */
+public final class GuardDecisionEngine {
+
+    /**
+     * 处理结果
+     */
+    public enum Decision {
+        /**
+         * 没有作者信息, 不计数
+         */
+        IGNORED,
+        /**
+         * 已计数, 未达到阈值
+         */
+        COUNTED,
+        /**
+         * 已计数并达到阈值, 计数已清空
+         */
+        THRESHOLD_REACHED,
+        /**
+         * 处于雷打不动时间段, 不计数直接触发
+         */
+        UNSHAKABLE
+    }
+
+    /**
+     * 雷打不动时间表
+     */
+    public interface UnshakableSchedule {
+        /**
+         * 本地时间是否在雷打不动时间段内
+         */
+        boolean contains(LocalTime time);
+    }
+
+    /**
+     * 没有雷打不动时间段
+     */
+    public static final UnshakableSchedule NO_UNSHAKABLE = time -> false;
+
+    private final GuardClock clock;
+    private final UnshakableSchedule unshakableSchedule;
+    private final Set<String> authorSet = new HashSet<>();
+    private String currentPackageName = "";
+
+    public GuardDecisionEngine() {
+        this(GuardClock.SYSTEM, NO_UNSHAKABLE);
+    }
+
+    public GuardDecisionEngine(GuardClock clock, UnshakableSchedule unshakableSchedule) {
+        this.clock = clock;
+        this.unshakableSchedule = unshakableSchedule;
+    }
+
+    /**
+     * 切换当前处理的包名
+     *
+     * @return 包名发生变化并清空了计数时返回true
+     */
+    public synchronized boolean switchPackage(String packageName) {
+        if (packageName == null || packageName.equals(currentPackageName)) {
+            return false;
+        }
+        currentPackageName = packageName;
+        authorSet.clear();
+        return true;
+    }
+
+    /**
+     * 记录一次作者
+     *
+     * @param threshold 触发守卫需要的作者数量
+     * @param paused    是否暂停守卫(暂停时仍计数, 但不触发)
+     */
+    public synchronized Decision onAuthor(String packageName, String authorName, int threshold, boolean paused) {
+        if (authorName == null || authorName.isEmpty()) {
+            return Decision.IGNORED;
+        }
+        switchPackage(packageName);
+        if (!paused && unshakableSchedule.contains(clock.localTime())) {
+            return Decision.UNSHAKABLE;
+        }
+        authorSet.add(authorName);
+        if (authorSet.size() >= threshold && !paused) {
+            authorSet.clear(); // 清空集合，重新开始计数
+            return Decision.THRESHOLD_REACHED;
+        }
+        return Decision.COUNTED;
+    }
+
+    public synchronized int getAuthorCount() {
+        return authorSet.size();
+    }
+
+    public synchronized String getCurrentPackageName() {
+        return currentPackageName;
+    }
+
+    /**
+     * 导出当前应用已计数的作者, 用于保存状态
+     */
+    public synchronized List<String> getAuthors() {
+        return new ArrayList<>(authorSet);
+    }
+
+    /**
+     * 恢复之前保存的状态, 只在还没有处理过任何应用时生效
+     *
+     * @return 是否已恢复
+     */
+    public synchronized boolean restore(String packageName, Collection<String> authors) {
+        if (packageName == null || !currentPackageName.isEmpty()) {
+            return false;
+        }
+        currentPackageName = packageName;
+        authorSet.clear();
+        authorSet.addAll(authors);
+        return true;
+    }
+
+    public synchronized void reset() {
+        authorSet.clear();
+        currentPackageName = "";
+    }
+}
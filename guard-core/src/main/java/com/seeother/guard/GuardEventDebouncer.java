@@ -0,0 +1,171 @@
+package com.seeother.guard;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 守卫事件合并器
+ * 按(包名, Activity)把一段时间内的滚动/内容变化事件合并为一次尾沿处理,
+ * 窗口长度取自 MonitoredApp.getBroadcastInterval()。
+ * 应用中由 Handler 定时, 轨迹回放中按轨迹时间定时。所有方法都必须在定时回调所在的线程中调用。
+ */
+public class GuardEventDebouncer {
+    // 与 android.view.accessibility.AccessibilityEvent 中的取值一致
+    public static final int TYPE_WINDOW_CONTENT_CHANGED = 2048;
+    public static final int TYPE_VIEW_SCROLLED = 4096;
+
+    /**
+     * 定时器
+     */
+    public interface Scheduler {
+        void postDelayed(Runnable task, long delayMillis);
+
+        void removeCallbacks(Runnable task);
+    }
+
+    /**
+     * 获取包名对应的合并窗口(毫秒), 返回负数表示该应用不需要守卫, 直接丢弃事件
+     */
+    public interface IntervalProvider {
+        long getIntervalMillis(String packageName);
+    }
+
+    /**
+     * 窗口结束时的回调, 每种出现过的事件类型回调一次
+     */
+    public interface Callback {
+        void onSettled(int eventType, String packageName, String activityName);
+    }
+
+    private static final int MASK_SCROLLED = 1;
+    private static final int MASK_CONTENT_CHANGED = 1 << 1;
+
+    /**
+     * 一个正在等待的合并窗口
+     */
+    private final class Window implements Runnable {
+        final String packageName;
+        final String activityName;
+        int eventMask;
+        int eventCount;
+
+        Window(String packageName, String activityName) {
+            this.packageName = packageName;
+            this.activityName = activityName;
+        }
+
+        @Override
+        public void run() {
+            Map<String, Window> activityWindows = windows.get(packageName);
+            if (activityWindows != null) {
+                activityWindows.remove(activityName);
+                if (activityWindows.isEmpty()) {
+                    windows.remove(packageName);
+                }
+            }
+            if ((eventMask & MASK_SCROLLED) != 0) {
+                evaluatedCount++;
+                callback.onSettled(TYPE_VIEW_SCROLLED, packageName, activityName);
+            }
+            if ((eventMask & MASK_CONTENT_CHANGED) != 0) {
+                evaluatedCount++;
+                callback.onSettled(TYPE_WINDOW_CONTENT_CHANGED, packageName, activityName);
+            }
+        }
+    }
+
+    private final Scheduler scheduler;
+    private final IntervalProvider intervalProvider;
+    private final Callback callback;
+    // 包名 -> Activity -> 窗口
+    private final Map<String, Map<String, Window>> windows = new HashMap<>();
+
+    // 统计信息
+    private long submittedCount = 0;
+    private long ignoredCount = 0;
+    private long evaluatedCount = 0;
+
+    public GuardEventDebouncer(Scheduler scheduler, IntervalProvider intervalProvider, Callback callback) {
+        this.scheduler = scheduler;
+        this.intervalProvider = intervalProvider;
+        this.callback = callback;
+    }
+
+    /**
+     * 提交一个事件, 如果该(包名, Activity)已有窗口则直接合并
+     */
+    public void submit(int eventType, String packageName, String activityName) {
+        int mask;
+        if (eventType == TYPE_VIEW_SCROLLED) {
+            mask = MASK_SCROLLED;
+        } else if (eventType == TYPE_WINDOW_CONTENT_CHANGED) {
+            mask = MASK_CONTENT_CHANGED;
+        } else {
+            return;
+        }
+        if (packageName == null) return;
+        String activityKey = activityName != null ? activityName : "";
+        submittedCount++;
+
+        Map<String, Window> activityWindows = windows.get(packageName);
+        Window window = activityWindows != null ? activityWindows.get(activityKey) : null;
+        if (window != null) {
+            window.eventMask |= mask;
+            window.eventCount++;
+            return;
+        }
+
+        // 只在打开新窗口时查询一次间隔
+        long interval = intervalProvider.getIntervalMillis(packageName);
+        if (interval < 0) {
+            ignoredCount++;
+            return;
+        }
+
+        window = new Window(packageName, activityKey);
+        window.eventMask = mask;
+        window.eventCount = 1;
+        if (activityWindows == null) {
+            activityWindows = new HashMap<>();
+            windows.put(packageName, activityWindows);
+        }
+        activityWindows.put(activityKey, window);
+        scheduler.postDelayed(window, interval);
+    }
+
+    /**
+     * 取消除指定包名以外的所有窗口(前台应用切换时调用, 避免对新窗口的节点树做旧应用的判断)
+     */
+    public void cancelOthers(String packageName) {
+        Iterator<Map.Entry<String, Map<String, Window>>> iterator = windows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Map<String, Window>> entry = iterator.next();
+            if (entry.getKey().equals(packageName)) continue;
+            for (Window window : entry.getValue().values()) {
+                scheduler.removeCallbacks(window);
+            }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 取消所有等待中的窗口
+     */
+    public void cancelAll() {
+        cancelOthers(null);
+    }
+
+    // 统计信息
+    public long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    public long getIgnoredCount() {
+        return ignoredCount;
+    }
+
+    public long getEvaluatedCount() {
+        return evaluatedCount;
+    }
+}
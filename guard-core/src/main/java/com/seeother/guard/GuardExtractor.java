@@ -0,0 +1,213 @@
+package com.seeother.guard;
+
+import java.util.List;
+
+/**
+ * 作者提取
+ * 按规则顺序提取作者名称, 返回第一个命中规则的结果:
+ * ViewId 规则直接按 ViewId 查找, 特殊符号规则先探测节点路径缓存;
+ * 第一个缓存未命中的特殊符号规则及其后的所有 ViewId/特殊符号规则合并为一次节点树遍历。
+ * 应用和轨迹回放使用同一个实现。实例不是线程安全的。
+ */
+public final class GuardExtractor<R extends GuardRule> {
+
+    /**
+     * 规则在节点路径缓存中的标识
+     */
+    public interface RuleKey<R> {
+        int of(R rule);
+    }
+
+    private final NodeSearchEngine engine;
+    private final RuleGroupSearch ruleGroupSearch;
+    private final GuardClock clock;
+    private final NodePathCache pathCache;
+    private final RuleKey<R> ruleKey;
+    private final NodeSearchEngine.Budget budget;
+    private final RuleGroupSearch.MatchListener pathListener = this::rememberSymbolPath;
+
+    // 当前提取的状态, 避免每次提取创建闭包
+    private GuardRuleMatcher<R> group;
+    private String packageName;
+    private String activityName;
+    private String[] probeTexts = new String[8];
+
+    // 上一次提取的开销
+    private int ipcCount;
+    private boolean symbolExtracted;
+    private NodeSearchEngine.Result searchResult;
+
+    public GuardExtractor(NodeSearchEngine engine, GuardClock clock, NodePathCache pathCache,
+                          RuleKey<R> ruleKey, NodeSearchEngine.Budget budget) {
+        this.engine = engine;
+        this.ruleGroupSearch = new RuleGroupSearch(engine, clock);
+        this.clock = clock;
+        this.pathCache = pathCache;
+        this.ruleKey = ruleKey;
+        this.budget = budget;
+    }
+
+    /**
+     * 提取作者名称
+     *
+     * @return 所有规则都未命中时返回null
+     */
+    public String extract(GuardRuleMatcher<R> group, NodeView root, String packageName, String activityName) {
+        ipcCount = 0;
+        symbolExtracted = false;
+        searchResult = null;
+        this.packageName = packageName;
+        this.activityName = activityName;
+        try {
+            if (!group.isFoldable()) {
+                // 规则过多无法合并, 逐条使用单个规则的匹配器提取
+                for (int i = 0; i < group.getRules().size(); i++) {
+                    String authorName = extractFolded(group.getRuleMatcher(i), root);
+                    if (authorName != null && !authorName.isEmpty()) {
+                        return authorName;
+                    }
+                }
+                return null;
+            }
+            return extractFolded(group, root);
+        } finally {
+            this.group = null;
+        }
+    }
+
+    private String extractFolded(GuardRuleMatcher<R> group, NodeView root) {
+        this.group = group;
+        List<R> rules = group.getRules();
+        for (int i = 0; i < rules.size(); i++) {
+            int kind = group.getKind(i);
+            if (kind == GuardRuleMatcher.KIND_TIMESTAMP) {
+                // 使用时间戳作为标识
+                return clock.localTime().toString();
+            }
+            if (kind == GuardRuleMatcher.KIND_VIEW_ID) {
+                ipcCount++;
+                String text = root.findTextByViewId(rules.get(i).getViewId());
+                if (text != null && !text.isEmpty()) {
+                    return text;
+                }
+                continue;
+            }
+
+            String symbol = rules.get(i).getSpecialSymbol();
+            if (symbol == null || symbol.isEmpty()) {
+                continue;
+            }
+            int ipcBefore = ipcCount;
+            String result = probeCachedSymbol(root, i);
+            if (result == null) {
+                // 可见优先遍历, 屏幕外预加载的条目最后才检查
+                result = ruleGroupSearch.search(group, i, root, NodeSearchEngine.Order.VISIBLE_FIRST,
+                        budget, pathListener);
+                searchResult = ruleGroupSearch.getLastResult();
+                ipcCount += searchResult.getChildCalls;
+            }
+            symbolExtracted = true;
+            pathCache.recordExtraction(ipcCount - ipcBefore);
+            return result;
+        }
+        return null;
+    }
+
+    /**
+     * 探测特殊符号规则的缓存路径, 未命中时删除缓存
+     */
+    private String probeCachedSymbol(NodeView root, int ruleIndex) {
+        String cacheKey = cacheKey(ruleIndex);
+        NodePathCache.Entry entry = pathCache.get(cacheKey);
+        if (entry == null) {
+            return null;
+        }
+        String cached = probeCachedPath(root, entry, ruleIndex);
+        pathCache.recordProbe(cached != null);
+        if (cached == null) {
+            pathCache.remove(cacheKey);
+        }
+        return cached;
+    }
+
+    /**
+     * 沿缓存的子节点下标路径直接取节点, 节点特征和规则都匹配才算命中
+     */
+    private String probeCachedPath(NodeView root, NodePathCache.Entry entry, int ruleIndex) {
+        NodeView node = root;
+        try {
+            for (int index : entry.path) {
+                if (index >= node.getChildCount()) {
+                    return null;
+                }
+                NodeView child = node.getChild(index);
+                ipcCount++;
+                if (node != root) {
+                    node.recycle();
+                }
+                node = child;
+                if (node == null) {
+                    return null;
+                }
+            }
+            if (!entry.matchesSignature(node)) {
+                return null;
+            }
+            // 与全树搜索使用同一个匹配器检查节点
+            int ruleCount = group.getRules().size();
+            if (probeTexts.length < ruleCount) {
+                probeTexts = new String[ruleCount];
+            }
+            long ruleBit = 1L << ruleIndex;
+            return (group.matchNode(node, ruleBit, probeTexts) & ruleBit) != 0 ? probeTexts[ruleIndex] : null;
+        } catch (RuntimeException e) {
+            // 节点已失效等, 按未命中处理
+            return null;
+        } finally {
+            if (node != null && node != root) {
+                node.recycle();
+            }
+        }
+    }
+
+    /**
+     * 记录本次遍历中命中的特殊符号规则的节点路径, 下次优先探测
+     */
+    private void rememberSymbolPath(int ruleIndex, NodeView node) {
+        if (group.getKind(ruleIndex) != GuardRuleMatcher.KIND_SYMBOL) {
+            return;
+        }
+        CharSequence className = node.getClassName();
+        pathCache.put(cacheKey(ruleIndex), engine.currentPath(), node.getViewIdResourceName(),
+                className != null ? className.toString() : null);
+    }
+
+    private String cacheKey(int ruleIndex) {
+        return NodePathCache.key(packageName, activityName, ruleKey.of(group.getRules().get(ruleIndex)));
+    }
+
+    /**
+     * 上一次提取的 getChild/findAccessibilityNodeInfosByViewId 调用次数
+     */
+    public int getLastIpcCount() {
+        return ipcCount;
+    }
+
+    /**
+     * 上一次提取是否处理了特殊符号规则(探测缓存或遍历节点树)
+     */
+    public boolean isLastSymbolExtraction() {
+        return symbolExtracted;
+    }
+
+    /**
+     * 上一次提取中节点树遍历的开销统计, 没有遍历时返回null
+     */
+    public NodeSearchEngine.Result getLastSearchResult() {
+        return searchResult;
+    }
+
+    public NodePathCache getPathCache() {
+        return pathCache;
+    }
+}
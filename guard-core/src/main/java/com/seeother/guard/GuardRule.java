@@ -0,0 +1,18 @@
+package com.seeother.guard;
+
+/**
+ * 守卫规则中与节点匹配相关的部分
+ */
+public interface GuardRule {
+
+    String getViewId();
+
+    boolean isUseSpecialSymbol();
+
+    String getSpecialSymbol();
+
+    default boolean hasViewId() {
+        String viewId = getViewId();
+        return viewId != null && !viewId.isEmpty();
+    }
+}
@@ -0,0 +1,200 @@
+package com.seeother.guard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 规则组匹配器
+ * 把同一(包名, 事件类型, Activity)下的所有规则编译在一起:
+ * 特殊符号合并为一个 Aho-Corasick 自动机, ViewId 放入哈希表,
+ * 遍历节点树时每个节点只检查一次, 就能得到所有规则的匹配结果。
+ * 规则下标用 long 位掩码表示, 超过64个规则时不能合并, 由调用方逐条处理。
+ */
+public final class GuardRuleMatcher<R extends GuardRule> {
+    public static final int KIND_TIMESTAMP = 0; // 没有ViewId也不用特殊符号, 使用时间戳作为标识
+    public static final int KIND_VIEW_ID = 1;
+    public static final int KIND_SYMBOL = 2;
+
+    @SuppressWarnings("rawtypes")
+    private static final GuardRuleMatcher EMPTY = new GuardRuleMatcher<>(Collections.emptyList());
+
+    private final List<R> rules;
+    private final GuardClock clock;
+    private final int[] kinds;
+    private final boolean foldable;
+    private final SymbolAutomaton automaton;
+    private final long[] patternRules;          // 符号下标 -> 使用该符号的规则
+    private final Map<String, Long> viewIdRules; // ViewId -> 使用该ViewId的规则
+    private final long symbolRuleMask;
+    private final long viewIdRuleMask;
+    private final List<GuardRuleMatcher<R>> ruleMatchers; // 不能合并时每个规则单独的匹配器
+
+    public GuardRuleMatcher(List<R> rules) {
+        this(rules, GuardClock.SYSTEM);
+    }
+
+    public GuardRuleMatcher(List<R> rules, GuardClock clock) {
+        this.rules = rules;
+        this.clock = clock;
+        this.kinds = new int[rules.size()];
+        for (int i = 0; i < rules.size(); i++) {
+            R rule = rules.get(i);
+            if (rule.hasViewId()) {
+                kinds[i] = KIND_VIEW_ID;
+            } else if (rule.isUseSpecialSymbol()) {
+                kinds[i] = KIND_SYMBOL;
+            } else {
+                kinds[i] = KIND_TIMESTAMP;
+            }
+        }
+        this.foldable = rules.size() <= 64;
+        if (foldable) {
+            this.ruleMatchers = null;
+        } else {
+            List<GuardRuleMatcher<R>> singles = new ArrayList<>(rules.size());
+            for (R rule : rules) {
+                singles.add(new GuardRuleMatcher<>(Collections.singletonList(rule), clock));
+            }
+            this.ruleMatchers = singles;
+        }
+
+        List<String> patterns = new ArrayList<>();
+        List<Long> patternMasks = new ArrayList<>();
+        Map<String, Long> viewIds = new HashMap<>();
+        long symbolMask = 0L;
+        long viewIdMask = 0L;
+        if (foldable) {
+            for (int i = 0; i < rules.size(); i++) {
+                R rule = rules.get(i);
+                if (kinds[i] == KIND_VIEW_ID) {
+                    Long mask = viewIds.get(rule.getViewId());
+                    viewIds.put(rule.getViewId(), (mask != null ? mask : 0L) | (1L << i));
+                    viewIdMask |= 1L << i;
+                } else if (kinds[i] == KIND_SYMBOL) {
+                    String symbol = rule.getSpecialSymbol();
+                    if (symbol == null || symbol.isEmpty()) continue; // 与原逻辑一致, 空符号永远不匹配
+                    int p = patterns.indexOf(symbol);
+                    if (p < 0) {
+                        patterns.add(symbol);
+                        patternMasks.add(1L << i);
+                    } else {
+                        patternMasks.set(p, patternMasks.get(p) | (1L << i));
+                    }
+                    symbolMask |= 1L << i;
+                }
+            }
+        }
+        this.automaton = patterns.isEmpty() ? null : SymbolAutomaton.build(patterns);
+        this.patternRules = new long[patternMasks.size()];
+        for (int p = 0; p < patternRules.length; p++) {
+            patternRules[p] = patternMasks.get(p);
+        }
+        this.viewIdRules = viewIds;
+        this.symbolRuleMask = symbolMask;
+        this.viewIdRuleMask = viewIdMask;
+    }
+
+    /**
+     * 没有规则的匹配器
+     */
+    @SuppressWarnings("unchecked")
+    public static <R extends GuardRule> GuardRuleMatcher<R> empty() {
+        return (GuardRuleMatcher<R>) EMPTY;
+    }
+
+    public List<R> getRules() {
+        return rules;
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    public int getKind(int ruleIndex) {
+        return kinds[ruleIndex];
+    }
+
+    /**
+     * 规则组是否可以合并为一次遍历
+     */
+    public boolean isFoldable() {
+        return foldable;
+    }
+
+    /**
+     * 规则组不能合并时, 获取单个规则的匹配器, 调用方按规则顺序逐个使用
+     */
+    public GuardRuleMatcher<R> getRuleMatcher(int ruleIndex) {
+        if (foldable) {
+            throw new IllegalStateException("规则组可以合并, 不需要单独的匹配器");
+        }
+        return ruleMatchers.get(ruleIndex);
+    }
+
+    /**
+     * 需要遍历节点树的规则(ViewId和特殊符号规则)
+     */
+    public long getTreeRuleMask() {
+        return symbolRuleMask | viewIdRuleMask;
+    }
+
+    /**
+     * 检查单个节点
+     *
+     * @param pendingMask 还需要匹配的规则
+     * @param texts       按规则下标写入命中的文本
+     * @return 本节点新命中的规则
+     */
+    public long matchNode(NodeView node, long pendingMask, String[] texts) {
+        long matched = 0L;
+        CharSequence text = node.getText();
+        String textString = text != null ? text.toString() : null;
+        String viewId = node.getViewIdResourceName();
+
+        // ViewId 完全相等, 且有文本
+        if (viewId != null && (pendingMask & viewIdRuleMask) != 0) {
+            Long mask = viewIdRules.get(viewId);
+            if (mask != null && textString != null && !textString.isEmpty()) {
+                matched |= fill(mask & pendingMask, textString, texts);
+            }
+        }
+
+        if (automaton != null && (pendingMask & symbolRuleMask) != 0) {
+            // 文本包含符号
+            long textRules = rulesOf(automaton.scan(textString)) & pendingMask & ~matched;
+            if (textRules != 0) {
+                matched |= fill(textRules, textString, texts);
+            }
+            // ViewId 包含符号(新浪微博等), 没有文本时使用时间戳作为标识
+            long viewIdPatternRules = rulesOf(automaton.scan(viewId)) & pendingMask & ~matched;
+            if (viewIdPatternRules != 0) {
+                String value = textString != null && !textString.isEmpty() ? textString : clock.localTime().toString();
+                matched |= fill(viewIdPatternRules, value, texts);
+            }
+        }
+        return matched;
+    }
+
+    private long rulesOf(long patternMask) {
+        long ruleMask = 0L;
+        while (patternMask != 0) {
+            int p = Long.numberOfTrailingZeros(patternMask);
+            ruleMask |= patternRules[p];
+            patternMask &= patternMask - 1;
+        }
+        return ruleMask;
+    }
+
+    private static long fill(long ruleMask, String value, String[] texts) {
+        long remaining = ruleMask;
+        while (remaining != 0) {
+            int i = Long.numberOfTrailingZeros(remaining);
+            texts[i] = value;
+            remaining &= remaining - 1;
+        }
+        return ruleMask;
+    }
+}
@@ -0,0 +1,112 @@
+package com.seeother.guard;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 节点路径缓存
+ * 记录(包名, Activity, 规则)上一次找到作者节点时的子节点下标路径和节点特征,
+ * 下次提取时先沿路径直接取节点, 只有未命中时才做全树搜索。
+ * 只在守卫处理线程中使用, 不做同步。
+ */
+public class NodePathCache {
+    private static final int MAX_ENTRIES = 64;
+
+    /**
+     * 缓存的路径及目标节点特征
+     */
+    public static final class Entry {
+        final int[] path; // 从根节点开始的子节点下标
+        final String viewId;
+        final String className;
+
+        Entry(int[] path, String viewId, String className) {
+            this.path = path;
+            this.viewId = viewId;
+            this.className = className;
+        }
+
+        /**
+         * 检查节点特征是否与缓存一致, 防止布局变化后取到错误的节点
+         */
+        boolean matchesSignature(NodeView node) {
+            CharSequence nodeClass = node.getClassName();
+            return Objects.equals(viewId, node.getViewIdResourceName())
+                    && Objects.equals(className, nodeClass != null ? nodeClass.toString() : null);
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    // 统计信息
+    private long probeCount = 0;
+    private long hitCount = 0;
+    private long extractionCount = 0;
+    private long totalIpcCount = 0;
+
+    public static String key(String packageName, String activityName, int ruleId) {
+        return packageName + "/" + activityName + "#" + ruleId;
+    }
+
+    public Entry get(String key) {
+        return entries.get(key);
+    }
+
+    public void put(String key, int[] path, String viewId, String className) {
+        entries.put(key, new Entry(path, viewId, className));
+    }
+
+    public void remove(String key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 记录一次路径探测结果
+     */
+    public void recordProbe(boolean hit) {
+        probeCount++;
+        if (hit) {
+            hitCount++;
+        }
+    }
+
+    /**
+     * 记录一次提取消耗的 getChild 调用次数
+     */
+    public void recordExtraction(int ipcCount) {
+        extractionCount++;
+        totalIpcCount += ipcCount;
+    }
+
+    public long getProbeCount() {
+        return probeCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 路径命中率(0-1), 还没有探测过时返回0
+     */
+    public float getHitRatio() {
+        return probeCount == 0 ? 0f : (float) hitCount / probeCount;
+    }
+
+    /**
+     * 平均每次提取的 getChild 调用次数
+     */
+    public float getAverageIpcCount() {
+        return extractionCount == 0 ? 0f : (float) totalIpcCount / extractionCount;
+    }
+}
@@ -0,0 +1,350 @@
+package com.seeother.guard;
+
+import java.util.Arrays;
+
+/**
+ * 节点树搜索引擎
+ * 复用预分配的数组作为双端队列, 支持广度优先、深度优先和可见优先三种遍历顺序,
+ * 并通过节点数、深度和耗时预算限制单次搜索的开销, 避免超大节点树拖慢服务。
+ * 实例不是线程安全的, 只在守卫处理线程中使用。
+ */
+public class NodeSearchEngine {
+    private static final int TIME_CHECK_INTERVAL = 16; // 每访问多少个节点检查一次耗时
+
+    /**
+     * 遍历顺序
+     */
+    public enum Order {
+        BFS,
+        DFS,
+        /**
+         * 广度优先, 但与屏幕相交的节点先于屏幕外的节点访问
+         */
+        VISIBLE_FIRST
+    }
+
+    /**
+     * 搜索结束原因
+     */
+    public enum StopReason {
+        FOUND,
+        EXHAUSTED,
+        NODE_BUDGET,
+        DEPTH_LIMITED,
+        TIME_BUDGET
+    }
+
+    /**
+     * 节点匹配器, 返回非null表示命中
+     */
+    public interface Matcher {
+        String match(NodeView node);
+    }
+
+    /**
+     * 搜索预算
+     */
+    public static final class Budget {
+        public final int maxNodes;
+        public final int maxDepth;
+        public final long maxNanos;
+
+        public Budget(int maxNodes, int maxDepth, long maxNanos) {
+            this.maxNodes = maxNodes;
+            this.maxDepth = maxDepth;
+            this.maxNanos = maxNanos;
+        }
+    }
+
+    /**
+     * 搜索结果及开销统计, 由引擎复用, 在下一次搜索前有效
+     */
+    public static final class Result {
+        public String text;           // 命中的文本
+        public int[] path;            // 从根节点到命中节点的子节点下标
+        public String viewId;         // 命中节点的 ViewId
+        public String className;      // 命中节点的类名
+        public StopReason stopReason;
+        public int nodesVisited;
+        public int getChildCalls;
+        public int maxDepthReached;
+        public long elapsedNanos;
+        public int errorCount;        // 读取节点失败的次数
+
+        public boolean isFound() {
+            return stopReason == StopReason.FOUND;
+        }
+
+        void reset() {
+            text = null;
+            path = null;
+            viewId = null;
+            className = null;
+            stopReason = StopReason.EXHAUSTED;
+            nodesVisited = 0;
+            getChildCalls = 0;
+            maxDepthReached = 0;
+            elapsedNanos = 0;
+            errorCount = 0;
+        }
+    }
+
+    private final GuardClock clock;
+    private final Result result = new Result();
+    private final int[] screenBounds = new int[4];
+    private final int[] nodeBounds = new int[4];
+
+    // 访问记录: 节点、父节点位置、子节点下标、深度, 下标即访问顺序
+    private NodeView[] nodes;
+    private int[] parents;
+    private int[] childIndices;
+    private int[] depths;
+    private int recordCount;
+    private int matchingRecord = -1; // 正在交给匹配器检查的节点
+
+    // 双端队列保存待展开节点的记录下标, 可见优先模式下屏幕外节点放入 deferred 队列
+    private int[] deque;
+    private int dequeHead;
+    private int dequeSize;
+    private int[] deferred;
+    private int deferredHead;
+    private int deferredSize;
+
+    public NodeSearchEngine() {
+        this(GuardClock.SYSTEM);
+    }
+
+    public NodeSearchEngine(GuardClock clock) {
+        this.clock = clock;
+        allocate(256);
+    }
+
+    private void allocate(int capacity) {
+        nodes = new NodeView[capacity];
+        parents = new int[capacity];
+        childIndices = new int[capacity];
+        depths = new int[capacity];
+        deque = new int[capacity];
+        deferred = new int[capacity];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= nodes.length) return;
+        int newLength = Math.max(capacity, nodes.length * 2);
+        nodes = Arrays.copyOf(nodes, newLength);
+        parents = Arrays.copyOf(parents, newLength);
+        childIndices = Arrays.copyOf(childIndices, newLength);
+        depths = Arrays.copyOf(depths, newLength);
+        deque = new int[newLength];
+        deferred = new int[newLength];
+    }
+
+    /**
+     * 在节点树中搜索第一个命中的节点
+     * 搜索过程中获取的子节点都会被回收, 根节点由调用方负责回收
+     */
+    public Result search(NodeView root, Matcher matcher, Order order, Budget budget) {
+        result.reset();
+        if (root == null) {
+            return result;
+        }
+
+        long startNanos = clock.nanoTime();
+        // 队列中最多同时存在 maxNodes 个节点, 访问记录最多 maxNodes + 1 个
+        ensureCapacity(budget.maxNodes + 1);
+        recordCount = 0;
+        dequeHead = 0;
+        dequeSize = 0;
+        deferredHead = 0;
+        deferredSize = 0;
+        if (order == Order.VISIBLE_FIRST) {
+            root.getBoundsInScreen(screenBounds);
+        }
+
+        try {
+            int rootRecord = addRecord(root, -1, -1, 0);
+            result.nodesVisited = 1;
+            if (matchRecord(rootRecord, matcher)) {
+                return result;
+            }
+            pushFrontier(rootRecord, order, true);
+
+            while (dequeSize > 0 || deferredSize > 0) {
+                int record = pollFrontier(order);
+                NodeView node = nodes[record];
+                int depth = depths[record];
+
+                if (depth >= budget.maxDepth) {
+                    result.stopReason = StopReason.DEPTH_LIMITED;
+                    releaseRecord(record);
+                    continue;
+                }
+
+                int childCount;
+                try {
+                    childCount = node.getChildCount();
+                } catch (Exception e) {
+                    result.errorCount++;
+                    releaseRecord(record);
+                    continue;
+                }
+
+                // 深度优先时逆序入栈, 保证先访问第一个子节点
+                int first = order == Order.DFS ? childCount - 1 : 0;
+                int step = order == Order.DFS ? -1 : 1;
+                for (int k = 0, i = first; k < childCount; k++, i += step) {
+                    if (result.nodesVisited >= budget.maxNodes) {
+                        result.stopReason = StopReason.NODE_BUDGET;
+                        return result;
+                    }
+                    if ((result.nodesVisited % TIME_CHECK_INTERVAL) == 0
+                            && clock.nanoTime() - startNanos > budget.maxNanos) {
+                        result.stopReason = StopReason.TIME_BUDGET;
+                        return result;
+                    }
+
+                    NodeView child;
+                    try {
+                        child = node.getChild(i);
+                    } catch (Exception e) {
+                        result.errorCount++;
+                        continue;
+                    }
+                    result.getChildCalls++;
+                    if (child == null) continue;
+
+                    int childRecord = addRecord(child, record, i, depth + 1);
+                    result.nodesVisited++;
+                    if (depth + 1 > result.maxDepthReached) {
+                        result.maxDepthReached = depth + 1;
+                    }
+                    if (matchRecord(childRecord, matcher)) {
+                        return result;
+                    }
+                    pushFrontier(childRecord, order, order != Order.VISIBLE_FIRST || isOnScreen(child));
+                }
+
+                // 子节点已入队, 父节点不再需要
+                releaseRecord(record);
+            }
+            return result;
+        } finally {
+            result.elapsedNanos = clock.nanoTime() - startNanos;
+            releaseAll(root);
+        }
+    }
+
+    private int addRecord(NodeView node, int parent, int childIndex, int depth) {
+        int record = recordCount++;
+        nodes[record] = node;
+        parents[record] = parent;
+        childIndices[record] = childIndex;
+        depths[record] = depth;
+        return record;
+    }
+
+    private boolean matchRecord(int record, Matcher matcher) {
+        NodeView node = nodes[record];
+        String text;
+        matchingRecord = record;
+        try {
+            text = matcher.match(node);
+        } catch (Exception e) {
+            result.errorCount++;
+            return false;
+        } finally {
+            matchingRecord = -1;
+        }
+        if (text == null) {
+            return false;
+        }
+        result.text = text;
+        result.stopReason = StopReason.FOUND;
+        result.path = buildPath(record);
+        result.viewId = node.getViewIdResourceName();
+        CharSequence className = node.getClassName();
+        result.className = className != null ? className.toString() : null;
+        return true;
+    }
+
+    /**
+     * 当前正在检查的节点的路径, 只能在 Matcher.match 中调用,
+     * 供一次遍历匹配多个目标的匹配器记录未终止搜索的命中位置
+     */
+    public int[] currentPath() {
+        if (matchingRecord < 0) {
+            throw new IllegalStateException("只能在匹配过程中获取路径");
+        }
+        return buildPath(matchingRecord);
+    }
+
+    private boolean isOnScreen(NodeView node) {
+        node.getBoundsInScreen(nodeBounds);
+        boolean empty = nodeBounds[0] >= nodeBounds[2] || nodeBounds[1] >= nodeBounds[3];
+        return !empty
+                && nodeBounds[0] < screenBounds[2] && screenBounds[0] < nodeBounds[2]
+                && nodeBounds[1] < screenBounds[3] && screenBounds[1] < nodeBounds[3];
+    }
+
+    private void pushFrontier(int record, Order order, boolean primary) {
+        if (order == Order.DFS) {
+            // 栈: 从队头入队, 从队头出队
+            dequeHead = (dequeHead - 1 + deque.length) % deque.length;
+            deque[dequeHead] = record;
+            dequeSize++;
+        } else if (primary) {
+            deque[(dequeHead + dequeSize) % deque.length] = record;
+            dequeSize++;
+        } else {
+            deferred[(deferredHead + deferredSize) % deferred.length] = record;
+            deferredSize++;
+        }
+    }
+
+    private int pollFrontier(Order order) {
+        if (dequeSize > 0) {
+            int record = deque[dequeHead];
+            dequeHead = (dequeHead + 1) % deque.length;
+            dequeSize--;
+            return record;
+        }
+        int record = deferred[deferredHead];
+        deferredHead = (deferredHead + 1) % deferred.length;
+        deferredSize--;
+        return record;
+    }
+
+    private int[] buildPath(int record) {
+        int depth = depths[record];
+        int[] path = new int[depth];
+        for (int r = record; parents[r] != -1; r = parents[r]) {
+            path[--depth] = childIndices[r];
+        }
+        return path;
+    }
+
+    private void releaseRecord(int record) {
+        NodeView node = nodes[record];
+        if (node != null && record != 0) {
+            try {
+                node.recycle();
+            } catch (Exception e) {
+                result.errorCount++;
+            }
+        }
+        nodes[record] = null;
+    }
+
+    /**
+     * 回收本次搜索中剩余的子节点, 根节点除外
+     */
+    private void releaseAll(NodeView root) {
+        for (int i = 0; i < recordCount; i++) {
+            if (nodes[i] != root) {
+                releaseRecord(i);
+            }
+            nodes[i] = null;
+        }
+        recordCount = 0;
+    }
+}
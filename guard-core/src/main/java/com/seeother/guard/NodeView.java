@@ -0,0 +1,58 @@
+package com.seeother.guard;
+
+/**
+ * 节点树视图
+ * 守卫核心逻辑只依赖该接口, 应用中由 AccessibilityNodeInfo 适配实现,
+ * 基准测试中由合成节点树实现
+ */
+public interface NodeView {
+
+    int getChildCount();
+
+    /**
+     * 获取子节点, 可能返回null, 返回的节点由调用方负责回收
+     */
+    NodeView getChild(int index);
+
+    CharSequence getText();
+
+    String getViewIdResourceName();
+
+    CharSequence getClassName();
+
+    /**
+     * 获取节点在屏幕中的位置, 依次写入 left、top、right、bottom
+     */
+    void getBoundsInScreen(int[] outBounds);
+
+    /**
+     * 释放节点, 不再需要的子节点必须回收
+     */
+    void recycle();
+
+    /**
+     * 查找子树中第一个 ViewId 完全相等的节点的文本
+     * 应用中由一次 findAccessibilityNodeInfosByViewId 调用实现
+     *
+     * @return 没有找到节点时返回null, 节点没有文本时返回空字符串
+     */
+    default String findTextByViewId(String viewId) {
+        if (viewId.equals(getViewIdResourceName())) {
+            CharSequence text = getText();
+            return text != null ? text.toString() : "";
+        }
+        for (int i = 0; i < getChildCount(); i++) {
+            NodeView child = getChild(i);
+            if (child == null) continue;
+            try {
+                String text = child.findTextByViewId(viewId);
+                if (text != null) {
+                    return text;
+                }
+            } finally {
+                child.recycle();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,109 @@
+package com.seeother.guard;
+
+import java.util.Arrays;
+
+/**
+ * 规则组遍历
+ * 一次遍历同时匹配从 firstRule 开始的所有 ViewId/特殊符号规则,
+ * firstRule 命中即可停止(它之前的规则都已确定未命中), 否则遍历结束后按规则顺序选择结果。
+ * 实例不是线程安全的。
+ */
+public final class RuleGroupSearch {
+
+    /**
+     * 规则命中回调, 在匹配过程中调用, 可以通过 NodeSearchEngine.currentPath() 获取节点路径
+     */
+    public interface MatchListener {
+        void onRuleMatched(int ruleIndex, NodeView node);
+    }
+
+    private final NodeSearchEngine engine;
+    private final GuardClock clock;
+    private final NodeSearchEngine.Matcher nodeMatcher = this::matchNode;
+
+    // 当前搜索的状态, 避免每次搜索创建闭包
+    private GuardRuleMatcher<?> group;
+    private MatchListener listener;
+    private int firstRule;
+    private long pending;
+    private long matched;
+    private String[] texts = new String[8];
+    private NodeSearchEngine.Result lastResult;
+
+    public RuleGroupSearch(NodeSearchEngine engine, GuardClock clock) {
+        this.engine = engine;
+        this.clock = clock;
+    }
+
+    /**
+     * 搜索节点树
+     *
+     * @return 按规则顺序第一个命中的结果, 都未命中时返回null
+     */
+    public String search(GuardRuleMatcher<?> group, int firstRule, NodeView root,
+                         NodeSearchEngine.Order order, NodeSearchEngine.Budget budget, MatchListener listener) {
+        int ruleCount = group.getRules().size();
+        if (texts.length < ruleCount) {
+            texts = new String[ruleCount];
+        } else {
+            Arrays.fill(texts, null);
+        }
+        this.group = group;
+        this.listener = listener;
+        this.firstRule = firstRule;
+        long firstBit = 1L << firstRule;
+        this.pending = group.getTreeRuleMask() & ~(firstBit - 1);
+        this.matched = 0L;
+
+        try {
+            lastResult = engine.search(root, nodeMatcher, order, budget);
+            if (lastResult.isFound()) {
+                return lastResult.text;
+            }
+
+            // firstRule 未命中, 按规则顺序取第一个命中的规则, 遇到时间戳规则即使用时间戳
+            for (int i = firstRule + 1; i < ruleCount; i++) {
+                if ((matched & (1L << i)) != 0) {
+                    return texts[i];
+                }
+                if (group.getKind(i) == GuardRuleMatcher.KIND_TIMESTAMP) {
+                    return clock.localTime().toString();
+                }
+            }
+            return null;
+        } finally {
+            this.group = null;
+            this.listener = null;
+        }
+    }
+
+    private String matchNode(NodeView node) {
+        long hit = group.matchNode(node, pending & ~matched, texts);
+        if (hit == 0) {
+            return null;
+        }
+        matched |= hit;
+        if (listener != null) {
+            long remaining = hit;
+            while (remaining != 0) {
+                listener.onRuleMatched(Long.numberOfTrailingZeros(remaining), node);
+                remaining &= remaining - 1;
+            }
+        }
+        return (hit & (1L << firstRule)) != 0 ? texts[firstRule] : null;
+    }
+
+    /**
+     * 上一次搜索的开销统计
+     */
+    public NodeSearchEngine.Result getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * 上一次搜索命中的规则
+     */
+    public long getMatchedMask() {
+        return matched;
+    }
+}
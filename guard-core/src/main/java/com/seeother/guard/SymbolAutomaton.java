@@ -0,0 +1,139 @@
+package com.seeother.guard;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 特殊符号多模式匹配自动机(Aho-Corasick)
+ * 一次扫描文本即可得到所有出现的符号, 结果用位掩码表示, 最多支持64个模式。
+ * 构建后只读, 扫描时不分配内存。
+ */
+public final class SymbolAutomaton {
+    public static final int MAX_PATTERNS = 64;
+
+    // 每个状态的出边, 按字符排序便于二分查找
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    private final long[] output; // 到达该状态时匹配到的模式
+
+    private SymbolAutomaton(char[][] edgeChars, int[][] edgeTargets, int[] fail, long[] output) {
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.output = output;
+    }
+
+    /**
+     * 构建自动机, 空模式会被忽略
+     */
+    public static SymbolAutomaton build(List<String> patterns) {
+        if (patterns.size() > MAX_PATTERNS) {
+            throw new IllegalArgumentException("模式数量超过 " + MAX_PATTERNS);
+        }
+
+        // 构建字典树
+        List<Map<Character, Integer>> gotoTable = new ArrayList<>();
+        List<Long> outputs = new ArrayList<>();
+        gotoTable.add(new HashMap<>());
+        outputs.add(0L);
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            if (pattern == null || pattern.isEmpty()) continue;
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                Integer next = gotoTable.get(state).get(c);
+                if (next == null) {
+                    next = gotoTable.size();
+                    gotoTable.add(new HashMap<>());
+                    outputs.add(0L);
+                    gotoTable.get(state).put(c, next);
+                }
+                state = next;
+            }
+            outputs.set(state, outputs.get(state) | (1L << p));
+        }
+
+        // 按层计算失败指针, 并合并失败链上的输出
+        int stateCount = gotoTable.size();
+        int[] fail = new int[stateCount];
+        long[] output = new long[stateCount];
+        for (int i = 0; i < stateCount; i++) {
+            output[i] = outputs.get(i);
+        }
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : gotoTable.get(0).values()) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : gotoTable.get(state).entrySet()) {
+                char c = edge.getKey();
+                int child = edge.getValue();
+                queue.add(child);
+                int f = fail[state];
+                while (f != 0 && !gotoTable.get(f).containsKey(c)) {
+                    f = fail[f];
+                }
+                Integer target = gotoTable.get(f).get(c);
+                fail[child] = target != null ? target : 0;
+                output[child] |= output[fail[child]];
+            }
+        }
+
+        // 转换为紧凑数组
+        char[][] edgeChars = new char[stateCount][];
+        int[][] edgeTargets = new int[stateCount][];
+        for (int s = 0; s < stateCount; s++) {
+            Map<Character, Integer> edges = gotoTable.get(s);
+            char[] chars = new char[edges.size()];
+            int i = 0;
+            for (char c : edges.keySet()) {
+                chars[i++] = c;
+            }
+            Arrays.sort(chars);
+            int[] targets = new int[chars.length];
+            for (i = 0; i < chars.length; i++) {
+                targets[i] = edges.get(chars[i]);
+            }
+            edgeChars[s] = chars;
+            edgeTargets[s] = targets;
+        }
+        return new SymbolAutomaton(edgeChars, edgeTargets, fail, output);
+    }
+
+    private int step(int state, char c) {
+        int index = Arrays.binarySearch(edgeChars[state], c);
+        return index >= 0 ? edgeTargets[state][index] : -1;
+    }
+
+    /**
+     * 扫描文本
+     *
+     * @return 文本中出现过的模式的位掩码(第i位对应第i个模式)
+     */
+    public long scan(CharSequence text) {
+        if (text == null) {
+            return 0L;
+        }
+        long found = 0L;
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            int next = step(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = step(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            found |= output[state];
+        }
+        return found;
+    }
+}
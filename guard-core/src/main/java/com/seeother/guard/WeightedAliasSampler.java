@@ -0,0 +1,169 @@
+package com.seeother.guard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * 按权重随机选择(别名法)
+ * 构建时把权重拆成 n 个等概率的槽位, 每个槽位最多包含两个候选,
+ * 抽样只需要一次随机下标和一次比较, 与候选数量无关。
+ * 构建后不再修改, 可以在多个线程中共享。
+ */
+public final class WeightedAliasSampler<T> {
+    // 排除某个候选时的最大重试次数, 超过后退化为线性扫描
+    private static final int MAX_REJECTIONS = 8;
+
+    private static final WeightedAliasSampler<Object> EMPTY =
+            new WeightedAliasSampler<>(Collections.emptyList(), new int[0], new double[0], new int[0], 0L);
+
+    private final List<T> items;
+    private final int[] weights;
+    private final double[] probability; // 槽位选中自身的概率
+    private final int[] alias;          // 槽位未选中自身时的候选
+    private final long totalWeight;
+
+    private WeightedAliasSampler(List<T> items, int[] weights, double[] probability, int[] alias, long totalWeight) {
+        this.items = items;
+        this.weights = weights;
+        this.probability = probability;
+        this.alias = alias;
+        this.totalWeight = totalWeight;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> WeightedAliasSampler<T> empty() {
+        return (WeightedAliasSampler<T>) EMPTY;
+    }
+
+    /**
+     * 构建抽样表, 权重小于等于0的候选被忽略
+     */
+    public static <T> WeightedAliasSampler<T> build(List<T> candidates, int[] candidateWeights) {
+        List<T> items = new ArrayList<>();
+        int[] weights = new int[candidates.size()];
+        long totalWeight = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (candidateWeights[i] <= 0) continue;
+            weights[items.size()] = candidateWeights[i];
+            items.add(candidates.get(i));
+            totalWeight += candidateWeights[i];
+        }
+        int n = items.size();
+        if (n == 0) {
+            return empty();
+        }
+
+        // Vose 别名法: 缩放后的权重小于1的槽位由大于1的候选补齐
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = (double) weights[i] * n / totalWeight;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // 剩余槽位只会因浮点误差偏离1
+        while (largeCount > 0) {
+            int index = large[--largeCount];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+        while (smallCount > 0) {
+            int index = small[--smallCount];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+        return new WeightedAliasSampler<>(Collections.unmodifiableList(items),
+                Arrays.copyOf(weights, n), probability, alias, totalWeight);
+    }
+
+    /**
+     * 随机选择一个候选
+     *
+     * @return 没有候选时返回null
+     */
+    public T sample(Random random) {
+        int n = items.size();
+        if (n == 0) {
+            return null;
+        }
+        int slot = random.nextInt(n);
+        return items.get(random.nextDouble() < probability[slot] ? slot : alias[slot]);
+    }
+
+    /**
+     * 随机选择一个不等于 excluded 的候选
+     * 先按原权重抽样并拒绝 excluded, 多次命中后在其余候选中按权重线性选择。
+     * 只有 excluded 一个候选时返回它本身。
+     *
+     * @return 没有候选时返回null
+     */
+    public T sample(Random random, T excluded) {
+        int n = items.size();
+        if (n == 0) {
+            return null;
+        }
+        for (int attempt = 0; attempt < MAX_REJECTIONS; attempt++) {
+            T item = sample(random);
+            if (!Objects.equals(item, excluded)) {
+                return item;
+            }
+        }
+
+        // excluded 的权重占比很高, 在其余候选中直接选择
+        long remaining = 0;
+        for (int i = 0; i < n; i++) {
+            if (!Objects.equals(items.get(i), excluded)) {
+                remaining += weights[i];
+            }
+        }
+        if (remaining == 0) {
+            return items.get(0);
+        }
+        long target = (long) (random.nextDouble() * remaining);
+        for (int i = 0; i < n; i++) {
+            if (Objects.equals(items.get(i), excluded)) continue;
+            target -= weights[i];
+            if (target < 0) {
+                return items.get(i);
+            }
+        }
+        return items.get(n - 1);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+}
@@ -0,0 +1,147 @@
+package com.seeother.guard.stats;
+
+import java.util.Arrays;
+
+/**
+ * 停留时长直方图
+ * 桶按对数划分: 第0个桶为 [0, 250ms), 之后每个桶的上界是下界的 √2 倍, 共 {@link #BUCKET_COUNT} 个桶,
+ * 最后一个桶包含所有更长的时长。无论记录多少次, 内存占用都不变, 百分位数的相对误差不超过一个桶宽。
+ * 非线程安全。
+ */
+public final class DwellHistogram {
+    public static final int BUCKET_COUNT = 30;
+    private static final long BASE_MILLIS = 250;
+    private static final long[] LOWER_BOUNDS = new long[BUCKET_COUNT + 1];
+
+    static {
+        LOWER_BOUNDS[0] = 0;
+        for (int i = 1; i <= BUCKET_COUNT; i++) {
+            LOWER_BOUNDS[i] = Math.round(BASE_MILLIS * Math.pow(2, (i - 1) / 2.0));
+        }
+    }
+
+    private final int[] counts = new int[BUCKET_COUNT];
+    private long count;
+    private long sumMillis;
+
+    /**
+     * 时长所在的桶
+     */
+    public static int bucketOf(long millis) {
+        if (millis < BASE_MILLIS) {
+            return 0;
+        }
+        if (millis >= LOWER_BOUNDS[BUCKET_COUNT - 1]) {
+            return BUCKET_COUNT - 1;
+        }
+        // 桶 i 满足 2^(i-1) <= (millis/250)^2 < 2^i
+        long ratioSquared = (millis * millis) / (BASE_MILLIS * BASE_MILLIS);
+        int bucket = 64 - Long.numberOfLeadingZeros(ratioSquared);
+        // 整数除法可能导致边界附近偏差一个桶, 用预先计算的边界修正
+        while (bucket > 1 && millis < LOWER_BOUNDS[bucket]) bucket--;
+        while (bucket < BUCKET_COUNT - 1 && millis >= LOWER_BOUNDS[bucket + 1]) bucket++;
+        return bucket;
+    }
+
+    /**
+     * 桶的下界(毫秒)
+     */
+    public static long lowerBound(int bucket) {
+        return LOWER_BOUNDS[bucket];
+    }
+
+    /**
+     * 桶的上界(毫秒, 不包含)
+     */
+    public static long upperBound(int bucket) {
+        return LOWER_BOUNDS[bucket + 1];
+    }
+
+    /**
+     * 记录一次停留
+     */
+    public void add(long millis) {
+        if (millis < 0) {
+            return;
+        }
+        counts[bucketOf(millis)]++;
+        count++;
+        sumMillis += millis;
+    }
+
+    /**
+     * 累加持久化的桶计数和总时长
+     *
+     * @param bucketCounts 长度为 {@link #BUCKET_COUNT} 的各桶次数
+     */
+    public void addAll(int[] bucketCounts, long bucketSumMillis) {
+        for (int i = 0; i < BUCKET_COUNT && i < bucketCounts.length; i++) {
+            counts[i] += bucketCounts[i];
+            count += bucketCounts[i];
+        }
+        sumMillis += bucketSumMillis;
+    }
+
+    /**
+     * 合并另一个直方图
+     */
+    public void merge(DwellHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sumMillis += other.sumMillis;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sumMillis = 0;
+    }
+
+    public int getBucketCount(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * 记录的次数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 记录的总时长(毫秒)
+     */
+    public long getSumMillis() {
+        return sumMillis;
+    }
+
+    /**
+     * 估算百分位数, 在桶内按对数插值
+     *
+     * @param quantile 0 到 1 之间, 例如 0.5 表示中位数
+     * @return 没有记录时返回0
+     */
+    public long percentile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        double rank = Math.max(1, Math.ceil(Math.min(1, Math.max(0, quantile)) * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] == 0) continue;
+            if (seen + counts[i] >= rank) {
+                double fraction = (rank - seen) / counts[i];
+                long lower = LOWER_BOUNDS[i];
+                long upper = LOWER_BOUNDS[i + 1];
+                if (i == 0) {
+                    return Math.round(upper * fraction);
+                }
+                return Math.round(lower * Math.pow((double) upper / lower, fraction));
+            }
+            seen += counts[i];
+        }
+        return LOWER_BOUNDS[BUCKET_COUNT];
+    }
+}
@@ -0,0 +1,88 @@
+package com.seeother.guard.stats;
+
+/**
+ * 停留时长跟踪
+ * 守卫每识别到一个新的内容(作者变化)时开始计时, 识别到下一个内容或前台应用切换时结束,
+ * 结束时把这段停留交给 {@link Listener}。时间由调用方传入单调时钟(毫秒), 不受系统时间修改影响。
+ * 线程安全。
+ */
+public final class DwellTracker {
+
+    /**
+     * 停留结束回调, 在调用 onItem/onForeground/finish 的线程中执行, 不持有锁
+     */
+    public interface Listener {
+        void onDwell(String packageName, long dwellMillis);
+    }
+
+    private final Listener listener;
+    private final long maxDwellMillis;
+
+    private String currentPackage;
+    private String currentItem;
+    private long itemStartMillis;
+
+    /**
+     * @param maxDwellMillis 单次停留的上限, 屏幕关闭等未被察觉的空闲时间不会无限累加
+     */
+    public DwellTracker(Listener listener, long maxDwellMillis) {
+        this.listener = listener;
+        this.maxDwellMillis = maxDwellMillis;
+    }
+
+    /**
+     * 识别到内容
+     *
+     * @return 是新的内容时返回true, 与当前内容相同时返回false
+     */
+    public boolean onItem(String packageName, String itemId, long nowMillis) {
+        String endedPackage;
+        long dwell;
+        synchronized (this) {
+            if (packageName.equals(currentPackage) && itemId.equals(currentItem)) {
+                return false;
+            }
+            endedPackage = currentPackage;
+            dwell = nowMillis - itemStartMillis;
+            currentPackage = packageName;
+            currentItem = itemId;
+            itemStartMillis = nowMillis;
+        }
+        report(endedPackage, dwell);
+        return true;
+    }
+
+    /**
+     * 前台应用切换, 离开当前内容所在的应用时结束计时
+     */
+    public void onForeground(String packageName, long nowMillis) {
+        synchronized (this) {
+            if (currentPackage == null || currentPackage.equals(packageName)) {
+                return;
+            }
+        }
+        finish(nowMillis);
+    }
+
+    /**
+     * 结束当前内容的计时
+     */
+    public void finish(long nowMillis) {
+        String endedPackage;
+        long dwell;
+        synchronized (this) {
+            endedPackage = currentPackage;
+            dwell = nowMillis - itemStartMillis;
+            currentPackage = null;
+            currentItem = null;
+        }
+        report(endedPackage, dwell);
+    }
+
+    private void report(String packageName, long dwell) {
+        if (packageName == null || dwell <= 0) {
+            return;
+        }
+        listener.onDwell(packageName, Math.min(dwell, maxDwellMillis));
+    }
+}
@@ -0,0 +1,82 @@
+package com.seeother.guard.trace;
+
+import com.seeother.guard.NodeView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 轨迹中记录的节点快照, 回放时直接作为节点树使用
+ */
+public final class TraceNode implements NodeView {
+    private final String text;
+    private final String viewId;
+    private final String className;
+    private final int[] bounds;
+    private final List<TraceNode> children = new ArrayList<>();
+
+    public TraceNode(String text, String viewId, String className, int left, int top, int right, int bottom) {
+        this.text = text;
+        this.viewId = viewId;
+        this.className = className;
+        this.bounds = new int[]{left, top, right, bottom};
+    }
+
+    public void addChild(TraceNode child) {
+        children.add(child);
+    }
+
+    public List<TraceNode> getChildren() {
+        return children;
+    }
+
+    /**
+     * 子树中的节点数量(包括自身)
+     */
+    public int size() {
+        int count = 1;
+        for (TraceNode child : children) {
+            count += child.size();
+        }
+        return count;
+    }
+
+    @Override
+    public int getChildCount() {
+        return children.size();
+    }
+
+    @Override
+    public NodeView getChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public CharSequence getText() {
+        return text;
+    }
+
+    @Override
+    public String getViewIdResourceName() {
+        return viewId;
+    }
+
+    @Override
+    public CharSequence getClassName() {
+        return className;
+    }
+
+    @Override
+    public void getBoundsInScreen(int[] outBounds) {
+        System.arraycopy(bounds, 0, outBounds, 0, 4);
+    }
+
+    int bound(int index) {
+        return bounds[index];
+    }
+
+    @Override
+    public void recycle() {
+        // 快照节点不需要回收
+    }
+}
@@ -0,0 +1,110 @@
+package com.seeother.guard.trace;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 轨迹文件读取, 格式见 TraceWriter
+ */
+public final class TraceReader implements Closeable {
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private long lastUptimeNanos = 0;
+
+    public TraceReader(InputStream inputStream) throws IOException {
+        this.in = new DataInputStream(inputStream);
+        if (in.readInt() != TraceWriter.MAGIC) {
+            throw new IOException("不是事件轨迹文件");
+        }
+        int version = in.readUnsignedByte();
+        if (version != TraceWriter.VERSION) {
+            throw new IOException("不支持的轨迹版本: " + version);
+        }
+    }
+
+    /**
+     * 读取下一条记录
+     *
+     * @return 文件结束时返回null, 文件末尾写了一半的记录也视为结束
+     */
+    public TraceRecord next() throws IOException {
+        int header;
+        try {
+            header = in.readUnsignedByte();
+        } catch (EOFException e) {
+            return null;
+        }
+        try {
+            int kind = header & 0x7F;
+            boolean hasSnapshot = (header & 0x80) != 0;
+            int eventType = (int) readVarLong();
+            long uptimeNanos = lastUptimeNanos + readVarLong();
+            lastUptimeNanos = uptimeNanos;
+            String packageName = readString();
+            String className = readString();
+            TraceNode snapshot = hasSnapshot ? readNode() : null;
+            return new TraceRecord(kind, eventType, packageName, className, uptimeNanos, snapshot);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private TraceNode readNode() throws IOException {
+        String text = readString();
+        String viewId = readString();
+        String className = readString();
+        int left = unZigZag(readVarLong());
+        int top = unZigZag(readVarLong());
+        int right = unZigZag(readVarLong());
+        int bottom = unZigZag(readVarLong());
+        TraceNode node = new TraceNode(text, viewId, className, left, top, right, bottom);
+        int childCount = (int) readVarLong();
+        for (int i = 0; i < childCount; i++) {
+            node.addChild(readNode());
+        }
+        return node;
+    }
+
+    private String readString() throws IOException {
+        int tag = (int) readVarLong();
+        if (tag == 0) {
+            return null;
+        }
+        if (tag == 1) {
+            String value = in.readUTF();
+            strings.add(value);
+            return value;
+        }
+        int index = tag - 2;
+        if (index >= strings.size()) {
+            throw new IOException("字符串引用越界: " + index);
+        }
+        return strings.get(index);
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数格式错误");
+    }
+
+    private static int unZigZag(long value) {
+        return (int) ((value >>> 1) ^ -(value & 1));
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,32 @@
+package com.seeother.guard.trace;
+
+/**
+ * 一条事件轨迹记录
+ */
+public final class TraceRecord {
+    /**
+     * 服务收到的原始事件
+     */
+    public static final int KIND_RAW = 0;
+    /**
+     * 合并后交给守卫处理的事件, 可以附带节点快照
+     */
+    public static final int KIND_EVALUATED = 1;
+
+    public final int kind;
+    public final int eventType;
+    public final String packageName;
+    public final String className;
+    public final long uptimeNanos; // 单调时间
+    public final TraceNode snapshot; // 可为null
+
+    public TraceRecord(int kind, int eventType, String packageName, String className,
+                       long uptimeNanos, TraceNode snapshot) {
+        this.kind = kind;
+        this.eventType = eventType;
+        this.packageName = packageName;
+        this.className = className;
+        this.uptimeNanos = uptimeNanos;
+        this.snapshot = snapshot;
+    }
+}
@@ -0,0 +1,425 @@
+package com.seeother.guard.trace;
+
+import com.seeother.guard.GuardClock;
+import com.seeother.guard.GuardDecisionEngine;
+import com.seeother.guard.GuardEventDebouncer;
+import com.seeother.guard.GuardExtractor;
+import com.seeother.guard.GuardRule;
+import com.seeother.guard.GuardRuleMatcher;
+import com.seeother.guard.NodePathCache;
+import com.seeother.guard.NodeSearchEngine;
+
+import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 事件轨迹回放工具
+ * 在 JVM 上用应用中的守卫流水线重新处理轨迹: 原始事件按轨迹时间交给 GuardEventDebouncer 合并,
+ * 合并窗口结束后使用该应用下一个节点快照交给 GuardExtractor(包括节点路径缓存)和作者计数,
+ * 输出每次处理的耗时、调用次数和决策结果。
+ * 回放是确定性的: 定时和时间戳标识都由轨迹时间生成, 不依赖系统时间。
+ * 快照只保留有文本或ViewId的节点, 路径缓存命中率与实际节点树上的结果可能不同。
+ *
+ * 用法: TraceReplay [--threshold N] [--interval MS] [--verbose] rules.tsv trace-0.bin [trace-1.bin ...]
+ * 规则文件每行: 包名 \t 事件类型(S/C) \t Activity \t ViewId \t 是否使用特殊符号 \t 特殊符号, # 开头为注释
+ */
+public final class TraceReplay {
+    // 与 android.view.accessibility.AccessibilityEvent 中的取值一致
+    static final int TYPE_WINDOW_STATE_CHANGED = 32;
+    static final int TYPE_WINDOW_CONTENT_CHANGED = GuardEventDebouncer.TYPE_WINDOW_CONTENT_CHANGED;
+    static final int TYPE_VIEW_SCROLLED = GuardEventDebouncer.TYPE_VIEW_SCROLLED;
+
+    private static final NodeSearchEngine.Budget SEARCH_BUDGET =
+            new NodeSearchEngine.Budget(2000, 20, 30_000_000L);
+    private static final long NANOS_PER_DAY = 24L * 60 * 60 * 1_000_000_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    /**
+     * 回放使用的规则
+     */
+    static final class ReplayRule implements GuardRule {
+        final int id; // 规则文件中的顺序, 作为节点路径缓存的标识
+        final String packageName;
+        final int eventType;
+        final String activityName;
+        final String viewId;
+        final boolean useSpecialSymbol;
+        final String specialSymbol;
+
+        ReplayRule(int id, String packageName, int eventType, String activityName, String viewId,
+                   boolean useSpecialSymbol, String specialSymbol) {
+            this.id = id;
+            this.packageName = packageName;
+            this.eventType = eventType;
+            this.activityName = activityName;
+            this.viewId = viewId;
+            this.useSpecialSymbol = useSpecialSymbol;
+            this.specialSymbol = specialSymbol;
+        }
+
+        boolean matches(String packageName, int eventType, String activityName) {
+            return this.packageName.equals(packageName) && this.eventType == eventType
+                    && (this.activityName.isEmpty() || this.activityName.equals(activityName));
+        }
+
+        @Override
+        public String getViewId() {
+            return viewId;
+        }
+
+        @Override
+        public boolean isUseSpecialSymbol() {
+            return useSpecialSymbol;
+        }
+
+        @Override
+        public String getSpecialSymbol() {
+            return specialSymbol;
+        }
+    }
+
+    /**
+     * 使用轨迹时间的时钟, 保证时间戳标识可重复
+     */
+    private static final class TraceClock implements GuardClock {
+        long traceNanos;
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public LocalTime localTime() {
+            return LocalTime.ofNanoOfDay(Math.floorMod(traceNanos, NANOS_PER_DAY));
+        }
+    }
+
+    /**
+     * 按轨迹时间执行的定时器, 处理每条记录前执行到期的任务
+     */
+    private static final class TraceScheduler implements GuardEventDebouncer.Scheduler {
+        private static final class Task implements Comparable<Task> {
+            final long dueNanos;
+            final long sequence;
+            final Runnable runnable;
+
+            Task(long dueNanos, long sequence, Runnable runnable) {
+                this.dueNanos = dueNanos;
+                this.sequence = sequence;
+                this.runnable = runnable;
+            }
+
+            @Override
+            public int compareTo(Task other) {
+                if (dueNanos != other.dueNanos) {
+                    return Long.compare(dueNanos, other.dueNanos);
+                }
+                return Long.compare(sequence, other.sequence);
+            }
+        }
+
+        private final TraceClock clock;
+        private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+        private long sequence = 0;
+
+        TraceScheduler(TraceClock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            tasks.add(new Task(clock.traceNanos + delayMillis * NANOS_PER_MILLI, sequence++, task));
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            tasks.removeIf(pending -> pending.runnable == task);
+        }
+
+        /**
+         * 按顺序执行到期时间不晚于 nanos 的任务, 执行时时钟停在任务的到期时间
+         */
+        void runUntil(long nanos) {
+            while (!tasks.isEmpty() && tasks.peek().dueNanos <= nanos) {
+                Task task = tasks.poll();
+                clock.traceNanos = task.dueNanos;
+                task.runnable.run();
+            }
+        }
+
+        int pendingCount() {
+            return tasks.size();
+        }
+    }
+
+    /**
+     * 合并窗口结束后等待节点快照的处理
+     */
+    private static final class Settled {
+        final int eventType;
+        final String activityName;
+        final long settledNanos;
+
+        Settled(int eventType, String activityName, long settledNanos) {
+            this.eventType = eventType;
+            this.activityName = activityName;
+            this.settledNanos = settledNanos;
+        }
+    }
+
+    private final List<ReplayRule> rules;
+    private final int threshold;
+    private final long intervalMillis;
+    private final boolean verbose;
+    private final PrintStream out;
+
+    private final TraceClock clock = new TraceClock();
+    private final TraceScheduler scheduler = new TraceScheduler(clock);
+    private final GuardEventDebouncer debouncer;
+    private final GuardExtractor<ReplayRule> extractor = new GuardExtractor<>(new NodeSearchEngine(clock), clock,
+            new NodePathCache(), rule -> rule.id, SEARCH_BUDGET);
+    private final GuardDecisionEngine decisionEngine = new GuardDecisionEngine(clock, GuardDecisionEngine.NO_UNSHAKABLE);
+    private final Map<String, GuardRuleMatcher<ReplayRule>> matchers = new HashMap<>();
+    private final Map<String, List<Settled>> settled = new HashMap<>(); // 包名 -> 等待快照的处理
+    private String foregroundActivity = null;
+
+    // 统计信息
+    private final Map<Integer, Integer> rawCounts = new HashMap<>();
+    private final Map<GuardDecisionEngine.Decision, Integer> decisionCounts =
+            new EnumMap<>(GuardDecisionEngine.Decision.class);
+    private final List<Long> latencies = new ArrayList<>();
+    private final List<Integer> ipcCounts = new ArrayList<>();
+    private final List<Long> settleDelays = new ArrayList<>();
+    private final Map<String, Long> lastRawNanos = new HashMap<>();
+    private int evaluatedCount = 0;
+    private int snapshotCount = 0;
+    private int settledCount = 0;
+    private int unmatchedSnapshotCount = 0; // 录制时处理了, 回放的合并器没有结束窗口
+    private long firstNanos = -1;
+
+    TraceReplay(List<ReplayRule> rules, int threshold, long intervalMillis, boolean verbose, PrintStream out) {
+        this.rules = rules;
+        this.threshold = threshold;
+        this.intervalMillis = intervalMillis;
+        this.verbose = verbose;
+        this.out = out;
+        this.debouncer = new GuardEventDebouncer(scheduler, this::getInterval, this::onSettled);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threshold = 5;
+        long intervalMillis = 500; // 与 MonitoredApp 的默认合并间隔一致
+        boolean verbose = false;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--threshold".equals(args[i]) && i + 1 < args.length) {
+                threshold = Integer.parseInt(args[++i]);
+            } else if ("--interval".equals(args[i]) && i + 1 < args.length) {
+                intervalMillis = Long.parseLong(args[++i]);
+            } else if ("--verbose".equals(args[i])) {
+                verbose = true;
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (files.size() < 2) {
+            System.err.println("用法: TraceReplay [--threshold N] [--interval MS] [--verbose] rules.tsv trace-0.bin [trace-1.bin ...]");
+            System.exit(1);
+            return;
+        }
+
+        TraceReplay replay = new TraceReplay(readRules(files.get(0)), threshold, intervalMillis, verbose, System.out);
+        for (String file : files.subList(1, files.size())) {
+            try (TraceReader reader = new TraceReader(new BufferedInputStream(new FileInputStream(file)))) {
+                TraceRecord record;
+                while ((record = reader.next()) != null) {
+                    replay.accept(record);
+                }
+            }
+        }
+        replay.printSummary();
+    }
+
+    static List<ReplayRule> readRules(String file) throws IOException {
+        List<ReplayRule> rules = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#")) continue;
+                String[] fields = Arrays.copyOf(line.split("\t", -1), 6);
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = fields[i] != null ? fields[i].trim() : "";
+                }
+                int eventType = "C".equals(fields[1]) ? TYPE_WINDOW_CONTENT_CHANGED : TYPE_VIEW_SCROLLED;
+                rules.add(new ReplayRule(rules.size(), fields[0], eventType, fields[2], fields[3],
+                        Boolean.parseBoolean(fields[4]), fields[5]));
+            }
+        }
+        return rules;
+    }
+
+    void accept(TraceRecord record) {
+        if (firstNanos < 0) {
+            firstNanos = record.uptimeNanos;
+        }
+        scheduler.runUntil(record.uptimeNanos);
+        clock.traceNanos = record.uptimeNanos;
+        if (record.kind == TraceRecord.KIND_RAW) {
+            Integer count = rawCounts.get(record.eventType);
+            rawCounts.put(record.eventType, count != null ? count + 1 : 1);
+            if (record.eventType == TYPE_WINDOW_STATE_CHANGED) {
+                // 与无障碍服务一致: 前台应用切换时丢弃其他应用还未处理的事件, 已结束但还没有快照的也一起丢弃
+                foregroundActivity = record.className;
+                debouncer.cancelOthers(record.packageName);
+                settled.keySet().retainAll(Collections.singleton(record.packageName));
+            } else {
+                lastRawNanos.put(record.packageName, record.uptimeNanos);
+                debouncer.submit(record.eventType, record.packageName, foregroundActivity);
+            }
+            return;
+        }
+
+        evaluatedCount++;
+        Long lastRaw = lastRawNanos.get(record.packageName);
+        if (lastRaw != null) {
+            settleDelays.add(record.uptimeNanos - lastRaw);
+        }
+        if (record.snapshot == null) {
+            return;
+        }
+        snapshotCount++;
+        // 每个快照对应该应用最早结束的同类型窗口
+        List<Settled> pending = settled.get(record.packageName);
+        if (pending != null) {
+            for (int i = 0; i < pending.size(); i++) {
+                if (pending.get(i).eventType == record.eventType) {
+                    evaluate(record, pending.remove(i));
+                    return;
+                }
+            }
+        }
+        unmatchedSnapshotCount++;
+    }
+
+    private long getInterval(String packageName) {
+        for (ReplayRule rule : rules) {
+            if (rule.packageName.equals(packageName)) {
+                return intervalMillis;
+            }
+        }
+        return -1;
+    }
+
+    private void onSettled(int eventType, String packageName, String activityName) {
+        settledCount++;
+        if (matcherFor(packageName, eventType, activityName).isEmpty()) {
+            // 与 AppGuardManager.shouldProcessEvent 一致, 没有规则时不处理, 也不会录制快照
+            return;
+        }
+        List<Settled> pending = settled.get(packageName);
+        if (pending == null) {
+            pending = new ArrayList<>();
+            settled.put(packageName, pending);
+        }
+        pending.add(new Settled(eventType, activityName, clock.traceNanos));
+    }
+
+    /**
+     * 使用节点快照处理一次合并后的事件, 与 AppGuardManager.processEvent 一样交给 GuardExtractor 和作者计数
+     */
+    private void evaluate(TraceRecord record, Settled event) {
+        GuardRuleMatcher<ReplayRule> group = matcherFor(record.packageName, event.eventType, event.activityName);
+        long start = System.nanoTime();
+        String authorName = extractor.extract(group, record.snapshot, record.packageName, event.activityName);
+        GuardDecisionEngine.Decision decision =
+                decisionEngine.onAuthor(record.packageName, authorName, threshold, false);
+        long latency = System.nanoTime() - start;
+        int ipc = extractor.getLastIpcCount();
+
+        latencies.add(latency);
+        ipcCounts.add(ipc);
+        Integer count = decisionCounts.get(decision);
+        decisionCounts.put(decision, count != null ? count + 1 : 1);
+
+        if (verbose || decision == GuardDecisionEngine.Decision.THRESHOLD_REACHED) {
+            out.printf("%10.3fs %-28s %-6s nodes=%-5d ipc=%-5d %7dus %-17s %s%n",
+                    (event.settledNanos - firstNanos) / 1e9, record.packageName,
+                    event.eventType == TYPE_VIEW_SCROLLED ? "scroll" : "change",
+                    record.snapshot.size(), ipc, latency / 1000, decision,
+                    authorName != null ? authorName : "-");
+        }
+    }
+
+    private GuardRuleMatcher<ReplayRule> matcherFor(String packageName, int eventType, String activityName) {
+        String key = packageName + "|" + eventType + "|" + activityName;
+        GuardRuleMatcher<ReplayRule> matcher = matchers.get(key);
+        if (matcher == null) {
+            List<ReplayRule> matched = new ArrayList<>();
+            for (ReplayRule rule : rules) {
+                if (rule.matches(packageName, eventType, activityName)) {
+                    matched.add(rule);
+                }
+            }
+            matcher = new GuardRuleMatcher<>(Collections.unmodifiableList(matched), clock);
+            matchers.put(key, matcher);
+        }
+        return matcher;
+    }
+
+    void printSummary() {
+        out.println();
+        out.println("原始事件: 窗口切换 " + count(rawCounts, TYPE_WINDOW_STATE_CHANGED)
+                + ", 滚动 " + count(rawCounts, TYPE_VIEW_SCROLLED)
+                + ", 内容变化 " + count(rawCounts, TYPE_WINDOW_CONTENT_CHANGED));
+        out.println("录制的守卫事件: " + evaluatedCount + ", 带节点快照: " + snapshotCount);
+        int waiting = 0;
+        for (List<Settled> pending : settled.values()) {
+            waiting += pending.size();
+        }
+        out.println("回放合并窗口结束: " + settledCount + ", 等待快照: " + waiting
+                + ", 未结束: " + scheduler.pendingCount() + ", 快照没有对应的窗口: " + unmatchedSnapshotCount);
+        out.println("决策: " + decisionCounts);
+        out.println("单事件耗时(us): " + percentiles(latencies, 1000));
+        List<Long> ipc = new ArrayList<>();
+        for (int count : ipcCounts) {
+            ipc.add((long) count);
+        }
+        out.println("getChild/ViewId 查找调用次数: " + percentiles(ipc, 1));
+        NodePathCache pathCache = extractor.getPathCache();
+        out.println("节点路径缓存: 探测 " + pathCache.getProbeCount() + " 次, 命中率 "
+                + Math.round(pathCache.getHitRatio() * 100) + "%");
+        out.println("最后一个原始事件到守卫处理的间隔(ms): " + percentiles(settleDelays, 1_000_000));
+    }
+
+    private static int count(Map<Integer, Integer> counts, int eventType) {
+        Integer count = counts.get(eventType);
+        return count != null ? count : 0;
+    }
+
+    private static String percentiles(List<Long> values, long divisor) {
+        if (values.isEmpty()) {
+            return "无数据";
+        }
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return "p50=" + sorted.get(sorted.size() / 2) / divisor
+                + " p95=" + sorted.get(Math.min(sorted.size() - 1, sorted.size() * 95 / 100)) / divisor
+                + " max=" + sorted.get(sorted.size() - 1) / divisor;
+    }
+}
@@ -0,0 +1,97 @@
+package com.seeother.guard.trace;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 轨迹文件写入
+ * 文件格式: 魔数 "SOTR" + 版本号, 之后是连续的记录。
+ * 整数使用变长编码, 字符串在文件内去重: 0 表示null, 1 表示新字符串(后跟UTF), n>=2 表示引用第 n-2 个字符串。
+ * 时间戳写入与上一条记录的差值。
+ */
+public final class TraceWriter implements Closeable {
+    public static final int MAGIC = 0x534F5452; // "SOTR"
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private long lastUptimeNanos = 0;
+
+    public TraceWriter(OutputStream outputStream) throws IOException {
+        this.out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    public void write(TraceRecord record) throws IOException {
+        out.writeByte(record.kind | (record.snapshot != null ? 0x80 : 0));
+        writeVarLong(record.eventType);
+        writeVarLong(record.uptimeNanos - lastUptimeNanos);
+        lastUptimeNanos = record.uptimeNanos;
+        writeString(record.packageName);
+        writeString(record.className);
+        if (record.snapshot != null) {
+            writeNode(record.snapshot);
+        }
+    }
+
+    private void writeNode(TraceNode node) throws IOException {
+        writeString(node.getText() != null ? node.getText().toString() : null);
+        writeString(node.getViewIdResourceName());
+        writeString(node.getClassName() != null ? node.getClassName().toString() : null);
+        for (int i = 0; i < 4; i++) {
+            writeVarLong(zigZag(node.bound(i)));
+        }
+        writeVarLong(node.getChildCount());
+        for (TraceNode child : node.getChildren()) {
+            writeNode(child);
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarLong(index + 2);
+            return;
+        }
+        strings.put(value, strings.size());
+        writeVarLong(1);
+        out.writeUTF(value);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigZag(int value) {
+        return ((long) value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * 已写入的字节数(包括文件头)
+     */
+    public int size() {
+        return out.size();
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -23,4 +23,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "SeeOther"
 include(":app")
+include(":guard-core")
  
\ No newline at end of file